@@ -0,0 +1,169 @@
+package io.codebottle.api.benchmark;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Generates CodeBottle API payloads of a given size.
+ * Every payload is generated once, so serving it does not distort the measurements.
+ */
+public final class DataSet {
+    public static final int LANGUAGE_COUNT = 8;
+    public static final int CATEGORY_COUNT = 4;
+
+    private final int snippetCount;
+    private final int revisionCount;
+    private final byte[] languages;
+    private final byte[] categories;
+    private final byte[] snippets;
+    private final byte[][] snippet;
+    private final byte[][] revisions;
+    private final byte[][][] revision;
+
+    /**
+     * Generates a data set.
+     *
+     * @param snippetCount  is the number of snippets.
+     * @param revisionCount is the number of revisions per snippet.
+     */
+    public DataSet(int snippetCount, int revisionCount) {
+        this.snippetCount = snippetCount;
+        this.revisionCount = revisionCount;
+        this.languages = named(LANGUAGE_COUNT, "Language");
+        this.categories = named(CATEGORY_COUNT, "Category");
+        this.snippet = new byte[snippetCount][];
+        this.revisions = new byte[snippetCount][];
+        this.revision = new byte[snippetCount][revisionCount][];
+
+        final StringBuilder json = new StringBuilder("[");
+
+        for (int i = 0; i < snippetCount; i++) {
+            if (i > 0) json.append(',');
+
+            final int start = json.length();
+            appendSnippet(json, i);
+            snippet[i] = utf8(json.substring(start));
+            revisions[i] = revisions(i, revisionCount, revision[i]);
+        }
+
+        this.snippets = utf8(json.append(']'));
+    }
+
+    public static String snippetID(int index) {
+        return Integer.toHexString(0x10000000 + index);
+    }
+
+    /**
+     * Returns the index of the snippet with the given {@code id}, or {@code -1} if there is no such snippet.
+     *
+     * @param id is the id of the snippet.
+     *
+     * @return the index of the snippet.
+     */
+    public int indexOf(String id) {
+        if (!id.matches("1[0-9a-f]{7}"))
+            return -1;
+
+        final int index = Integer.parseInt(id, 16) - 0x10000000;
+
+        return index < snippetCount ? index : -1;
+    }
+
+    public int getSnippetCount() {
+        return snippetCount;
+    }
+
+    public int getRevisionCount() {
+        return revisionCount;
+    }
+
+    public byte[] getLanguages() {
+        return languages;
+    }
+
+    public byte[] getCategories() {
+        return categories;
+    }
+
+    public byte[] getSnippets() {
+        return snippets;
+    }
+
+    public byte[] getSnippet(int index) {
+        return snippet[index];
+    }
+
+    public byte[] getRevisions(int index) {
+        return revisions[index];
+    }
+
+    public byte[] getRevision(int index, int revision) {
+        return this.revision[index][revision];
+    }
+
+    private static byte[] named(int count, String name) {
+        final StringBuilder json = new StringBuilder("[");
+
+        for (int i = 0; i < count; i++) {
+            if (i > 0) json.append(',');
+            appendNamed(json, i, name);
+        }
+
+        return utf8(json.append(']'));
+    }
+
+    private static byte[] revisions(int snippetIndex, int revisionCount, byte[][] revision) {
+        final StringBuilder json = new StringBuilder("[");
+
+        for (int i = 0; i < revisionCount; i++) {
+            if (i > 0) json.append(',');
+
+            final int start = json.length();
+            appendRevision(json, snippetIndex, i);
+            revision[i] = utf8(json.substring(start));
+        }
+
+        return utf8(json.append(']'));
+    }
+
+    private static byte[] utf8(CharSequence json) {
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void appendNamed(StringBuilder json, int id, String name) {
+        json.append("{\"id\":\"").append(id).append("\",\"name\":\"").append(name).append(' ').append(id).append("\"}");
+    }
+
+    private static void appendRevision(StringBuilder json, int snippetIndex, int index) {
+        json.append("{\"title\":\"Snippet #").append(snippetIndex).append(" revision ").append(index).append('"')
+                .append(",\"description\":\"Generated revision for benchmarks\"")
+                .append(",\"code\":\"public static void main(String[] args) {\\n    System.out.println(").append(snippetIndex).append(");\\n");
+        for (int line = 0; line < 20; line++)
+            json.append("    int value").append(line).append(" = ").append(line).append(" * ").append(snippetIndex).append(";\\n");
+        for (int line = 0; line < index; line++)
+            json.append("    System.out.println(\\\"line ").append(line).append("\\\");\\n");
+        json.append("}\"")
+                .append(",\"language\":");
+        appendNamed(json, snippetIndex % LANGUAGE_COUNT, "Language");
+        json.append(",\"category\":");
+        appendNamed(json, snippetIndex % CATEGORY_COUNT, "Category");
+        json.append(",\"author\":\"user").append(snippetIndex % 100).append('"')
+                .append(",\"explanation\":\"Revision ").append(index).append('"')
+                .append(",\"createdAt\":\"2019-08-01T12:00:00.000Z\"}");
+    }
+
+    private static void appendSnippet(StringBuilder json, int index) {
+        json.append("{\"id\":\"").append(snippetID(index)).append('"')
+                .append(",\"title\":\"Snippet #").append(index).append('"')
+                .append(",\"description\":\"Generated snippet for benchmarks\"")
+                .append(",\"code\":\"public static void main(String[] args) {\\n    System.out.println(").append(index).append(");\\n}\"")
+                .append(",\"views\":").append(index)
+                .append(",\"language\":");
+        appendNamed(json, index % LANGUAGE_COUNT, "Language");
+        json.append(",\"category\":");
+        appendNamed(json, index % CATEGORY_COUNT, "Category");
+        json.append(",\"votes\":").append(index % 10)
+                .append(",\"username\":\"user").append(index % 100).append('"')
+                .append(",\"createdAt\":\"2019-08-01T12:00:00.000Z\"")
+                .append(",\"updatedAt\":\"2019-08-02T12:00:00.000Z\"}");
+    }
+}
@@ -0,0 +1,124 @@
+package io.codebottle.api.benchmark;
+
+import java.time.Duration;
+import java.util.Random;
+
+/**
+ * Describes the latency and the faults a {@link MockCodeBottleServer} injects into its responses.
+ * <p>
+ * The latency of a response is the {@linkplain #getMinLatency() minimum latency} plus an exponentially distributed
+ * delay with the given {@linkplain #getMeanExtraLatency() mean}, which yields the long tail of real servers.
+ * Every fault is drawn independently per response.
+ */
+public final class FaultProfile {
+    /**
+     * A profile without latency and faults.
+     */
+    public static final FaultProfile NONE = new FaultProfile(Duration.ZERO, Duration.ZERO, 0, 1, 0, 0, 0);
+
+    private final Duration minLatency;
+    private final Duration meanExtraLatency;
+    private final double tooManyRequestsRate;
+    private final int retryAfterSeconds;
+    private final double serverErrorBurstRate;
+    private final int serverErrorBurstLength;
+    private final double truncatedBodyRate;
+
+    /**
+     * Creates a profile.
+     *
+     * @param minLatency             is the latency of every response.
+     * @param meanExtraLatency       is the mean of the exponentially distributed latency added to every response.
+     * @param tooManyRequestsRate    is the share of responses that are {@code 429 Too Many Requests}.
+     * @param retryAfterSeconds      is the value of the {@code Retry-After} header of {@code 429} responses.
+     * @param serverErrorBurstRate   is the share of responses that start a burst of {@code 503 Service Unavailable} responses.
+     * @param serverErrorBurstLength is the number of responses in a burst of server errors.
+     * @param truncatedBodyRate      is the share of responses whose connection is closed in the middle of the body.
+     */
+    public FaultProfile(
+            Duration minLatency,
+            Duration meanExtraLatency,
+            double tooManyRequestsRate,
+            int retryAfterSeconds,
+            double serverErrorBurstRate,
+            int serverErrorBurstLength,
+            double truncatedBodyRate
+    ) {
+        this.minLatency = minLatency;
+        this.meanExtraLatency = meanExtraLatency;
+        this.tooManyRequestsRate = tooManyRequestsRate;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.serverErrorBurstRate = serverErrorBurstRate;
+        this.serverErrorBurstLength = serverErrorBurstLength;
+        this.truncatedBodyRate = truncatedBodyRate;
+    }
+
+    /**
+     * Reads a profile from system properties with the given {@code prefix}, falling back to {@link #NONE} for missing ones.
+     * The properties are named like the getters, e.g. {@code <prefix>minLatency}; durations are in ISO-8601 format.
+     *
+     * @param prefix is the prefix of the property names.
+     *
+     * @return the profile.
+     */
+    public static FaultProfile fromSystemProperties(String prefix) {
+        return new FaultProfile(
+                Duration.parse(System.getProperty(prefix + "minLatency", NONE.minLatency.toString())),
+                Duration.parse(System.getProperty(prefix + "meanExtraLatency", NONE.meanExtraLatency.toString())),
+                Double.parseDouble(System.getProperty(prefix + "tooManyRequestsRate", String.valueOf(NONE.tooManyRequestsRate))),
+                Integer.parseInt(System.getProperty(prefix + "retryAfterSeconds", String.valueOf(NONE.retryAfterSeconds))),
+                Double.parseDouble(System.getProperty(prefix + "serverErrorBurstRate", String.valueOf(NONE.serverErrorBurstRate))),
+                Integer.parseInt(System.getProperty(prefix + "serverErrorBurstLength", String.valueOf(NONE.serverErrorBurstLength))),
+                Double.parseDouble(System.getProperty(prefix + "truncatedBodyRate", String.valueOf(NONE.truncatedBodyRate)))
+        );
+    }
+
+    public Duration getMinLatency() {
+        return minLatency;
+    }
+
+    public Duration getMeanExtraLatency() {
+        return meanExtraLatency;
+    }
+
+    public double getTooManyRequestsRate() {
+        return tooManyRequestsRate;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public double getServerErrorBurstRate() {
+        return serverErrorBurstRate;
+    }
+
+    public int getServerErrorBurstLength() {
+        return serverErrorBurstLength;
+    }
+
+    public double getTruncatedBodyRate() {
+        return truncatedBodyRate;
+    }
+
+    /**
+     * Draws the latency of a response.
+     *
+     * @param random is the source of randomness.
+     *
+     * @return the latency in nanoseconds.
+     */
+    long drawLatencyNanos(Random random) {
+        final long extra = meanExtraLatency.isZero() ? 0 : (long) (-Math.log(1 - random.nextDouble()) * meanExtraLatency.toNanos());
+
+        return minLatency.toNanos() + extra;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FaultProfile{minLatency=%s, meanExtraLatency=%s, tooManyRequestsRate=%s, retryAfterSeconds=%d, " +
+                        "serverErrorBurstRate=%s, serverErrorBurstLength=%d, truncatedBodyRate=%s}",
+                minLatency, meanExtraLatency, tooManyRequestsRate, retryAfterSeconds,
+                serverErrorBurstRate, serverErrorBurstLength, truncatedBodyRate);
+    }
+}
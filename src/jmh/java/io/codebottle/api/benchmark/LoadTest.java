@@ -0,0 +1,149 @@
+package io.codebottle.api.benchmark;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.codebottle.api.CodeBottleAPI;
+import io.codebottle.api.metrics.LatencyHistogram;
+
+import static java.lang.System.nanoTime;
+import static java.lang.System.out;
+
+/**
+ * Drives a {@link CodeBottleAPI} with sustained load against a {@link MockCodeBottleServer} that injects latency and faults,
+ * and periodically reports throughput, latency percentiles, heap usage and thread counts.
+ * <p>
+ * Run with {@code gradlew loadTest}. The harness is configured with system properties:
+ * <ul>
+ * <li>{@code load.duration}: how long to drive the client, in ISO-8601 format; defaults to {@code PT1M}</li>
+ * <li>{@code load.reportInterval}: how often to report; defaults to {@code PT10S}</li>
+ * <li>{@code load.concurrency}: the number of {@link CodeBottleAPI#requestSnippetByID(String)} calls in flight; defaults to {@code 1000}</li>
+ * <li>{@code load.snippetCount}: the number of snippets served; defaults to {@code 10000}</li>
+ * <li>{@code load.fault.*}: the {@linkplain FaultProfile#fromSystemProperties(String) fault profile} of the server</li>
+ * </ul>
+ */
+public final class LoadTest {
+    private static final String PREFIX = "load.";
+
+    private final Duration duration;
+    private final Duration reportInterval;
+    private final int concurrency;
+    private final MockCodeBottleServer server;
+    private final CodeBottleAPI api;
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    // replaced at every report; requests that complete while it is replaced may be missing from the latencies
+    private volatile LatencyHistogram latency = new LatencyHistogram();
+    private long lastReport;
+    private long reportedCount = 0;
+
+    private LoadTest(Duration duration, Duration reportInterval, int concurrency, MockCodeBottleServer server) {
+        this.duration = duration;
+        this.reportInterval = reportInterval;
+        this.concurrency = concurrency;
+        this.server = server;
+
+        final CodeBottleAPI.Builder builder = server.newApiBuilder();
+        builder.setMaxRequests(concurrency);
+        builder.setMaxRequestsPerHost(concurrency);
+
+        this.api = builder.build().waitForLazyLoading();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        final Duration duration = Duration.parse(System.getProperty(PREFIX + "duration", "PT1M"));
+        final Duration reportInterval = Duration.parse(System.getProperty(PREFIX + "reportInterval", "PT10S"));
+        final int concurrency = Integer.getInteger(PREFIX + "concurrency", 1000);
+        final int snippetCount = Integer.getInteger(PREFIX + "snippetCount", 10_000);
+        final FaultProfile faults = FaultProfile.fromSystemProperties(PREFIX + "fault.");
+
+        out.printf("Driving %d concurrent requests for %s against %d snippets with %s\n", concurrency, duration, snippetCount, faults);
+
+        try (MockCodeBottleServer server = new MockCodeBottleServer(new DataSet(snippetCount, 0), faults)) {
+            new LoadTest(duration, reportInterval, concurrency, server).run();
+        }
+
+        // the dispatcher threads of the http client would keep the JVM alive for another minute
+        System.exit(0);
+    }
+
+    private void run() throws InterruptedException {
+        final Semaphore permits = new Semaphore(concurrency);
+        final int snippetCount = server.getDataSet().getSnippetCount();
+
+        final long baselineHeap = retainedHeap();
+        final int baselineThreads = threads.getThreadCount();
+        final long start = nanoTime();
+        final long end = start + duration.toNanos();
+        long nextReport = start + reportInterval.toNanos();
+        lastReport = start;
+
+        while (nanoTime() < end) {
+            if (!permits.tryAcquire(Math.min(end, nextReport) - nanoTime(), TimeUnit.NANOSECONDS)) {
+                if (nanoTime() >= nextReport) {
+                    report(start);
+                    nextReport += reportInterval.toNanos();
+                }
+                continue;
+            }
+
+            final String id = DataSet.snippetID(ThreadLocalRandom.current().nextInt(snippetCount));
+            final long requestStart = nanoTime();
+
+            api.requestSnippetByID(id).whenComplete((snippet, throwable) -> {
+                latency.record(nanoTime() - requestStart);
+                (throwable == null ? succeeded : failed).increment();
+                permits.release();
+            });
+        }
+
+        // let the requests in flight finish, so that their state is not counted as retained
+        permits.acquire(concurrency);
+        report(start);
+
+        out.printf("\nTotal: %d succeeded, %d failed in %s\n", succeeded.sum(), failed.sum(), Duration.ofNanos(nanoTime() - start));
+        out.printf("Retained heap: %d KiB before, %d KiB after\n", baselineHeap / 1024, retainedHeap() / 1024);
+        out.printf("Threads: %d before, %d after, %d peak\n", baselineThreads, threads.getThreadCount(), threads.getPeakThreadCount());
+        out.printf("Client metrics:\n%s\n", api.getMetrics().snapshot());
+    }
+
+    // reports the interval since the previous report
+    private void report(long start) {
+        final LatencyHistogram.Snapshot interval = latency.snapshot();
+        latency = new LatencyHistogram();
+
+        final long now = nanoTime();
+        final long completed = succeeded.sum() + failed.sum();
+        final double seconds = (now - lastReport) / 1e9;
+
+        out.printf("[%4ds] %8.0f req/s, %d failed, latency ms p50=%.1f p99=%.1f p999=%.1f max=%.1f, heap %d KiB, %d threads\n",
+                TimeUnit.NANOSECONDS.toSeconds(now - start),
+                (completed - reportedCount) / seconds,
+                failed.sum(),
+                interval.getValueAtPercentile(50) / 1e6,
+                interval.getValueAtPercentile(99) / 1e6,
+                interval.getValueAtPercentile(99.9) / 1e6,
+                interval.getMax() / 1e6,
+                memory.getHeapMemoryUsage().getUsed() / 1024,
+                threads.getThreadCount());
+
+        lastReport = now;
+        reportedCount = completed;
+    }
+
+    private long retainedHeap() {
+        System.gc();
+
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
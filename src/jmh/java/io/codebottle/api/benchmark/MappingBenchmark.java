@@ -0,0 +1,100 @@
+package io.codebottle.api.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.codebottle.api.CodeBottleAPI;
+import io.codebottle.api.model.EntityMapper;
+import io.codebottle.api.model.Snippet;
+import io.codebottle.api.rest.CodeBottleRequest;
+import io.codebottle.api.rest.Endpoint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures mapping a received snippet list to entities, without the round trip.
+ * The data is received from a {@link MockCodeBottleServer} once, before measuring.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappingBenchmark {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    @Param({"100", "1000"})
+    public int snippetCount;
+
+    private MockCodeBottleServer server;
+    private CodeBottleAPI api;
+    private byte[] payload;
+    private List<JsonNode> trees;
+    private List<Snippet> snippets;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = new MockCodeBottleServer(new DataSet(snippetCount, 0));
+        api = server.newApiBuilder()
+                .build()
+                .waitForLazyLoading();
+
+        payload = server.getDataSet().getSnippets();
+        snippets = new ArrayList<>(api.requestSnippets().join());
+        trees = new ArrayList<>(snippetCount);
+
+        new CodeBottleRequest<JsonNode>(api)
+                .to(Endpoint.SNIPPETS)
+                .makeGET()
+                .then(data -> data)
+                .join()
+                .forEach(trees::add);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    /**
+     * Updates every cached snippet from its {@link JsonNode}.
+     */
+    @Benchmark
+    public void updateFromTree(Blackhole blackhole) {
+        for (int i = 0; i < snippetCount; i++)
+            blackhole.consume(snippets.get(i).update(trees.get(i)));
+    }
+
+    /**
+     * Binds every snippet from the payload with the {@link EntityMapper}, for comparison.
+     */
+    @Benchmark
+    public void bindFromParser(Blackhole blackhole) throws IOException {
+        final EntityMapper entityMapper = api.getEntityMapper();
+
+        try (JsonParser parser = JSON_FACTORY.createParser(payload)) {
+            parser.nextToken();
+
+            while (parser.nextToken() == JsonToken.START_OBJECT)
+                blackhole.consume(entityMapper.readSnippet(parser));
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package io.codebottle.api.benchmark;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.codebottle.api.CodeBottleAPI;
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+
+/**
+ * An in-process http server that serves a {@link DataSet} like the CodeBottle API would.
+ * <p>
+ * The API is served below a path prefix, so that the benchmarks also go through a non-default
+ * {@linkplain CodeBottleAPI.Builder#setBaseUrl(HttpUrl) base URL}.
+ * Latency and faults are injected into the responses as described by a {@link FaultProfile}.
+ * If {@linkplain #setServingValidators(boolean) enabled}, responses carry an {@code ETag},
+ * and conditional requests whose {@code If-None-Match} matches it are answered with {@code 304 Not Modified}.
+ */
+public final class MockCodeBottleServer implements Closeable {
+    private static final String BASE_PATH = "/api/";
+
+    private final DataSet dataSet;
+    private final FaultProfile faults;
+    private final MockWebServer server = new MockWebServer();
+    // the number of server errors left in the current burst
+    private final AtomicInteger serverErrorBurst = new AtomicInteger();
+    private volatile boolean servingValidators = false;
+
+    /**
+     * Starts a server on a free local port.
+     *
+     * @param dataSet is the data set to serve.
+     *
+     * @throws IOException if the server could not be started.
+     */
+    public MockCodeBottleServer(DataSet dataSet) throws IOException {
+        this(dataSet, FaultProfile.NONE);
+    }
+
+    /**
+     * Starts a server on a free local port that injects latency and faults.
+     *
+     * @param dataSet is the data set to serve.
+     * @param faults  is the profile of the latency and faults to inject.
+     *
+     * @throws IOException if the server could not be started.
+     */
+    public MockCodeBottleServer(DataSet dataSet, FaultProfile faults) throws IOException {
+        this.dataSet = dataSet;
+        this.faults = faults;
+
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return injectFaults(respond(request));
+            }
+        });
+        server.start();
+    }
+
+    public DataSet getDataSet() {
+        return dataSet;
+    }
+
+    public FaultProfile getFaults() {
+        return faults;
+    }
+
+    public boolean isServingValidators() {
+        return servingValidators;
+    }
+
+    /**
+     * Sets whether responses carry an {@code ETag}, so that clients revalidate instead of receiving the data again.
+     * Defaults to {@code false}, so that every request measures a complete response.
+     *
+     * @param servingValidators is whether to serve validators.
+     */
+    public void setServingValidators(boolean servingValidators) {
+        this.servingValidators = servingValidators;
+    }
+
+    /**
+     * Returns the base URL the API is served at.
+     *
+     * @return the base URL.
+     */
+    public HttpUrl getBaseUrl() {
+        return server.url(BASE_PATH);
+    }
+
+    /**
+     * Creates a builder for an API that uses this server.
+     *
+     * @return the builder.
+     */
+    public CodeBottleAPI.Builder newApiBuilder() {
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setBaseUrl(getBaseUrl());
+
+        return builder;
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.shutdown();
+    }
+
+    private MockResponse injectFaults(MockResponse response) {
+        final Random random = ThreadLocalRandom.current();
+        final long latency = faults.drawLatencyNanos(random);
+
+        if (serverErrorBurst.getAndUpdate(left -> Math.max(0, left - 1)) > 0
+                || random.nextDouble() < faults.getServerErrorBurstRate() && startServerErrorBurst())
+            response = error(503);
+        else if (random.nextDouble() < faults.getTooManyRequestsRate())
+            response = error(429).setHeader("Retry-After", faults.getRetryAfterSeconds());
+        else if (random.nextDouble() < faults.getTruncatedBodyRate())
+            response.socketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY);
+
+        return latency == 0 ? response : response.setHeadersDelay(latency, TimeUnit.NANOSECONDS);
+    }
+
+    // the first response of the burst is the one that started it
+    private boolean startServerErrorBurst() {
+        serverErrorBurst.set(faults.getServerErrorBurstLength() - 1);
+
+        return true;
+    }
+
+    private MockResponse respond(RecordedRequest request) {
+        final HttpUrl url = request.getRequestUrl();
+        final String path = url != null ? url.encodedPath() : "";
+
+        if (!path.startsWith(BASE_PATH))
+            return notFound();
+
+        final String[] segments = path.substring(BASE_PATH.length()).split("/");
+
+        switch (segments[0]) {
+            case "languages":
+                return segments.length == 1 ? ok(request, dataSet.getLanguages()) : notFound();
+            case "categories":
+                return segments.length == 1 ? ok(request, dataSet.getCategories()) : notFound();
+            case "snippets":
+                return respondSnippets(request, segments);
+            default:
+                return notFound();
+        }
+    }
+
+    private MockResponse respondSnippets(RecordedRequest request, String[] segments) {
+        if (segments.length == 1)
+            return ok(request, dataSet.getSnippets());
+
+        final int index = dataSet.indexOf(segments[1]);
+
+        if (index == -1 || segments.length > 4 || segments.length > 2 && !segments[2].equals("revisions"))
+            return notFound();
+        if (segments.length == 2)
+            return ok(request, dataSet.getSnippet(index));
+        if (segments.length == 3)
+            return ok(request, dataSet.getRevisions(index));
+
+        final int revision = revisionIndex(segments[3]);
+
+        return revision == -1 ? notFound() : ok(request, dataSet.getRevision(index, revision));
+    }
+
+    private int revisionIndex(String id) {
+        if (!id.matches("[0-9]{1,9}"))
+            return -1;
+
+        final int revision = Integer.parseInt(id);
+
+        return revision < dataSet.getRevisionCount() ? revision : -1;
+    }
+
+    private MockResponse ok(RecordedRequest request, byte[] body) {
+        if (!servingValidators)
+            return ok(body);
+
+        // the data set never changes, so the path identifies the version of a payload
+        final String etag = '"' + Integer.toHexString(request.getPath().hashCode()) + '"';
+
+        if (etag.equals(request.getHeader("If-None-Match")))
+            return new MockResponse()
+                    .setResponseCode(304)
+                    .setHeader("ETag", etag);
+
+        return ok(body).setHeader("ETag", etag);
+    }
+
+    private static MockResponse ok(byte[] body) {
+        return new MockResponse()
+                .setHeader("Content-Type", "application/json")
+                .setBody(new Buffer().write(body));
+    }
+
+    private static MockResponse notFound() {
+        return error(404);
+    }
+
+    private static MockResponse error(int code) {
+        return new MockResponse()
+                .setResponseCode(code)
+                .setHeader("Content-Type", "application/json")
+                .setBody("{\"error\":\"Error " + code + "\"}");
+    }
+}
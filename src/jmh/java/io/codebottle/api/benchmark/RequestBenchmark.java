@@ -0,0 +1,84 @@
+package io.codebottle.api.benchmark;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.codebottle.api.CodeBottleAPI;
+import io.codebottle.api.model.Snippet;
+import io.codebottle.api.rest.CodeBottleRequest;
+import io.codebottle.api.rest.Endpoint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures complete requests against a {@link MockCodeBottleServer}, from sending them to merging their results into the cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestBenchmark {
+    @Param({"100", "1000"})
+    public int snippetCount;
+    @Param("3")
+    public int revisionCount;
+    // with validators, refreshes of the warm cache are answered with 304 Not Modified
+    @Param("false")
+    public boolean validators;
+
+    private MockCodeBottleServer server;
+    private CodeBottleAPI api;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = new MockCodeBottleServer(new DataSet(snippetCount, revisionCount));
+        server.setServingValidators(validators);
+        api = server.newApiBuilder()
+                .build()
+                .waitForLazyLoading();
+
+        // merges into a warm cache, like every but the first refresh
+        api.requestSnippets().join();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    /**
+     * Sends a request for the snippet list and parses it into a tree, without mapping it to entities.
+     */
+    @Benchmark
+    public JsonNode then() {
+        return new CodeBottleRequest<JsonNode>(api)
+                .to(Endpoint.SNIPPETS)
+                .makeGET()
+                .then(data -> data)
+                .join();
+    }
+
+    @Benchmark
+    public Collection<Snippet> requestSnippets() {
+        return api.requestSnippets().join();
+    }
+
+    @Benchmark
+    public Collection<Snippet.Revision> requestAllRevisions() {
+        return api.requestAllRevisions().join();
+    }
+}
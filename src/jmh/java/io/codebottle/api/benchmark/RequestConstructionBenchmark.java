@@ -0,0 +1,97 @@
+package io.codebottle.api.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import io.codebottle.api.CodeBottleAPI;
+import io.codebottle.api.model.Snippet;
+import io.codebottle.api.rest.CodeBottleRequest;
+import io.codebottle.api.rest.Endpoint;
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of building a request, without sending it.
+ * Run with the {@code gc} profiler to see the bytes allocated per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestConstructionBenchmark {
+    private static final String SNIPPET_ID = "1a2b3c4d";
+    private static final String ACCEPT = "application/vnd.codebottle.v1+json";
+    private static final Headers HEADERS = Headers.of("Accept", ACCEPT);
+
+    private CodeBottleAPI api;
+
+    @Setup
+    public void setUp() {
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        // nothing is sent, but lazy loading must not reach the network
+        builder.setHttpClient(new OkHttpClient.Builder()
+                .addInterceptor(chain -> {
+                    throw new IOException("offline");
+                })
+                .build());
+
+        api = builder.build();
+    }
+
+    /**
+     * The previous way of resolving an endpoint: formatting the URL string, building a {@link java.net.URL},
+     * and parsing it again into the {@link HttpUrl} that OkHttp needs.
+     */
+    @Benchmark
+    @SuppressWarnings("deprecation")
+    public HttpUrl formattedUrl() {
+        return HttpUrl.get(Endpoint.SNIPPET_REVISIONS.url(SNIPPET_ID));
+    }
+
+    @Benchmark
+    public HttpUrl templateUrl() {
+        return Endpoint.SNIPPET_REVISIONS.url(api.getBaseUrl(), SNIPPET_ID);
+    }
+
+    @Benchmark
+    public HttpUrl parameterlessUrl() {
+        return Endpoint.SNIPPETS.url(api.getBaseUrl());
+    }
+
+    @Benchmark
+    public Request addedHeaders() {
+        return new Request.Builder()
+                .addHeader("Accept", ACCEPT)
+                .url(Endpoint.SNIPPETS.url(api.getBaseUrl()))
+                .build();
+    }
+
+    @Benchmark
+    public Request sharedHeaders() {
+        return new Request.Builder()
+                .headers(HEADERS)
+                .url(Endpoint.SNIPPETS.url(api.getBaseUrl()))
+                .build();
+    }
+
+    @Benchmark
+    public CodeBottleRequest<Snippet> request() {
+        return new CodeBottleRequest<Snippet>(api)
+                .to(Endpoint.SNIPPET_SPECIFIC, SNIPPET_ID)
+                .makeGET();
+    }
+}
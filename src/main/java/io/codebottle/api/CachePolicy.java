@@ -0,0 +1,121 @@
+package io.codebottle.api;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalListener;
+import com.github.benmanes.caffeine.cache.Weigher;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Describes how many entries an entity cache may hold and for how long.
+ * <p>
+ * A bounded cache admits and evicts entries using a W-TinyLFU policy, which keeps frequently used entries
+ * even when a burst of entries that are used only once passes through the cache.
+ * A cache can be bounded either by its {@linkplain #setMaximumSize(long) entry count} or by its
+ * {@linkplain #setMaximumWeight(long) estimated size in bytes}, but not by both.
+ */
+public final class CachePolicy {
+    private @Nullable Long maximumSize = null;
+    private @Nullable Long maximumWeight = null;
+    private @Nullable Duration expireAfterWrite = null;
+    private @Nullable Duration expireAfterAccess = null;
+
+    /**
+     * Creates a policy that never evicts entries.
+     *
+     * @return a new, unbounded policy.
+     */
+    public static CachePolicy unbounded() {
+        return new CachePolicy();
+    }
+
+    public Optional<Long> getMaximumSize() {
+        return Optional.ofNullable(maximumSize);
+    }
+
+    /**
+     * Sets the maximum number of entries the cache may hold.
+     *
+     * @param maximumSize is the maximum entry count.
+     *
+     * @throws IllegalStateException if a {@linkplain #setMaximumWeight(long) maximum weight} is already set.
+     */
+    public void setMaximumSize(long maximumSize) throws IllegalStateException {
+        if (maximumSize < 0)
+            throw new IllegalArgumentException("maximumSize must not be negative");
+        if (maximumWeight != null)
+            throw new IllegalStateException("A cache can not be bounded by both size and weight");
+
+        this.maximumSize = maximumSize;
+    }
+
+    public Optional<Long> getMaximumWeight() {
+        return Optional.ofNullable(maximumWeight);
+    }
+
+    /**
+     * Sets the maximum estimated size of all entries in bytes.
+     * For snippets, the weight is estimated from the lengths of their texts and the texts of their revisions.
+     *
+     * @param maximumWeight is the maximum weight in bytes.
+     *
+     * @throws IllegalStateException if a {@linkplain #setMaximumSize(long) maximum size} is already set.
+     */
+    public void setMaximumWeight(long maximumWeight) throws IllegalStateException {
+        if (maximumWeight < 0)
+            throw new IllegalArgumentException("maximumWeight must not be negative");
+        if (maximumSize != null)
+            throw new IllegalStateException("A cache can not be bounded by both size and weight");
+
+        this.maximumWeight = maximumWeight;
+    }
+
+    public Optional<Duration> getExpireAfterWrite() {
+        return Optional.ofNullable(expireAfterWrite);
+    }
+
+    /**
+     * Sets the duration after which an entry expires once it was last fetched or updated.
+     *
+     * @param expireAfterWrite is the duration, or {@code null} to never expire after write.
+     */
+    public void setExpireAfterWrite(@Nullable Duration expireAfterWrite) {
+        this.expireAfterWrite = expireAfterWrite;
+    }
+
+    public Optional<Duration> getExpireAfterAccess() {
+        return Optional.ofNullable(expireAfterAccess);
+    }
+
+    /**
+     * Sets the duration after which an entry expires once it was last read, fetched or updated.
+     *
+     * @param expireAfterAccess is the duration, or {@code null} to never expire after access.
+     */
+    public void setExpireAfterAccess(@Nullable Duration expireAfterAccess) {
+        this.expireAfterAccess = expireAfterAccess;
+    }
+
+    <V> Cache<String, V> build(Weigher<String, V> weigher, RemovalListener<String, V> removalListener, Executor executor) {
+        final Caffeine<Object, Object> caffeine = Caffeine.newBuilder()
+                .executor(executor);
+
+        if (maximumSize != null)
+            caffeine.maximumSize(maximumSize);
+        if (expireAfterWrite != null)
+            caffeine.expireAfterWrite(expireAfterWrite);
+        if (expireAfterAccess != null)
+            caffeine.expireAfterAccess(expireAfterAccess);
+
+        final Caffeine<String, V> typed = caffeine.removalListener(removalListener);
+
+        if (maximumWeight != null)
+            typed.maximumWeight(maximumWeight).weigher(weigher);
+
+        return typed.build();
+    }
+}
@@ -1,42 +1,202 @@
 package io.codebottle.api;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Collection;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.codebottle.api.metrics.ClientMetrics;
+import io.codebottle.api.model.AbstractEntity;
+import io.codebottle.api.model.CacheSnapshot;
 import io.codebottle.api.model.Category;
+import io.codebottle.api.model.CodeArena;
+import io.codebottle.api.model.EntityMapper;
 import io.codebottle.api.model.Language;
+import io.codebottle.api.model.RevisionStorage;
 import io.codebottle.api.model.Snippet;
+import io.codebottle.api.model.SnippetIndex;
+import io.codebottle.api.model.SnippetSearchIndex;
 import io.codebottle.api.rest.CodeBottleRequest;
 import io.codebottle.api.rest.Endpoint;
+import io.codebottle.api.rest.FanOut;
+import io.codebottle.api.rest.InFlightRequests;
+import io.codebottle.api.rest.RateLimiter;
+import io.codebottle.api.rest.ValidatorCache;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 import org.jetbrains.annotations.Nullable;
+import org.reactivestreams.Publisher;
 
 /**
  * API Class. Create an instance of this using {@code #builder()} to use the API.
  */
+// injected into bound entities, which makes Jackson introspect it; it has no properties to bind
+@JsonAutoDetect(getterVisibility = Visibility.NONE, isGetterVisibility = Visibility.NONE, setterVisibility = Visibility.NONE,
+        fieldVisibility = Visibility.NONE, creatorVisibility = Visibility.NONE)
 public final class CodeBottleAPI {
+    private static final int DECODED_REVISION_CACHE_SIZE = 64;
+    private static final int CODE_ARENA_CHUNK_SIZE = 1 << 20;
+
     private final Map<String, Language> languageCache = new ConcurrentHashMap<>();
     private final Map<String, Category> categoryCache = new ConcurrentHashMap<>();
-    private final Map<String, Snippet> snippetCache = new ConcurrentHashMap<>();
+    private final Map<String, Snippet> snippetCache;
     private @Deprecated final @Nullable String token;
     private final OkHttpClient httpClient;
+    private final Executor executor;
+    private final EntityMapper entityMapper = new EntityMapper(this);
+    private final ValidatorCache validatorCache = new ValidatorCache();
+    private final InFlightRequests inFlightRequests = new InFlightRequests();
+    private final ClientMetrics metrics = new ClientMetrics();
+    private final SnippetIndex snippetIndex = new SnippetIndex();
+    private final SnippetSearchIndex searchIndex;
+    private final RevisionStorage revisionStorage;
+    private final @Nullable CodeArena codeArena;
+    private final @Nullable RateLimiter rateLimiter;
+    private final int maxRetries;
+    private final Duration snippetFreshness;
+    private final HttpUrl baseUrl;
+    private final boolean lazySnippetFields;
+    private final RevalidationPolicy languageRevalidation;
+    private final RevalidationPolicy categoryRevalidation;
+    private final RevalidationPolicy snippetRevalidation;
+    // the endpoints and IDs of the entities that are being refreshed in the background
+    private final Set<String> revalidating = ConcurrentHashMap.newKeySet();
+    private final SnippetSync snippetSync = new SnippetSync(this);
+    private volatile @Nullable ScheduledExecutorService scheduler = null;
     /**
      * A {@link CompletableFuture} that completes once lazy loading was finished.
      * <p>
      * Lazy loading is calling {@link #requestLanguages()} and {@link #requestCategories()} on API construction.
      */
-    public final CompletableFuture<Void> lazyLoading = CompletableFuture.allOf(requestLanguages(), requestCategories());
+    public final CompletableFuture<Void> lazyLoading;
+    /**
+     * A {@link CompletableFuture} that completes once the cache restored from a {@linkplain Builder#setSnapshotFile(Path) snapshot}
+     * was revalidated, by calling {@link #requestLanguages()}, {@link #requestCategories()} and {@link #requestSnippets()}.
+     * If no snapshot was restored, this future is already completed.
+     */
+    public final CompletableFuture<Void> snapshotRevalidation;
 
-    private CodeBottleAPI(@Nullable String token, OkHttpClient httpClient) {
+    private CodeBottleAPI(
+            @Nullable String token,
+            OkHttpClient httpClient,
+            Executor executor,
+            CachePolicy snippetCachePolicy,
+            @Nullable Path snapshotFile,
+            @Nullable RateLimiter rateLimiter,
+            int maxRetries,
+            SnippetSearchIndex.Scope searchScope,
+            int revisionKeyframeInterval,
+            boolean offHeapCode,
+            Duration snippetFreshness,
+            HttpUrl baseUrl,
+            boolean lazySnippetFields,
+            RevalidationPolicy languageRevalidation,
+            RevalidationPolicy categoryRevalidation,
+            RevalidationPolicy snippetRevalidation
+    ) {
         this.token = token;
         this.httpClient = httpClient;
+        this.executor = executor;
+        this.rateLimiter = rateLimiter;
+        this.maxRetries = maxRetries;
+        this.snippetFreshness = snippetFreshness;
+        this.baseUrl = baseUrl;
+        this.lazySnippetFields = lazySnippetFields;
+        this.languageRevalidation = languageRevalidation;
+        this.categoryRevalidation = categoryRevalidation;
+        this.snippetRevalidation = snippetRevalidation;
+        this.searchIndex = new SnippetSearchIndex(searchScope);
+        this.codeArena = offHeapCode ? new CodeArena(CODE_ARENA_CHUNK_SIZE) : null;
+        this.revisionStorage = new RevisionStorage(revisionKeyframeInterval, DECODED_REVISION_CACHE_SIZE, codeArena);
+        this.snippetCache = snippetCachePolicy.<Snippet>build((id, snippet) -> snippet.estimateSize(), (id, snippet, cause) -> {
+            if (cause != RemovalCause.REPLACED && snippet != null) {
+                snippetIndex.remove(snippet);
+                searchIndex.remove(snippet);
+                if (codeArena != null)
+                    codeArena.release(snippet);
+            }
+            if (cause.wasEvicted())
+                // the list response cached for revalidation no longer matches the cache
+                validatorCache.invalidate(Endpoint.SNIPPETS.url(baseUrl).toString());
+        }, executor).asMap();
+
+        metrics.registerCacheSize(ClientMetrics.CacheType.LANGUAGES, languageCache::size);
+        metrics.registerCacheSize(ClientMetrics.CacheType.CATEGORIES, categoryCache::size);
+        metrics.registerCacheSize(ClientMetrics.CacheType.SNIPPETS, snippetCache::size);
+
+        if (snapshotFile != null && restoreSnapshot(snapshotFile)) {
+            // serve from the snapshot right away, and refresh it in the background
+            this.lazyLoading = CompletableFuture.completedFuture(null);
+            this.snapshotRevalidation = CompletableFuture.allOf(requestLanguages(), requestCategories(), requestSnippets());
+        } else {
+            // requests are dispatched immediately, so this must happen after all fields are initialized
+            this.lazyLoading = CompletableFuture.allOf(requestLanguages(), requestCategories());
+            this.snapshotRevalidation = CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private boolean restoreSnapshot(Path snapshotFile) {
+        if (!Files.isRegularFile(snapshotFile))
+            return false;
+
+        try {
+            loadSnapshot(snapshotFile);
+
+            return true;
+        } catch (IOException e) {
+            // an unreadable snapshot is treated like a missing one
+            return false;
+        }
+    }
+
+    /**
+     * Writes all cached languages, categories, snippets and revisions to the given {@code file}.
+     * The snapshot can be restored using {@link #loadSnapshot(Path)} or {@link Builder#setSnapshotFile(Path)}.
+     *
+     * @param file is the file to write the snapshot to. An existing file is replaced.
+     *
+     * @throws IOException if the snapshot could not be written.
+     */
+    public void saveSnapshot(Path file) throws IOException {
+        CacheSnapshot.write(file, getLanguages(), getCategories(), getSnippets());
+    }
+
+    /**
+     * Reads the snapshot stored in the given {@code file} and merges its entities into the cache.
+     *
+     * @param file is the file to read the snapshot from.
+     *
+     * @throws IOException if the file could not be read or is not a valid snapshot.
+     */
+    public void loadSnapshot(Path file) throws IOException {
+        final CacheSnapshot snapshot = CacheSnapshot.read(this, file);
+
+        snapshot.getLanguages().forEach(language -> merge(languageCache, language.getID(), language, Language::update));
+        snapshot.getCategories().forEach(category -> merge(categoryCache, category.getID(), category, Category::update));
+        snapshot.getSnippets().forEach(this::mergeSnippet);
     }
 
     /**
@@ -80,15 +240,8 @@ public final class CodeBottleAPI {
         return new CodeBottleRequest<Language>(this)
                 .to(Endpoint.LANGUAGE_SPECIFIC, id)
                 .makeGET()
-                .then(data -> {
-                    synchronized (languageCache) {
-                        return getLanguageByID(id)
-                                .map(entity -> entity.update(data))
-                                .orElseGet(() -> languageCache.compute(id,
-                                        // existing values don't matter here, as the cache access failed before
-                                        (k, v) -> new Language(this, data)));
-                    }
-                });
+                .orIfNotModified(languageCache.get(id))
+                .thenRead(parser -> merge(languageCache, id, entityMapper.readLanguage(parser), Language::update));
     }
 
     /**
@@ -100,9 +253,40 @@ public final class CodeBottleAPI {
      * @return the language matching the given {@code id}.
      */
     public Optional<Language> getLanguageByID(String id) {
+        final Language cached = languageCache.get(id);
+
+        metrics.recordCacheAccess(ClientMetrics.CacheType.LANGUAGES, cached != null);
+
+        return Optional.ofNullable(cached);
+    }
+
+    /**
+     * Returns the {@link Language} matching the given {@code id} if found, like {@link #getLanguageByID(String)},
+     * but without recording a cache access in the {@linkplain #getMetrics() metrics}.
+     * This is how the library resolves the languages of the entities it receives, so that the cache hit ratio
+     * only reflects the lookups of callers.
+     *
+     * @param id is the ID of the desired language.
+     *
+     * @return the language matching the given {@code id}.
+     */
+    public Optional<Language> peekLanguageByID(String id) {
         return Optional.ofNullable(languageCache.get(id));
     }
 
+    /**
+     * Returns the {@link Language} matching the given {@code id} from cache if it is recent enough, or requests it otherwise,
+     * as described by the {@linkplain Builder#setLanguageRevalidation(RevalidationPolicy) language revalidation policy}.
+     *
+     * @param id is the ID of the desired language.
+     *
+     * @return a future that will complete with the language matching the given {@code id}.
+     */
+    public CompletableFuture<Language> getOrRevalidateLanguageByID(String id) {
+        return revalidate(Endpoint.LANGUAGE_SPECIFIC, id, getLanguageByID(id).orElse(null), languageRevalidation,
+                () -> requestLanguageByID(id));
+    }
+
     /**
      * Requests all {@link Language}s and refreshes them in the cache.
      *
@@ -112,21 +296,12 @@ public final class CodeBottleAPI {
         return new CodeBottleRequest<Collection<Language>>(this)
                 .to(Endpoint.LANGUAGES)
                 .makeGET()
-                .then(data -> {
-                    synchronized (languageCache) {
-                        return StreamSupport.stream(data.spliterator(), false)
-                                .map(node -> getLanguageByID(node.path("id").asText())
-                                        .map(entity -> entity.update(node))
-                                        .orElseGet(() -> {
-                                            final Language language = new Language(this, node);
-
-                                            languageCache.compute(language.getID(), (k, v) -> language);
-
-                                            return language;
-                                        }))
-                                .collect(Collectors.toList());
-                    }
-                });
+                .orIfNotModified(cachedOrNull(getLanguages()))
+                .thenEach(parser -> {
+                    final Language bound = entityMapper.readLanguage(parser);
+
+                    return merge(languageCache, bound.getID(), bound, Language::update);
+                }, Collections::unmodifiableList);
     }
 
     /**
@@ -150,15 +325,8 @@ public final class CodeBottleAPI {
         return new CodeBottleRequest<Category>(this)
                 .to(Endpoint.CATEGORY_SPECIFIC, id)
                 .makeGET()
-                .then(data -> {
-                    synchronized (categoryCache) {
-                        return getCategoryByID(id)
-                                .map(entity -> entity.update(data))
-                                .orElseGet(() -> categoryCache.compute(id,
-                                        // existing values don't matter here, as the cache access failed before
-                                        (k, v) -> new Category(this, data)));
-                    }
-                });
+                .orIfNotModified(categoryCache.get(id))
+                .thenRead(parser -> merge(categoryCache, id, entityMapper.readCategory(parser), Category::update));
     }
 
     /**
@@ -170,9 +338,40 @@ public final class CodeBottleAPI {
      * @return the category matching the given {@code id}.
      */
     public Optional<Category> getCategoryByID(String id) {
+        final Category cached = categoryCache.get(id);
+
+        metrics.recordCacheAccess(ClientMetrics.CacheType.CATEGORIES, cached != null);
+
+        return Optional.ofNullable(cached);
+    }
+
+    /**
+     * Returns the {@link Category} matching the given {@code id} if found, like {@link #getCategoryByID(String)},
+     * but without recording a cache access in the {@linkplain #getMetrics() metrics}.
+     * This is how the library resolves the categories of the entities it receives, so that the cache hit ratio
+     * only reflects the lookups of callers.
+     *
+     * @param id is the ID of the desired category.
+     *
+     * @return the category matching the given {@code id}.
+     */
+    public Optional<Category> peekCategoryByID(String id) {
         return Optional.ofNullable(categoryCache.get(id));
     }
 
+    /**
+     * Returns the {@link Category} matching the given {@code id} from cache if it is recent enough, or requests it otherwise,
+     * as described by the {@linkplain Builder#setCategoryRevalidation(RevalidationPolicy) category revalidation policy}.
+     *
+     * @param id is the ID of the desired category.
+     *
+     * @return a future that will complete with the category matching the given {@code id}.
+     */
+    public CompletableFuture<Category> getOrRevalidateCategoryByID(String id) {
+        return revalidate(Endpoint.CATEGORY_SPECIFIC, id, getCategoryByID(id).orElse(null), categoryRevalidation,
+                () -> requestCategoryByID(id));
+    }
+
     /**
      * Requests all {@link Category}s and refreshes them in the cache.
      *
@@ -182,21 +381,12 @@ public final class CodeBottleAPI {
         return new CodeBottleRequest<Collection<Category>>(this)
                 .to(Endpoint.CATEGORIES)
                 .makeGET()
-                .then(data -> {
-                    synchronized (categoryCache) {
-                        return StreamSupport.stream(data.spliterator(), false)
-                                .map(node -> getCategoryByID(node.path("id").asText())
-                                        .map(entity -> entity.update(node))
-                                        .orElseGet(() -> {
-                                            final Category category = new Category(this, node);
-
-                                            categoryCache.compute(category.getID(), (k, v) -> category);
-
-                                            return category;
-                                        }))
-                                .collect(Collectors.toList());
-                    }
-                });
+                .orIfNotModified(cachedOrNull(getCategories()))
+                .thenEach(parser -> {
+                    final Category bound = entityMapper.readCategory(parser);
+
+                    return merge(categoryCache, bound.getID(), bound, Category::update);
+                }, Collections::unmodifiableList);
     }
 
     /**
@@ -208,6 +398,54 @@ public final class CodeBottleAPI {
         return snippetCache.values();
     }
 
+    /**
+     * Returns all cached {@link Snippet}s in the given {@link Language}.
+     *
+     * @param languageId is the ID of the language.
+     *
+     * @return a {@link Collection} of the cached snippets in the language.
+     */
+    public Collection<Snippet> getSnippetsByLanguage(String languageId) {
+        return snippetIndex.getByLanguage(languageId);
+    }
+
+    /**
+     * Returns all cached {@link Snippet}s in the given {@link Category}.
+     *
+     * @param categoryId is the ID of the category.
+     *
+     * @return a {@link Collection} of the cached snippets in the category.
+     */
+    public Collection<Snippet> getSnippetsByCategory(String categoryId) {
+        return snippetIndex.getByCategory(categoryId);
+    }
+
+    /**
+     * Returns all cached {@link Snippet}s posted by the given user.
+     *
+     * @param username is the name of the user.
+     *
+     * @return a {@link Collection} of the cached snippets of the user.
+     */
+    public Collection<Snippet> getSnippetsByUsername(String username) {
+        return snippetIndex.getByUsername(username);
+    }
+
+    /**
+     * Searches the cached {@link Snippet}s for the given {@code query}, using the full-text index.
+     * Full-text search must be enabled using {@link Builder#setSearchScope(SnippetSearchIndex.Scope)}.
+     *
+     * @param query is the text to search for. Identifiers are split at underscores and camelCase humps.
+     * @param limit is the maximum number of results.
+     *
+     * @return the best matching snippets, best match first.
+     *
+     * @throws IllegalStateException if full-text search is disabled.
+     */
+    public List<SnippetSearchIndex.Hit> searchSnippets(String query, int limit) throws IllegalStateException {
+        return searchIndex.search(query, limit);
+    }
+
     /**
      * Returns the {@link Snippet.Revision} matching the given {@code id pair} if found in cache.
      * Before this method will ever not return {@link Optional#empty()}, you must {@linkplain #requestAllRevisions() request all revisions}.
@@ -241,9 +479,13 @@ public final class CodeBottleAPI {
      * @return a future that will complete with the requested {@link Snippet.Revision} after updating it in the cache.
      */
     public CompletableFuture<Snippet.Revision> requestSnippetRevisionByID(String snippetId, int id) {
-        return getSnippetByID(snippetId)
-                .orElseGet(() -> requestSnippetByID(snippetId).join())
-                .requestRevision(id);
+        return cachedOrRequested(snippetId)
+                .thenCompose(snippet -> snippet.requestRevision(id)
+                        .thenApply(revision -> {
+                            reweigh(snippet);
+
+                            return revision;
+                        }));
     }
 
     /**
@@ -254,7 +496,103 @@ public final class CodeBottleAPI {
      * @return the snippet matching the given {@code id}.
      */
     public Optional<Snippet> getSnippetByID(String id) {
-        return Optional.ofNullable(snippetCache.get(id));
+        final Snippet cached = snippetCache.get(id);
+
+        metrics.recordCacheAccess(ClientMetrics.CacheType.SNIPPETS, cached != null);
+
+        return Optional.ofNullable(cached);
+    }
+
+    /**
+     * Returns the {@link Snippet} matching the given {@code id} from cache, or requests it if it is not cached.
+     * This is how snippets that were evicted from the cache are transparently fetched again.
+     *
+     * @param id is the ID of the desired snippet.
+     *
+     * @return a future that will complete with the snippet matching the given {@code id}.
+     */
+    public CompletableFuture<Snippet> getOrRequestSnippetByID(String id) {
+        return getSnippetByID(id)
+                .map(CompletableFuture::completedFuture)
+                .orElseGet(() -> requestSnippetByID(id));
+    }
+
+    // like getOrRequestSnippetByID, for lookups of the library itself, which are not recorded in the metrics
+    private CompletableFuture<Snippet> cachedOrRequested(String id) {
+        final Snippet cached = snippetCache.get(id);
+
+        return cached != null ? CompletableFuture.completedFuture(cached) : requestSnippetByID(id);
+    }
+
+    /**
+     * Returns the {@link Snippet} matching the given {@code id} from cache if it is recent enough, or requests it otherwise,
+     * as described by the {@linkplain Builder#setSnippetRevalidation(RevalidationPolicy) snippet revalidation policy}.
+     * <p>
+     * Unlike {@link #getOrRequestSnippetByID(String)}, this bounds how old the returned snippet may be,
+     * while most calls are still served from the cache.
+     *
+     * @param id is the ID of the desired snippet.
+     *
+     * @return a future that will complete with the snippet matching the given {@code id}.
+     */
+    public CompletableFuture<Snippet> getOrRevalidateSnippetByID(String id) {
+        return revalidate(Endpoint.SNIPPET_SPECIFIC, id, getSnippetByID(id).orElse(null), snippetRevalidation,
+                () -> requestSnippetByID(id));
+    }
+
+    /**
+     * Looks up many {@link Snippet}s at once.
+     * <p>
+     * Snippets that were received no longer than the {@linkplain Builder#setSnippetFreshness(Duration) snippet freshness}
+     * ago are taken from the cache. All others are requested, with as many requests in flight as the http client's
+     * dispatcher allows per host; over HTTP/2, these requests share one multiplexed connection.
+     * A failed request does not fail the others; it is reported in {@link SnippetBatch#getFailures()} instead.
+     *
+     * @param ids are the IDs of the snippets to look up.
+     *
+     * @return a future that will complete with the found snippets and the failures, after updating the cache.
+     */
+    public CompletableFuture<SnippetBatch> requestSnippetsByIDs(Collection<String> ids) {
+        final Set<String> unique = new LinkedHashSet<>(ids);
+        final List<String> missing = new ArrayList<>();
+        // the fresh snippets are kept, as the requests for the missing ones may evict them from the cache
+        final Map<String, Snippet> fresh = new HashMap<>();
+        final Map<String, Throwable> failures = new ConcurrentHashMap<>();
+
+        for (String id : unique) {
+            final Snippet cached = snippetCache.get(id);
+            final boolean isFresh = cached != null && cached.isFresh(snippetFreshness);
+
+            metrics.recordCacheAccess(ClientMetrics.CacheType.SNIPPETS, isFresh);
+            if (isFresh)
+                fresh.put(id, cached);
+            else missing.add(id);
+        }
+
+        return FanOut.run(missing, id -> requestSnippetByID(id)
+                        .handle((snippet, throwable) -> {
+                            if (throwable != null)
+                                failures.put(id, throwable instanceof CompletionException && throwable.getCause() != null
+                                        ? throwable.getCause() : throwable);
+
+                            return snippet;
+                        }), httpClient.dispatcher().getMaxRequestsPerHost(), null)
+                .thenApply(requested -> {
+                    final Map<String, Snippet> snippets = new LinkedHashMap<>();
+                    int next = 0;
+
+                    // 'missing' is in the order of 'unique', so both are walked in one pass
+                    for (String id : unique) {
+                        final Snippet snippet = next < missing.size() && missing.get(next).equals(id)
+                                ? requested.get(next++)
+                                : fresh.get(id);
+
+                        if (snippet != null)
+                            snippets.put(id, snippet);
+                    }
+
+                    return new SnippetBatch(snippets, failures);
+                });
     }
 
     /**
@@ -268,15 +606,8 @@ public final class CodeBottleAPI {
         return new CodeBottleRequest<Snippet>(this)
                 .to(Endpoint.SNIPPET_SPECIFIC, id)
                 .makeGET()
-                .then(data -> {
-                    synchronized (snippetCache) {
-                        return getSnippetByID(id)
-                                .map(entity -> entity.update(data))
-                                .orElseGet(() -> snippetCache.compute(id,
-                                        // existing values don't matter here, as the cache access failed before
-                                        (k, v) -> new Snippet(this, data)));
-                    }
-                });
+                .orIfNotModified(snippetCache.get(id))
+                .thenRead(parser -> mergeSnippet(entityMapper.readSnippet(parser)));
     }
 
     /**
@@ -285,28 +616,44 @@ public final class CodeBottleAPI {
      * @return a future that will complete with all cached {@link Snippet.Revision}s.
      */
     public CompletableFuture<List<Snippet.Revision>> requestSnippetRevisions(String snippetId) {
-        return getSnippetByID(snippetId)
-                .orElseGet(() -> requestSnippetByID(snippetId).join())
-                .requestRevisions();
+        return cachedOrRequested(snippetId)
+                .thenCompose(snippet -> snippet.requestRevisions()
+                        .thenApply(revisions -> {
+                            reweigh(snippet);
+
+                            return revisions;
+                        }));
     }
 
     /**
      * Requests all {@link Snippet.Revision}s and refreshes them in the cache.
+     * As many revision requests are kept in flight as the http client's dispatcher allows per host.
      *
      * @return a future that will complete with all cached {@link Snippet.Revision}s.
      */
     public CompletableFuture<Collection<Snippet.Revision>> requestAllRevisions() {
-        return requestSnippets()
-                .thenApply(snippets -> {
-                    Collection<Snippet.Revision> yields = new ArrayList<>();
+        return requestAllRevisions(httpClient.dispatcher().getMaxRequestsPerHost(), null);
+    }
 
-                    (snippets.size() > 200 ? snippets.parallelStream() : snippets.stream())
-                            .map(Snippet::requestRevisions)
-                            .map(CompletableFuture::join)
-                            .forEach(yields::addAll);
+    /**
+     * Requests all {@link Snippet.Revision}s and refreshes them in the cache.
+     *
+     * @param maxInFlight is the maximum number of revision requests in flight at the same time.
+     * @param listener    is notified whenever the revisions of a snippet were requested, or {@code null}.
+     *
+     * @return a future that will complete with all cached {@link Snippet.Revision}s.
+     */
+    public CompletableFuture<Collection<Snippet.Revision>> requestAllRevisions(int maxInFlight, @Nullable FanOut.ProgressListener listener) {
+        return requestSnippets()
+                .thenCompose(snippets -> FanOut.run(snippets, snippet -> snippet.requestRevisions()
+                        .thenApply(revisions -> {
+                            reweigh(snippet);
 
-                    return yields;
-                });
+                            return revisions;
+                        }), maxInFlight, listener))
+                .thenApply(revisions -> revisions.stream()
+                        .flatMap(List::stream)
+                        .collect(Collectors.toList()));
     }
 
     /**
@@ -318,31 +665,322 @@ public final class CodeBottleAPI {
         return new CodeBottleRequest<Collection<Snippet>>(this)
                 .to(Endpoint.SNIPPETS)
                 .makeGET()
-                .then(data -> {
-                    synchronized (snippetCache) {
-                        return StreamSupport.stream(data.spliterator(), false)
-                                .map(node -> getSnippetByID(node.path("id").asText())
-                                        .map(entity -> entity.update(node))
-                                        .orElseGet(() -> {
-                                            final Snippet snippet = new Snippet(this, node);
-
-                                            snippetCache.compute(snippet.getID(), (k, v) -> snippet);
-
-                                            return snippet;
-                                        }))
-                                .collect(Collectors.toList());
-                    }
-                });
+                .orIfNotModified(cachedOrNull(getSnippets()))
+                .thenEach(parser -> mergeSnippet(entityMapper.readSnippet(parser)), Collections::unmodifiableList);
+    }
+
+    /**
+     * Returns a publisher that requests all {@link Snippet}s, and emits them as they are received and refreshed in the cache.
+     * <p>
+     * Unlike {@link #requestSnippets()}, snippets can be processed before the whole response was received,
+     * and the response is only read as fast as the subscriber requests snippets.
+     * Every subscriber sends its own request, once it first signals demand.
+     *
+     * @return a publisher of all {@link Snippet}s.
+     */
+    public Publisher<Snippet> publishSnippets() {
+        return new CodeBottleRequest<Snippet>(this)
+                .to(Endpoint.SNIPPETS)
+                .makeGET()
+                .thenPublish(parser -> mergeSnippet(entityMapper.readSnippet(parser)));
+    }
+
+    /**
+     * Returns a publisher that requests all {@link Snippet.Revision}s, and emits them as they are received and refreshed in the cache.
+     * <p>
+     * The revisions of a snippet are only requested while the demand of the subscriber is not met by revisions
+     * that were already received, so a slow subscriber also slows down the revision requests.
+     * Revisions are emitted in the order their requests complete.
+     *
+     * @param maxInFlight is the maximum number of revision requests in flight at the same time.
+     *
+     * @return a publisher of all {@link Snippet.Revision}s.
+     */
+    public Publisher<Snippet.Revision> publishAllRevisions(int maxInFlight) {
+        return FanOut.publish(publishSnippets(), snippet -> snippet.requestRevisions()
+                .thenApply(revisions -> {
+                    reweigh(snippet);
+
+                    return revisions;
+                }), maxInFlight);
+    }
+
+    Snippet mergeSnippet(Snippet bound) {
+        // computing the entry also updates its weight in a bounded cache
+        return snippetCache.compute(bound.getID(), (id, cached) -> {
+            final Snippet merged = cached == null ? bound : cached.update(bound);
+
+            // indexing inside the computation cannot race with the eviction of the same entry
+            snippetIndex.add(merged);
+            searchIndex.add(merged);
+
+            return merged;
+        });
+    }
+
+    /*
+    Merges a freshly bound entity into the given cache.
+    The merge is atomic per key only, so that concurrent responses never wait for each other
+    unless they contain the same entity, and readers of the cache are never blocked.
+     */
+    private static <T> T merge(Map<String, T> cache, String id, T bound, BiFunction<T, T, T> update) {
+        return cache.compute(id, (key, cached) -> cached == null ? bound : update.apply(cached, bound));
+    }
+
+    void reweigh(Snippet snippet) {
+        // recomputing an entry updates its weight, e.g. after its revisions were fetched
+        snippetCache.computeIfPresent(snippet.getID(), (id, cached) -> {
+            if (cached == snippet)
+                // fetched revisions are searchable too, depending on the scope
+                searchIndex.add(snippet);
+
+            return cached;
+        });
+    }
+
+    @Nullable
+    Snippet removeSnippet(String id) {
+        // the removal listener unlinks the snippet from the indexes
+        return snippetCache.remove(id);
+    }
+
+    // entities restored from a snapshot have no age, so they are treated like expired ones
+    private <T extends AbstractEntity> CompletableFuture<T> revalidate(
+            Endpoint endpoint,
+            String id,
+            @Nullable T cached,
+            RevalidationPolicy policy,
+            Supplier<CompletableFuture<T>> request
+    ) {
+        if (cached == null || !cached.isFresh(policy.getStaleness()))
+            return request.get();
+        if (cached.isFresh(policy.getFreshness()))
+            return CompletableFuture.completedFuture(cached);
+
+        final String key = endpoint.name() + ' ' + id;
+
+        // a refresh that completed between the checks above and claiming the key must not be repeated
+        if (revalidating.add(key)) {
+            if (cached.isFresh(policy.getFreshness()))
+                revalidating.remove(key);
+            else startRevalidation(key, request);
+        }
+
+        return CompletableFuture.completedFuture(cached);
+    }
+
+    // a failed refresh is recorded by the metrics, and the stale entity is served until the next one
+    private <T> void startRevalidation(String key, Supplier<CompletableFuture<T>> request) {
+        try {
+            request.get().whenComplete((entity, throwable) -> revalidating.remove(key));
+        } catch (RuntimeException e) {
+            revalidating.remove(key);
+        }
+    }
+
+    @Nullable
+    private static <T> Collection<T> cachedOrNull(Collection<T> cached) {
+        return cached.isEmpty() ? null : Collections.unmodifiableCollection(cached);
     }
 
     public OkHttpClient getHttpClient() {
         return httpClient;
     }
 
+    /**
+     * Returns the {@link EntityMapper} that binds entities for this API instance.
+     *
+     * @return the entity mapper.
+     */
+    public EntityMapper getEntityMapper() {
+        return entityMapper;
+    }
+
+    /**
+     * Returns the {@link ValidatorCache} that stores the cache validators of previous responses.
+     *
+     * @return the validator cache.
+     */
+    public ValidatorCache getValidatorCache() {
+        return validatorCache;
+    }
+
+    /**
+     * Returns the {@link InFlightRequests} that identical concurrent requests are coalesced with.
+     *
+     * @return the in-flight request table.
+     */
+    public InFlightRequests getInFlightRequests() {
+        return inFlightRequests;
+    }
+
+    /**
+     * Returns the {@link SnippetIndex} that indexes the cached snippets by language, category and username.
+     *
+     * @return the snippet index.
+     */
+    public SnippetIndex getSnippetIndex() {
+        return snippetIndex;
+    }
+
+    /**
+     * Returns the {@link SnippetSearchIndex} that indexes the cached snippets for full-text search.
+     *
+     * @return the full-text index.
+     */
+    public SnippetSearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    /**
+     * Returns the {@link RevisionStorage} that stores the code of all cached revisions.
+     *
+     * @return the revision storage.
+     */
+    public RevisionStorage getRevisionStorage() {
+        return revisionStorage;
+    }
+
+    /**
+     * Returns the {@link CodeArena} that stores code off-heap, if {@linkplain Builder#setOffHeapCode(boolean) enabled}.
+     *
+     * @return the code arena.
+     */
+    public Optional<CodeArena> getCodeArena() {
+        return Optional.ofNullable(codeArena);
+    }
+
+    /**
+     * Returns the {@link SnippetSync} that keeps the snippet cache in sync with the server, and reports the changes.
+     *
+     * @return the snippet sync.
+     */
+    public SnippetSync getSnippetSync() {
+        return snippetSync;
+    }
+
+    /**
+     * Returns the {@link ClientMetrics} that record the requests of this API and the accesses to its caches.
+     *
+     * @return the metrics.
+     */
+    public ClientMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the {@link RateLimiter} that all requests take a permit from before they are dispatched, if present.
+     *
+     * @return the rate limiter.
+     */
+    public Optional<RateLimiter> getRateLimiter() {
+        return Optional.ofNullable(rateLimiter);
+    }
+
+    /**
+     * Returns how often an idempotent request is retried after a network failure
+     * or a {@link io.codebottle.api.rest.HTTPCodes#TOO_MANY_REQUESTS}/{@link io.codebottle.api.rest.HTTPCodes#SERVICE_UNAVAILABLE} response.
+     *
+     * @return the maximum number of retries.
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Returns the base URL that all {@link Endpoint}s are resolved against.
+     *
+     * @return the base URL.
+     */
+    public HttpUrl getBaseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * Returns whether the fields of snippets received from the API are decoded when they are first read.
+     *
+     * @return whether lazy snippet fields are enabled.
+     * @see Builder#setLazySnippetFields(boolean)
+     */
+    public boolean isLazySnippetFields() {
+        return lazySnippetFields;
+    }
+
+    public RevalidationPolicy getLanguageRevalidation() {
+        return languageRevalidation;
+    }
+
+    public RevalidationPolicy getCategoryRevalidation() {
+        return categoryRevalidation;
+    }
+
+    public RevalidationPolicy getSnippetRevalidation() {
+        return snippetRevalidation;
+    }
+
+    /**
+     * Returns how long a snippet received from the API is served from the cache by {@link #requestSnippetsByIDs(Collection)}.
+     *
+     * @return the snippet freshness.
+     */
+    public Duration getSnippetFreshness() {
+        return snippetFreshness;
+    }
+
+    /**
+     * Returns the scheduler that delayed requests, e.g. retries, are dispatched with.
+     * It is backed by a single daemon thread that is only created once it is needed.
+     *
+     * @return the scheduler.
+     */
+    public ScheduledExecutorService getScheduler() {
+        ScheduledExecutorService scheduler = this.scheduler;
+
+        if (scheduler == null)
+            synchronized (this) {
+                scheduler = this.scheduler;
+
+                if (scheduler == null)
+                    this.scheduler = scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        final Thread thread = new Thread(runnable, "CodeBottleAPI Scheduler");
+                        thread.setDaemon(true);
+
+                        return thread;
+                    });
+            }
+
+        return scheduler;
+    }
+
+    /**
+     * Returns the {@link Executor} that responses are parsed and mapped on.
+     *
+     * @return the executor for request completion.
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
     public final static class Builder {
         @Deprecated
         private @Nullable String token = null;
         private OkHttpClient httpClient = new OkHttpClient.Builder().build();
+        private @Nullable Integer maxRequests = null;
+        private @Nullable Integer maxRequestsPerHost = null;
+        private @Nullable Executor executor = null;
+        private CachePolicy snippetCachePolicy = CachePolicy.unbounded();
+        private @Nullable Path snapshotFile = null;
+        private @Nullable RateLimiter rateLimiter = null;
+        private int maxRetries = 3;
+        private SnippetSearchIndex.Scope searchScope = SnippetSearchIndex.Scope.NONE;
+        private int revisionKeyframeInterval = 8;
+        private boolean offHeapCode = false;
+        private Duration snippetFreshness = Duration.ofMinutes(1);
+        private HttpUrl baseUrl = Endpoint.DEFAULT_BASE_URL;
+        private boolean lazySnippetFields = false;
+        private RevalidationPolicy languageRevalidation = RevalidationPolicy.of(Duration.ofHours(1), Duration.ofDays(1));
+        private RevalidationPolicy categoryRevalidation = RevalidationPolicy.of(Duration.ofHours(1), Duration.ofDays(1));
+        private RevalidationPolicy snippetRevalidation = RevalidationPolicy.of(Duration.ofMinutes(1), Duration.ofMinutes(10));
 
         @Deprecated
         public Optional<String> getToken() {
@@ -366,8 +1004,292 @@ public final class CodeBottleAPI {
             this.httpClient = httpClient;
         }
 
-        public CodeBottleAPI build() {
-            return new CodeBottleAPI(token, httpClient);
+        public Optional<Integer> getMaxRequests() {
+            return Optional.ofNullable(maxRequests);
+        }
+
+        /**
+         * Sets the maximum number of requests that may be in flight at once.
+         * If not set, the limit of the {@linkplain #setHttpClient(OkHttpClient) http client}'s dispatcher is used.
+         *
+         * @param maxRequests is the maximum number of concurrent requests.
+         */
+        public void setMaxRequests(int maxRequests) {
+            if (maxRequests < 1)
+                throw new IllegalArgumentException("maxRequests must be at least 1");
+
+            this.maxRequests = maxRequests;
+        }
+
+        public Optional<Integer> getMaxRequestsPerHost() {
+            return Optional.ofNullable(maxRequestsPerHost);
+        }
+
+        /**
+         * Sets the maximum number of requests that may be in flight at once for each host.
+         * If not set, the limit of the {@linkplain #setHttpClient(OkHttpClient) http client}'s dispatcher is used.
+         *
+         * @param maxRequestsPerHost is the maximum number of concurrent requests per host.
+         */
+        public void setMaxRequestsPerHost(int maxRequestsPerHost) {
+            if (maxRequestsPerHost < 1)
+                throw new IllegalArgumentException("maxRequestsPerHost must be at least 1");
+
+            this.maxRequestsPerHost = maxRequestsPerHost;
+        }
+
+        public Optional<Executor> getExecutor() {
+            return Optional.ofNullable(executor);
+        }
+
+        /**
+         * Sets the {@link Executor} that responses are parsed and mapped on.
+         * If not set, responses are handled directly on the threads of the http client's dispatcher.
+         *
+         * @param executor is the executor for request completion.
+         */
+        public void setExecutor(@Nullable Executor executor) {
+            this.executor = executor;
+        }
+
+        /**
+         * Sets the {@linkplain #setExecutor(Executor) executor} to one that starts a new virtual thread for every request.
+         *
+         * @throws UnsupportedOperationException if the running JVM does not support virtual threads (requires JDK 21+).
+         */
+        public void useVirtualThreads() throws UnsupportedOperationException {
+            setExecutor(VirtualThreads.newVirtualThreadPerTaskExecutor()
+                    .orElseThrow(() -> new UnsupportedOperationException("Virtual threads require JDK 21 or newer")));
+        }
+
+        public CachePolicy getSnippetCachePolicy() {
+            return snippetCachePolicy;
+        }
+
+        /**
+         * Sets the {@link CachePolicy} for cached {@link Snippet}s and their revisions.
+         * Languages and categories are always kept in cache.
+         * By default, the snippet cache is {@linkplain CachePolicy#unbounded() unbounded}.
+         *
+         * @param snippetCachePolicy is the policy for the snippet cache.
+         */
+        public void setSnippetCachePolicy(CachePolicy snippetCachePolicy) {
+            this.snippetCachePolicy = snippetCachePolicy;
+        }
+
+        public Optional<Path> getSnapshotFile() {
+            return Optional.ofNullable(snapshotFile);
+        }
+
+        /**
+         * Sets a snapshot file to restore the cache from on construction.
+         * If the file exists and is a valid snapshot, the API starts with the restored cache,
+         * {@link CodeBottleAPI#lazyLoading} is completed immediately and the cache is {@linkplain CodeBottleAPI#snapshotRevalidation revalidated}
+         * in the background.
+         * Otherwise, the API starts with an empty cache.
+         * <p>
+         * Snapshots are written using {@link CodeBottleAPI#saveSnapshot(Path)}.
+         *
+         * @param snapshotFile is the file to restore the cache from.
+         */
+        public void setSnapshotFile(@Nullable Path snapshotFile) {
+            this.snapshotFile = snapshotFile;
+        }
+
+        public Optional<RateLimiter> getRateLimiter() {
+            return Optional.ofNullable(rateLimiter);
+        }
+
+        /**
+         * Sets the {@link RateLimiter} that all requests take a permit from before they are dispatched.
+         * By default, requests are not rate limited.
+         *
+         * @param rateLimiter is the rate limiter, or {@code null} to disable rate limiting.
+         */
+        public void setRateLimiter(@Nullable RateLimiter rateLimiter) {
+            this.rateLimiter = rateLimiter;
+        }
+
+        public int getMaxRetries() {
+            return maxRetries;
+        }
+
+        /**
+         * Sets how often an idempotent request is retried after a network failure or a throttling response.
+         * Retries are delayed with jittered exponential backoff, and never sooner than the server's {@code Retry-After}.
+         * Defaults to {@code 3}.
+         *
+         * @param maxRetries is the maximum number of retries, or {@code 0} to never retry.
+         */
+        public void setMaxRetries(int maxRetries) {
+            if (maxRetries < 0)
+                throw new IllegalArgumentException("maxRetries must not be negative");
+
+            this.maxRetries = maxRetries;
+        }
+
+        public SnippetSearchIndex.Scope getSearchScope() {
+            return searchScope;
+        }
+
+        /**
+         * Sets what is indexed for {@linkplain CodeBottleAPI#searchSnippets(String, int) full-text search}.
+         * Indexing costs memory and time on every cache update, so it is disabled by default.
+         *
+         * @param searchScope is the search scope, or {@link SnippetSearchIndex.Scope#NONE} to disable full-text search.
+         */
+        public void setSearchScope(SnippetSearchIndex.Scope searchScope) {
+            this.searchScope = searchScope;
+        }
+
+        public int getRevisionKeyframeInterval() {
+            return revisionKeyframeInterval;
+        }
+
+        /**
+         * Sets how often the code of a revision is stored in full.
+         * All revisions in between are stored as line-based deltas against the previous revision, and decoded on demand.
+         * Defaults to {@code 8}.
+         *
+         * @param revisionKeyframeInterval is the distance between two full revisions, or {@code 1} to store every revision in full.
+         */
+        public void setRevisionKeyframeInterval(int revisionKeyframeInterval) {
+            if (revisionKeyframeInterval < 1)
+                throw new IllegalArgumentException("revisionKeyframeInterval must be positive");
+
+            this.revisionKeyframeInterval = revisionKeyframeInterval;
+        }
+
+        public boolean isOffHeapCode() {
+            return offHeapCode;
+        }
+
+        /**
+         * Sets whether the code of snippets and revisions is stored off-heap as UTF-8, instead of as {@link String}s.
+         * This keeps the heap small for large caches, at the cost of decoding the code whenever it is read.
+         * The code of a snippet that was removed from the cache is released; it is copied to the heap first,
+         * so that the snippet stays readable as long as it is referenced.
+         * Defaults to {@code false}.
+         *
+         * @param offHeapCode is whether to store code off-heap.
+         */
+        public void setOffHeapCode(boolean offHeapCode) {
+            this.offHeapCode = offHeapCode;
+        }
+
+        public Duration getSnippetFreshness() {
+            return snippetFreshness;
+        }
+
+        /**
+         * Sets how long a snippet received from the API is served from the cache by {@link CodeBottleAPI#requestSnippetsByIDs(Collection)}
+         * before it is requested again.
+         * Defaults to one minute.
+         *
+         * @param snippetFreshness is the snippet freshness, or {@link Duration#ZERO} to always request snippets.
+         */
+        public void setSnippetFreshness(Duration snippetFreshness) {
+            if (snippetFreshness.isNegative())
+                throw new IllegalArgumentException("snippetFreshness must not be negative");
+
+            this.snippetFreshness = snippetFreshness;
+        }
+
+        public HttpUrl getBaseUrl() {
+            return baseUrl;
+        }
+
+        /**
+         * Sets the base URL that all {@link Endpoint}s are resolved against, e.g. to use a local mirror of the API.
+         * Defaults to {@link Endpoint#DEFAULT_BASE_URL}.
+         *
+         * @param baseUrl is the base URL.
+         */
+        public void setBaseUrl(HttpUrl baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+
+        public boolean isLazySnippetFields() {
+            return lazySnippetFields;
+        }
+
+        /**
+         * Sets whether snippets received from the API keep their data as compact UTF-8 JSON, and decode each field when it is first read.
+         * This saves most of the work and allocations of receiving snippets when only a few of their fields are read,
+         * e.g. for listings, at the cost of decoding the code whenever it is read.
+         * Full-text search reads all indexed fields when a snippet is received, so it should be disabled with this mode.
+         * Cannot be combined with {@linkplain #setOffHeapCode(boolean) off-heap code}.
+         * Defaults to {@code false}.
+         *
+         * @param lazySnippetFields is whether to decode snippet fields on demand.
+         */
+        public void setLazySnippetFields(boolean lazySnippetFields) {
+            this.lazySnippetFields = lazySnippetFields;
+        }
+
+        public RevalidationPolicy getLanguageRevalidation() {
+            return languageRevalidation;
+        }
+
+        /**
+         * Sets how long a cached {@link Language} is served by {@link CodeBottleAPI#getOrRevalidateLanguageByID(String)}.
+         * Defaults to fresh for an hour, and stale for a day.
+         *
+         * @param languageRevalidation is the revalidation policy for languages.
+         */
+        public void setLanguageRevalidation(RevalidationPolicy languageRevalidation) {
+            this.languageRevalidation = languageRevalidation;
+        }
+
+        public RevalidationPolicy getCategoryRevalidation() {
+            return categoryRevalidation;
+        }
+
+        /**
+         * Sets how long a cached {@link Category} is served by {@link CodeBottleAPI#getOrRevalidateCategoryByID(String)}.
+         * Defaults to fresh for an hour, and stale for a day.
+         *
+         * @param categoryRevalidation is the revalidation policy for categories.
+         */
+        public void setCategoryRevalidation(RevalidationPolicy categoryRevalidation) {
+            this.categoryRevalidation = categoryRevalidation;
+        }
+
+        public RevalidationPolicy getSnippetRevalidation() {
+            return snippetRevalidation;
+        }
+
+        /**
+         * Sets how long a cached {@link Snippet} is served by {@link CodeBottleAPI#getOrRevalidateSnippetByID(String)}.
+         * Defaults to fresh for a minute, and stale for ten minutes.
+         *
+         * @param snippetRevalidation is the revalidation policy for snippets.
+         */
+        public void setSnippetRevalidation(RevalidationPolicy snippetRevalidation) {
+            this.snippetRevalidation = snippetRevalidation;
+        }
+
+        public CodeBottleAPI build() throws IllegalStateException {
+            if (lazySnippetFields && offHeapCode)
+                throw new IllegalStateException("Lazy snippet fields cannot be combined with off-heap code");
+
+            OkHttpClient httpClient = this.httpClient;
+
+            if (maxRequests != null || maxRequestsPerHost != null) {
+                // use an own dispatcher, so that the limits don't leak into a shared client
+                final Dispatcher defaults = httpClient.dispatcher();
+                final Dispatcher dispatcher = new Dispatcher();
+
+                dispatcher.setMaxRequests(maxRequests != null ? maxRequests : defaults.getMaxRequests());
+                dispatcher.setMaxRequestsPerHost(maxRequestsPerHost != null ? maxRequestsPerHost : defaults.getMaxRequestsPerHost());
+
+                httpClient = httpClient.newBuilder()
+                        .dispatcher(dispatcher)
+                        .build();
+            }
+
+            return new CodeBottleAPI(token, httpClient, executor != null ? executor : Runnable::run, snippetCachePolicy, snapshotFile, rateLimiter, maxRetries, searchScope, revisionKeyframeInterval, offHeapCode, snippetFreshness, baseUrl, lazySnippetFields,
+                    languageRevalidation, categoryRevalidation, snippetRevalidation);
         }
     }
 }
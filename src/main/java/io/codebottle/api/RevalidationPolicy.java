@@ -0,0 +1,69 @@
+package io.codebottle.api;
+
+import java.time.Duration;
+
+import io.codebottle.api.model.AbstractEntity;
+
+/**
+ * Describes how long a cached entity is served by the {@code getOrRevalidate...} methods of {@link CodeBottleAPI}, by its
+ * {@linkplain AbstractEntity#getAge() age}:
+ * <ul>
+ * <li>up to the {@linkplain #getFreshness() freshness}, the cached entity is returned</li>
+ * <li>up to the {@linkplain #getStaleness() staleness}, the cached entity is returned, and refreshed once in the background</li>
+ * <li>beyond that, or if the entity is not cached, it is requested, and the caller waits for the response</li>
+ * </ul>
+ */
+public final class RevalidationPolicy {
+    private final Duration freshness;
+    private final Duration staleness;
+
+    private RevalidationPolicy(Duration freshness, Duration staleness) {
+        this.freshness = freshness;
+        this.staleness = staleness;
+    }
+
+    /**
+     * Creates a policy with the given windows.
+     *
+     * @param freshness is how long an entity is served without refreshing it, or {@link Duration#ZERO} to always refresh it.
+     * @param staleness is how long an entity is served while refreshing it in the background; at least the {@code freshness}.
+     *
+     * @return a new policy.
+     *
+     * @throws IllegalArgumentException if a window is negative, or the staleness is shorter than the freshness.
+     */
+    public static RevalidationPolicy of(Duration freshness, Duration staleness) throws IllegalArgumentException {
+        if (freshness.isNegative())
+            throw new IllegalArgumentException("freshness must not be negative");
+        if (staleness.compareTo(freshness) < 0)
+            throw new IllegalArgumentException("staleness must not be shorter than freshness");
+
+        return new RevalidationPolicy(freshness, staleness);
+    }
+
+    /**
+     * Creates a policy that never serves stale entities, and always waits for the response once an entity is older than the {@code freshness}.
+     *
+     * @param freshness is how long an entity is served without refreshing it.
+     *
+     * @return a new policy.
+     *
+     * @throws IllegalArgumentException if the freshness is negative.
+     */
+    public static RevalidationPolicy freshOnly(Duration freshness) throws IllegalArgumentException {
+        return of(freshness, freshness);
+    }
+
+    public Duration getFreshness() {
+        return freshness;
+    }
+
+    public Duration getStaleness() {
+        return staleness;
+    }
+
+    @Override
+    public String toString() {
+        return "RevalidationPolicy{freshness=" + freshness + ", staleness=" + staleness + '}';
+    }
+}
@@ -0,0 +1,47 @@
+package io.codebottle.api;
+
+import java.util.Collections;
+import java.util.Map;
+
+import io.codebottle.api.model.Snippet;
+
+/**
+ * The result of {@linkplain CodeBottleAPI#requestSnippetsByIDs(java.util.Collection) looking up many snippets at once}.
+ * Every requested ID is either found in {@link #getSnippets()} or in {@link #getFailures()}.
+ */
+public final class SnippetBatch {
+    private final Map<String, Snippet> snippets;
+    private final Map<String, Throwable> failures;
+
+    SnippetBatch(Map<String, Snippet> snippets, Map<String, Throwable> failures) {
+        this.snippets = Collections.unmodifiableMap(snippets);
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * Returns the found snippets by their ID, in the order their IDs were given.
+     *
+     * @return the found snippets.
+     */
+    public Map<String, Snippet> getSnippets() {
+        return snippets;
+    }
+
+    /**
+     * Returns the reasons why the remaining snippets could not be requested, by their ID.
+     *
+     * @return the failures.
+     */
+    public Map<String, Throwable> getFailures() {
+        return failures;
+    }
+
+    public boolean isComplete() {
+        return failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "SnippetBatch{snippets=" + snippets.size() + ", failures=" + failures.size() + '}';
+    }
+}
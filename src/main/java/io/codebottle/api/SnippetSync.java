@@ -0,0 +1,306 @@
+package io.codebottle.api;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.codebottle.api.model.Snippet;
+import io.codebottle.api.rest.CodeBottleRequest;
+import io.codebottle.api.rest.Endpoint;
+import io.codebottle.api.rest.FanOut;
+import io.codebottle.api.rest.ValidatorCache;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keeps the snippet cache in sync with the server, and tells {@linkplain Listener listeners} what changed.
+ * <p>
+ * Every sync cycle requests all snippets and compares their {@link Snippet#getUpdatedAt() updatedAt} with the
+ * value seen in the previous cycle. Revisions are only requested for snippets that were created or updated,
+ * and snippets that disappeared from the server are removed from the cache.
+ * Listeners receive one {@link Event} per change, so their work is proportional to the number of changes.
+ */
+public final class SnippetSync {
+    // stands in for the response when the snippet list was not modified since the previous cycle
+    private static final Collection<Snippet> NOT_MODIFIED = Collections.emptyList();
+
+    private final CodeBottleAPI context;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Map<String, Instant> known = new ConcurrentHashMap<>();
+    private final AtomicReference<CompletableFuture<List<Event>>> running = new AtomicReference<>();
+    private volatile boolean fetchRevisions = true;
+    private volatile boolean seeded = false;
+    private volatile @Nullable ValidatorCache.Validator lastValidator = null;
+    private volatile @Nullable Duration interval = null;
+    private volatile @Nullable ScheduledFuture<?> nextCycle = null;
+
+    SnippetSync(CodeBottleAPI context) {
+        this.context = context;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public boolean isFetchRevisions() {
+        return fetchRevisions;
+    }
+
+    /**
+     * Sets whether the revisions of created and updated snippets are requested during a sync cycle.
+     * Defaults to {@code true}.
+     *
+     * @param fetchRevisions is whether to request revisions of changed snippets.
+     */
+    public void setFetchRevisions(boolean fetchRevisions) {
+        this.fetchRevisions = fetchRevisions;
+    }
+
+    /**
+     * Runs one sync cycle. If a cycle is already running, the running cycle is returned instead.
+     *
+     * @return a future that will complete with the changes found in the cycle, after all listeners were notified.
+     */
+    public CompletableFuture<List<Event>> sync() {
+        final CompletableFuture<List<Event>> cycle = new CompletableFuture<>();
+
+        if (!running.compareAndSet(null, cycle))
+            return Optional.ofNullable(running.get()).orElseGet(this::sync);
+
+        runCycle().whenComplete((events, throwable) -> {
+            running.set(null);
+
+            if (throwable != null)
+                cycle.completeExceptionally(throwable);
+            else cycle.complete(events);
+        });
+
+        return cycle;
+    }
+
+    /**
+     * Starts syncing periodically. The next cycle starts the given {@code interval} after the previous one completed.
+     * Failed cycles are reported to {@link Listener#onSyncFailed(Throwable)}, and do not stop syncing.
+     *
+     * @param interval is the time between two sync cycles.
+     */
+    public synchronized void start(Duration interval) {
+        stop();
+
+        this.interval = interval;
+        schedule(0);
+    }
+
+    /**
+     * Stops syncing periodically. A cycle that is already running is completed.
+     */
+    public synchronized void stop() {
+        final ScheduledFuture<?> nextCycle = this.nextCycle;
+
+        this.interval = null;
+        this.nextCycle = null;
+        if (nextCycle != null)
+            nextCycle.cancel(false);
+    }
+
+    public boolean isRunning() {
+        return interval != null;
+    }
+
+    private synchronized void schedule(long delayNanos) {
+        if (interval == null)
+            return;
+
+        nextCycle = context.getScheduler().schedule(() -> sync().whenComplete((events, throwable) -> {
+            if (throwable != null)
+                listeners.forEach(listener -> listener.onSyncFailed(throwable));
+
+            final Duration interval = this.interval;
+            if (interval != null)
+                schedule(interval.toNanos());
+        }), delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private CompletableFuture<List<Event>> runCycle() {
+        if (!seeded) {
+            // snippets that are already cached are not reported as created
+            context.getSnippets().forEach(snippet -> known.put(snippet.getID(), snippet.getUpdatedAt()));
+            seeded = true;
+        }
+
+        final String url = Endpoint.SNIPPETS.url(context.getBaseUrl()).toString();
+        // if someone else refreshed the list since our previous cycle, their changes are only visible in a full response
+        final boolean conditional = lastValidator != null
+                && lastValidator == context.getValidatorCache().get(url).orElse(null);
+
+        return new CodeBottleRequest<Collection<Snippet>>(context)
+                .to(Endpoint.SNIPPETS)
+                .makeGET()
+                // whether the cycle is conditional depends on its own previous response, not on someone else's request
+                .unshared()
+                .orIfNotModified(conditional ? NOT_MODIFIED : null)
+                .thenEach(parser -> context.mergeSnippet(context.getEntityMapper().readSnippet(parser)), Collections::unmodifiableList)
+                .thenCompose(snippets -> {
+                    lastValidator = context.getValidatorCache().get(url).orElse(null);
+
+                    return snippets == NOT_MODIFIED
+                            ? CompletableFuture.completedFuture(Collections.<Event>emptyList())
+                            : compare(snippets);
+                })
+                .thenApply(events -> {
+                    for (Event event : events)
+                        for (Listener listener : listeners)
+                            listener.onEvent(event);
+
+                    return events;
+                });
+    }
+
+    private CompletableFuture<List<Event>> compare(Collection<Snippet> snippets) {
+        final List<Event> events = new ArrayList<>();
+        final List<Snippet> changed = new ArrayList<>();
+        final Set<String> seen = new HashSet<>(snippets.size() * 2);
+
+        for (Snippet snippet : snippets) {
+            seen.add(snippet.getID());
+
+            final boolean existed = known.containsKey(snippet.getID());
+            final Instant previous = known.put(snippet.getID(), snippet.getUpdatedAt());
+
+            if (!existed) {
+                events.add(new Event(Type.CREATED, snippet.getID(), snippet, null));
+                changed.add(snippet);
+            } else if (!Objects.equals(previous, snippet.getUpdatedAt())) {
+                events.add(new Event(Type.UPDATED, snippet.getID(), snippet, previous));
+                changed.add(snippet);
+            }
+        }
+
+        for (String id : new ArrayList<>(known.keySet()))
+            if (!seen.contains(id)) {
+                final Instant previous = known.remove(id);
+
+                events.add(new Event(Type.DELETED, id, context.removeSnippet(id), previous));
+            }
+
+        if (!fetchRevisions || changed.isEmpty())
+            return CompletableFuture.completedFuture(events);
+
+        return FanOut.run(changed, snippet -> snippet.requestRevisions()
+                        .thenApply(revisions -> {
+                            context.reweigh(snippet);
+
+                            return revisions;
+                        }), context.getHttpClient().dispatcher().getMaxRequestsPerHost(), null)
+                .thenApply(revisions -> events);
+    }
+
+    /**
+     * The kind of a change.
+     */
+    public enum Type {
+        /**
+         * The snippet was seen for the first time.
+         */
+        CREATED,
+
+        /**
+         * The {@link Snippet#getUpdatedAt() updatedAt} of the snippet changed.
+         */
+        UPDATED,
+
+        /**
+         * The snippet no longer exists on the server, and was removed from the cache.
+         */
+        DELETED
+    }
+
+    /**
+     * A change of one snippet, found during a sync cycle.
+     */
+    public static final class Event {
+        private final Type type;
+        private final String snippetId;
+        private final @Nullable Snippet snippet;
+        private final @Nullable Instant previousUpdatedAt;
+
+        private Event(Type type, String snippetId, @Nullable Snippet snippet, @Nullable Instant previousUpdatedAt) {
+            this.type = type;
+            this.snippetId = snippetId;
+            this.snippet = snippet;
+            this.previousUpdatedAt = previousUpdatedAt;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public String getSnippetID() {
+            return snippetId;
+        }
+
+        /**
+         * Returns the changed snippet. For {@link Type#DELETED} events, this is the snippet that was removed from the cache,
+         * if it was still cached.
+         *
+         * @return the changed snippet.
+         */
+        public Optional<Snippet> getSnippet() {
+            return Optional.ofNullable(snippet);
+        }
+
+        /**
+         * Returns the {@link Snippet#getUpdatedAt() updatedAt} of the snippet before the change.
+         * Empty for {@link Type#CREATED} events.
+         *
+         * @return the previous updatedAt.
+         */
+        public Optional<Instant> getPreviousUpdatedAt() {
+            return Optional.ofNullable(previousUpdatedAt);
+        }
+
+        @Override
+        public String toString() {
+            return type + " " + snippetId;
+        }
+    }
+
+    /**
+     * Is notified about the changes found by a {@link SnippetSync}.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * Called once for every change, after the cache was updated.
+         * Listeners are called in the order of the received snippets, on the thread that completes the sync cycle.
+         *
+         * @param event is the change.
+         */
+        void onEvent(Event event);
+
+        /**
+         * Called when a periodic sync cycle failed.
+         *
+         * @param throwable is the reason of the failure.
+         */
+        default void onSyncFailed(Throwable throwable) {
+        }
+    }
+}
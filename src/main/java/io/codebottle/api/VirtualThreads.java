@@ -0,0 +1,47 @@
+package io.codebottle.api;
+
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to virtual threads without requiring JDK 21 at compile time.
+ * <p>
+ * The factory method is looked up reflectively, so that this library stays usable on Java 8.
+ */
+final class VirtualThreads {
+    private static final Method FACTORY;
+
+    static {
+        Method factory;
+
+        try {
+            factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            // running on a JVM without virtual threads
+            factory = null;
+        }
+
+        FACTORY = factory;
+    }
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Creates an {@link ExecutorService} that starts a new virtual thread for every task.
+     *
+     * @return the executor, or {@link Optional#empty()} if virtual threads are not supported.
+     */
+    static Optional<ExecutorService> newVirtualThreadPerTaskExecutor() {
+        if (FACTORY == null)
+            return Optional.empty();
+
+        try {
+            return Optional.of((ExecutorService) FACTORY.invoke(null));
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError("Unexpected ReflectiveOperationException", e);
+        }
+    }
+}
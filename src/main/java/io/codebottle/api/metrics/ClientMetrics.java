@@ -0,0 +1,205 @@
+package io.codebottle.api.metrics;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+import io.codebottle.api.rest.Endpoint;
+
+/**
+ * Records what the client is doing: requests, latencies, response sizes and status codes per {@link Endpoint},
+ * and the hit ratio of the entity caches.
+ * <p>
+ * Recording never allocates. Use {@link #snapshot()} to read the recorded values.
+ */
+public final class ClientMetrics {
+    private final Map<Endpoint, EndpointMetrics> endpoints = new EnumMap<>(Endpoint.class);
+    private final Map<CacheType, CacheMetrics> caches = new EnumMap<>(CacheType.class);
+    private final Object listenerLock = new Object();
+    private volatile MetricsListener[] listeners = new MetricsListener[0];
+
+    public ClientMetrics() {
+        for (Endpoint endpoint : Endpoint.values())
+            endpoints.put(endpoint, new EndpointMetrics());
+        for (CacheType cacheType : CacheType.values())
+            caches.put(cacheType, new CacheMetrics());
+    }
+
+    /**
+     * Registers the function that reports the current size of the given cache.
+     *
+     * @param cacheType is the cache.
+     * @param size      reports the current number of entries in the cache.
+     */
+    public void registerCacheSize(CacheType cacheType, IntSupplier size) {
+        caches.get(cacheType).size = size;
+    }
+
+    public void addListener(MetricsListener listener) {
+        synchronized (listenerLock) {
+            final MetricsListener[] listeners = Arrays.copyOf(this.listeners, this.listeners.length + 1);
+            listeners[listeners.length - 1] = listener;
+
+            this.listeners = listeners;
+        }
+    }
+
+    public void removeListener(MetricsListener listener) {
+        synchronized (listenerLock) {
+            this.listeners = Arrays.stream(this.listeners)
+                    .filter(registered -> registered != listener)
+                    .toArray(MetricsListener[]::new);
+        }
+    }
+
+    /**
+     * Records a received response.
+     *
+     * @param endpoint     is the endpoint of the request.
+     * @param statusCode   is the status code of the response.
+     * @param latencyNanos is the time from dispatching the request until the response was received.
+     */
+    public void recordResponse(Endpoint endpoint, int statusCode, long latencyNanos) {
+        final EndpointMetrics metrics = endpoints.get(endpoint);
+
+        metrics.requests.increment();
+        metrics.latency.record(latencyNanos);
+        if (statusCode >= 0 && statusCode < EndpointMetrics.STATUS_CODES)
+            metrics.statusCodes.incrementAndGet(statusCode);
+
+        for (MetricsListener listener : listeners)
+            try {
+                listener.onResponse(endpoint, statusCode, latencyNanos);
+            } catch (RuntimeException e) {
+                failed(e);
+            }
+    }
+
+    /**
+     * Records a request that failed without a response.
+     *
+     * @param endpoint     is the endpoint of the request.
+     * @param latencyNanos is the time from dispatching the request until it failed.
+     */
+    public void recordFailure(Endpoint endpoint, long latencyNanos) {
+        final EndpointMetrics metrics = endpoints.get(endpoint);
+
+        metrics.requests.increment();
+        metrics.failures.increment();
+        metrics.latency.record(latencyNanos);
+
+        for (MetricsListener listener : listeners)
+            try {
+                listener.onResponse(endpoint, -1, latencyNanos);
+            } catch (RuntimeException e) {
+                failed(e);
+            }
+    }
+
+    /**
+     * Records a parsed response body.
+     *
+     * @param endpoint   is the endpoint of the request.
+     * @param bytes      is the number of bytes read from the response body.
+     * @param parseNanos is the time it took to parse and map the response body.
+     */
+    public void recordParsed(Endpoint endpoint, long bytes, long parseNanos) {
+        final EndpointMetrics metrics = endpoints.get(endpoint);
+
+        metrics.bytes.add(bytes);
+        metrics.parseTime.record(parseNanos);
+
+        for (MetricsListener listener : listeners)
+            try {
+                listener.onParsed(endpoint, bytes, parseNanos);
+            } catch (RuntimeException e) {
+                failed(e);
+            }
+    }
+
+    // a failing listener must neither keep the others from being notified, nor the request from completing
+    private static void failed(RuntimeException e) {
+        final Thread thread = Thread.currentThread();
+
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+    }
+
+    /**
+     * Records a lookup in an entity cache.
+     *
+     * @param cacheType is the cache that was accessed.
+     * @param hit       is whether the entity was found in the cache.
+     */
+    public void recordCacheAccess(CacheType cacheType, boolean hit) {
+        final CacheMetrics metrics = caches.get(cacheType);
+
+        if (hit)
+            metrics.hits.increment();
+        else metrics.misses.increment();
+    }
+
+    /**
+     * Creates a snapshot of all recorded values.
+     *
+     * @return the snapshot.
+     */
+    public MetricsSnapshot snapshot() {
+        final Map<Endpoint, MetricsSnapshot.EndpointSnapshot> endpointSnapshots = new EnumMap<>(Endpoint.class);
+        final Map<CacheType, MetricsSnapshot.CacheSnapshot> cacheSnapshots = new EnumMap<>(CacheType.class);
+
+        endpoints.forEach((endpoint, metrics) -> endpointSnapshots.put(endpoint, metrics.snapshot()));
+        caches.forEach((cacheType, metrics) -> cacheSnapshots.put(cacheType, metrics.snapshot()));
+
+        return new MetricsSnapshot(endpointSnapshots, cacheSnapshots);
+    }
+
+    /**
+     * The entity caches whose accesses are recorded.
+     */
+    public enum CacheType {
+        LANGUAGES,
+
+        CATEGORIES,
+
+        SNIPPETS
+    }
+
+    private static final class EndpointMetrics {
+        private static final int STATUS_CODES = 600;
+
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LatencyHistogram parseTime = new LatencyHistogram();
+        private final AtomicLongArray statusCodes = new AtomicLongArray(STATUS_CODES);
+
+        private MetricsSnapshot.EndpointSnapshot snapshot() {
+            final Map<Integer, Long> statusCodes = new TreeMap<>();
+
+            for (int code = 0; code < STATUS_CODES; code++) {
+                final long count = this.statusCodes.get(code);
+
+                if (count > 0)
+                    statusCodes.put(code, count);
+            }
+
+            return new MetricsSnapshot.EndpointSnapshot(requests.sum(), failures.sum(), bytes.sum(),
+                    latency.snapshot(), parseTime.snapshot(), statusCodes);
+        }
+    }
+
+    private static final class CacheMetrics {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private volatile IntSupplier size = () -> 0;
+
+        private MetricsSnapshot.CacheSnapshot snapshot() {
+            return new MetricsSnapshot.CacheSnapshot(hits.sum(), misses.sum(), size.getAsInt());
+        }
+    }
+}
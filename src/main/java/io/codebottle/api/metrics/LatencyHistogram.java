@@ -0,0 +1,141 @@
+package io.codebottle.api.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A concurrent histogram of durations in nanoseconds with log-linear buckets.
+ * <p>
+ * Every power of two is split into 16 linear sub-buckets, so recorded values are kept with a relative error below 7%,
+ * over the whole range of {@code long}. Recording a value never allocates.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(0);
+
+    /**
+     * Records a value.
+     *
+     * @param nanos is the value to record. Negative values are recorded as {@code 0}.
+     */
+    public void record(long nanos) {
+        final long value = Math.max(0, nanos);
+
+        counts.incrementAndGet(indexOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+
+        long current;
+        while (value < (current = min.get()) && !min.compareAndSet(current, value)) ;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) ;
+    }
+
+    /**
+     * Creates a consistent-enough copy of the current state of this histogram.
+     * Values recorded concurrently may or may not be part of the snapshot.
+     *
+     * @return the snapshot.
+     */
+    public Snapshot snapshot() {
+        final long[] copy = new long[BUCKET_COUNT];
+        long total = 0;
+
+        for (int i = 0; i < BUCKET_COUNT; i++)
+            total += copy[i] = counts.get(i);
+
+        return new Snapshot(copy, total, sum.get(), total == 0 ? 0 : min.get(), max.get());
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long lowerBoundOf(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+
+        final int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final int subBucket = index % SUB_BUCKETS;
+
+        return (long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * An immutable copy of a {@link LatencyHistogram}.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long min;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long min, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMin() {
+            return min;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Returns the value below which the given {@code percentile} of all recorded values fall.
+         *
+         * @param percentile is the percentile, between {@code 0} and {@code 100}.
+         *
+         * @return the value at the percentile, or {@code 0} if no values were recorded.
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (count == 0)
+                return 0;
+
+            final long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * count));
+            long seen = 0;
+
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+
+                if (seen >= rank)
+                    // the lower bound of the next bucket is the upper bound of this one
+                    return Math.min(max, Math.max(min, i + 1 < counts.length ? lowerBoundOf(i + 1) - 1 : Long.MAX_VALUE));
+            }
+
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d, mean=%.0f, p50=%d, p99=%d, p999=%d, max=%d",
+                    count, getMean(), getValueAtPercentile(50), getValueAtPercentile(99), getValueAtPercentile(99.9), max);
+        }
+    }
+}
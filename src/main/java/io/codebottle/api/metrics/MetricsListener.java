@@ -0,0 +1,31 @@
+package io.codebottle.api.metrics;
+
+import io.codebottle.api.rest.Endpoint;
+
+/**
+ * Is notified about every request recorded by {@link ClientMetrics}.
+ * <p>
+ * Listeners are called synchronously on the thread that handles the response, so they should return quickly.
+ * Exceptions thrown by a listener are passed to the {@linkplain Thread#getUncaughtExceptionHandler() uncaught exception handler}
+ * of that thread, and don't affect the request or the other listeners.
+ */
+public interface MetricsListener {
+    /**
+     * Called when a response was received or a request failed.
+     *
+     * @param endpoint     is the endpoint of the request.
+     * @param statusCode   is the status code of the response, or {@code -1} if the request failed without a response.
+     * @param latencyNanos is the time from dispatching the request until the response or failure was received.
+     */
+    void onResponse(Endpoint endpoint, int statusCode, long latencyNanos);
+
+    /**
+     * Called when a response body was parsed.
+     *
+     * @param endpoint   is the endpoint of the request.
+     * @param bytes      is the number of bytes read from the response body.
+     * @param parseNanos is the time it took to parse and map the response body.
+     */
+    default void onParsed(Endpoint endpoint, long bytes, long parseNanos) {
+    }
+}
@@ -0,0 +1,155 @@
+package io.codebottle.api.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+
+import io.codebottle.api.rest.Endpoint;
+
+/**
+ * An immutable copy of the values recorded by {@link ClientMetrics}.
+ */
+public final class MetricsSnapshot {
+    private final Map<Endpoint, EndpointSnapshot> endpoints;
+    private final Map<ClientMetrics.CacheType, CacheSnapshot> caches;
+
+    MetricsSnapshot(Map<Endpoint, EndpointSnapshot> endpoints, Map<ClientMetrics.CacheType, CacheSnapshot> caches) {
+        this.endpoints = Collections.unmodifiableMap(endpoints);
+        this.caches = Collections.unmodifiableMap(caches);
+    }
+
+    public Map<Endpoint, EndpointSnapshot> getEndpoints() {
+        return endpoints;
+    }
+
+    public EndpointSnapshot getEndpoint(Endpoint endpoint) {
+        return endpoints.get(endpoint);
+    }
+
+    public Map<ClientMetrics.CacheType, CacheSnapshot> getCaches() {
+        return caches;
+    }
+
+    public CacheSnapshot getCache(ClientMetrics.CacheType cacheType) {
+        return caches.get(cacheType);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder string = new StringBuilder("MetricsSnapshot");
+
+        endpoints.forEach((endpoint, snapshot) -> {
+            if (snapshot.getRequests() > 0)
+                string.append("\n\t").append(endpoint).append(": ").append(snapshot);
+        });
+        caches.forEach((cacheType, snapshot) -> string.append("\n\t").append(cacheType).append(": ").append(snapshot));
+
+        return string.toString();
+    }
+
+    public static final class EndpointSnapshot {
+        private final long requests;
+        private final long failures;
+        private final long bytes;
+        private final LatencyHistogram.Snapshot latency;
+        private final LatencyHistogram.Snapshot parseTime;
+        private final Map<Integer, Long> statusCodes;
+
+        EndpointSnapshot(long requests, long failures, long bytes, LatencyHistogram.Snapshot latency, LatencyHistogram.Snapshot parseTime, Map<Integer, Long> statusCodes) {
+            this.requests = requests;
+            this.failures = failures;
+            this.bytes = bytes;
+            this.latency = latency;
+            this.parseTime = parseTime;
+            this.statusCodes = Collections.unmodifiableMap(statusCodes);
+        }
+
+        /**
+         * @return the number of dispatched requests, including retries.
+         */
+        public long getRequests() {
+            return requests;
+        }
+
+        /**
+         * @return the number of requests that failed without a response.
+         */
+        public long getFailures() {
+            return failures;
+        }
+
+        /**
+         * @return the number of bytes read from response bodies.
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return the time from dispatching a request until its response was received, in nanoseconds.
+         */
+        public LatencyHistogram.Snapshot getLatency() {
+            return latency;
+        }
+
+        /**
+         * @return the time it took to parse and map response bodies, in nanoseconds.
+         */
+        public LatencyHistogram.Snapshot getParseTime() {
+            return parseTime;
+        }
+
+        /**
+         * @return the number of responses per status code.
+         */
+        public Map<Integer, Long> getStatusCodes() {
+            return statusCodes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("requests=%d, failures=%d, bytes=%d, statusCodes=%s, latency={%s}, parseTime={%s}",
+                    requests, failures, bytes, statusCodes, latency, parseTime);
+        }
+    }
+
+    public static final class CacheSnapshot {
+        private final long hits;
+        private final long misses;
+        private final int size;
+
+        CacheSnapshot(long hits, long misses, int size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.size = size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * @return the ratio of lookups that found the entity in the cache, or {@link Double#NaN} if there were no lookups.
+         */
+        public double getHitRatio() {
+            final long total = hits + misses;
+
+            return total == 0 ? Double.NaN : (double) hits / total;
+        }
+
+        /**
+         * @return the number of entries in the cache when the snapshot was taken.
+         */
+        public int getSize() {
+            return size;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("size=%d, hits=%d, misses=%d, hitRatio=%.3f", size, hits, misses, getHitRatio());
+        }
+    }
+}
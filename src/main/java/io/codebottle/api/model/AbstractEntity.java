@@ -1,14 +1,23 @@
 package io.codebottle.api.model;
 
+import java.time.Duration;
+import java.util.Optional;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.JsonNode;
 import io.codebottle.api.CodeBottleAPI;
 
 public abstract class AbstractEntity {
+    private static final long NEVER_FETCHED = Long.MIN_VALUE;
+
     protected final CodeBottleAPI context;
 
     protected final @JsonProperty(required = true) String id;
 
+    // the System.nanoTime() this entity was last received from the API at
+    volatile long fetchedAt = NEVER_FETCHED;
+
     protected AbstractEntity(CodeBottleAPI context, JsonNode data) {
         this.context = context;
         this.id = data.get("id").asText();
@@ -19,9 +28,13 @@ public abstract class AbstractEntity {
     public abstract AbstractEntity update(JsonNode data);
 
     public AbstractEntity(CodeBottleAPI context, int id) {
+        this(context, String.valueOf(id));
+    }
+
+    protected AbstractEntity(CodeBottleAPI context, String id) {
         this.context = context;
 
-        this.id = String.valueOf(id);
+        this.id = id;
     }
 
     public String getID() {
@@ -31,4 +44,40 @@ public abstract class AbstractEntity {
     public CodeBottleAPI getContext() {
         return context;
     }
+
+    /**
+     * Returns how long ago this entity was last received from the API.
+     * Empty if it was never received since this API was created, e.g. because it was restored from a snapshot.
+     *
+     * @return the time since this entity was last received.
+     */
+    @JsonIgnore
+    public Optional<Duration> getAge() {
+        final long fetchedAt = this.fetchedAt;
+
+        return fetchedAt == NEVER_FETCHED ? Optional.empty() : Optional.of(Duration.ofNanos(System.nanoTime() - fetchedAt));
+    }
+
+    /**
+     * Returns whether this entity was received from the API no longer than {@code maxAge} ago.
+     *
+     * @param maxAge is the maximum age.
+     *
+     * @return whether this entity is fresh.
+     */
+    public boolean isFresh(Duration maxAge) {
+        return getAge().map(age -> age.compareTo(maxAge) <= 0).orElse(false);
+    }
+
+    void markFetched() {
+        this.fetchedAt = System.nanoTime();
+    }
+
+    // keeps the more recent fetch time when a freshly received entity is merged into this one
+    void updateFetchedAt(AbstractEntity other) {
+        final long fetchedAt = other.fetchedAt;
+
+        if (fetchedAt != NEVER_FETCHED && (this.fetchedAt == NEVER_FETCHED || fetchedAt - this.fetchedAt > 0))
+            this.fetchedAt = fetchedAt;
+    }
 }
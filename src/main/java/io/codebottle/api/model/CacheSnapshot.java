@@ -0,0 +1,201 @@
+package io.codebottle.api.model;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.codebottle.api.CodeBottleAPI;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A compact binary snapshot of cached languages, categories, snippets and their revisions.
+ * <p>
+ * Snapshots are written to a temporary file that then atomically replaces the target file,
+ * and are read through a memory-mapped {@link FileChannel}.
+ */
+public final class CacheSnapshot {
+    private static final int MAGIC = 0x43425350; // 'CBSP'
+    private static final int VERSION = 1;
+
+    private final List<Language> languages;
+    private final List<Category> categories;
+    private final List<Snippet> snippets;
+
+    private CacheSnapshot(List<Language> languages, List<Category> categories, List<Snippet> snippets) {
+        this.languages = languages;
+        this.categories = categories;
+        this.snippets = snippets;
+    }
+
+    public List<Language> getLanguages() {
+        return Collections.unmodifiableList(languages);
+    }
+
+    public List<Category> getCategories() {
+        return Collections.unmodifiableList(categories);
+    }
+
+    public List<Snippet> getSnippets() {
+        return Collections.unmodifiableList(snippets);
+    }
+
+    /**
+     * Writes a snapshot of the given entities to the given {@code file}.
+     *
+     * @param file       is the file to write to. An existing file is replaced.
+     * @param languages  are the languages to write.
+     * @param categories are the categories to write.
+     * @param snippets   are the snippets to write, including their cached revisions.
+     *
+     * @throws IOException if the snapshot could not be written.
+     */
+    public static void write(Path file, Collection<Language> languages, Collection<Category> categories, Collection<Snippet> snippets) throws IOException {
+        final Path parent = file.toAbsolutePath().getParent();
+        final Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+
+                // the collections may be concurrently modified, so they are copied to keep the counts consistent
+                final List<Language> languageList = new ArrayList<>(languages);
+                out.writeInt(languageList.size());
+                for (Language language : languageList)
+                    language.writeSnapshot(out);
+
+                final List<Category> categoryList = new ArrayList<>(categories);
+                out.writeInt(categoryList.size());
+                for (Category category : categoryList)
+                    category.writeSnapshot(out);
+
+                final List<Snippet> snippetList = new ArrayList<>(snippets);
+                out.writeInt(snippetList.size());
+                for (Snippet snippet : snippetList)
+                    snippet.writeSnapshot(out);
+            }
+
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Reads the snapshot stored in the given {@code file}.
+     * The returned entities are not cached yet.
+     *
+     * @param context is the API instance the entities belong to.
+     * @param file    is the file to read from.
+     *
+     * @return the read snapshot.
+     *
+     * @throws IOException if the file could not be read or is not a valid snapshot.
+     */
+    public static CacheSnapshot read(CodeBottleAPI context, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (in.getInt() != MAGIC)
+                throw new IOException("Not a snapshot file: " + file);
+            final int version = in.getInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported snapshot version: " + version);
+
+            final Map<String, Language> languages = new HashMap<>();
+            for (int i = in.getInt(); i > 0; i--) {
+                final Language language = new Language(context, readID(in)).readSnapshot(in);
+
+                languages.put(language.getID(), language);
+            }
+
+            final Map<String, Category> categories = new HashMap<>();
+            for (int i = in.getInt(); i > 0; i--) {
+                final Category category = new Category(context, readID(in)).readSnapshot(in);
+
+                categories.put(category.getID(), category);
+            }
+
+            final List<Snippet> snippets = new ArrayList<>();
+            for (int i = in.getInt(); i > 0; i--)
+                snippets.add(new Snippet(context, readID(in)).readSnapshot(in, languages, categories));
+
+            return new CacheSnapshot(new ArrayList<>(languages.values()), new ArrayList<>(categories.values()), snippets);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated snapshot file: " + file, e);
+        }
+    }
+
+    static void writeString(DataOutputStream out, @Nullable String string) throws IOException {
+        if (string == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static @Nullable String readString(ByteBuffer in) throws IOException {
+        final int length = in.getInt();
+
+        if (length == -1)
+            return null;
+        // checked before allocating, so that a corrupt length can not allocate arbitrary amounts of memory
+        if (length < -1 || length > in.remaining())
+            throw new IOException("Corrupt snapshot: invalid string length " + length);
+
+        final byte[] bytes = new byte[length];
+        in.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeInstant(DataOutputStream out, @Nullable Instant instant) throws IOException {
+        out.writeBoolean(instant != null);
+
+        if (instant != null) {
+            out.writeLong(instant.getEpochSecond());
+            out.writeInt(instant.getNano());
+        }
+    }
+
+    private static String readID(ByteBuffer in) throws IOException {
+        final String id = readString(in);
+
+        if (id == null)
+            throw new IOException("Corrupt snapshot: missing entity ID");
+
+        return id;
+    }
+
+    static @Nullable Instant readInstant(ByteBuffer in) throws IOException {
+        if (in.get() == 0)
+            return null;
+
+        try {
+            return Instant.ofEpochSecond(in.getLong(), in.getInt());
+        } catch (DateTimeException | ArithmeticException e) {
+            throw new IOException("Corrupt snapshot: invalid instant", e);
+        }
+    }
+}
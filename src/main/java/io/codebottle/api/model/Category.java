@@ -1,25 +1,110 @@
 package io.codebottle.api.model;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import com.fasterxml.jackson.annotation.JacksonInject;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.JsonNode;
 import io.codebottle.api.CodeBottleAPI;
+import org.jetbrains.annotations.Nullable;
 
 public class Category extends AbstractEntity {
-    private @JsonProperty(required = true) int id;
-    private @JsonProperty(required = true) String name;
+    private static final AtomicReferenceFieldUpdater<Category, State> STATE
+            = AtomicReferenceFieldUpdater.newUpdater(Category.class, State.class, "state");
+
+    // not initialized explicitly, because binding a tree already sets it during the super constructor
+    private volatile State state;
 
     public Category(CodeBottleAPI context, JsonNode data) {
         super(context, data);
     }
 
+    Category(CodeBottleAPI context, String id) {
+        super(context, id);
+
+        this.state = State.EMPTY;
+    }
+
+    @JsonCreator
+    Category(
+            @JacksonInject CodeBottleAPI context,
+            @JsonProperty(value = "id", required = true) String id,
+            @JsonProperty("name") @Nullable String name
+    ) {
+        super(context, id);
+
+        this.state = new State(name);
+    }
+
     public String getName() {
-        return name;
+        return state.name;
+    }
+
+    /**
+     * Returns the current state of this category, which does not change when the category is updated.
+     *
+     * @return the current state.
+     */
+    @JsonIgnore
+    public State getState() {
+        return state;
     }
 
     @Override
     public Category update(JsonNode data) {
-        this.name = data.path("name").asText(name);
+        STATE.updateAndGet(this, current -> new State(data.path("name").asText(current == null ? null : current.name)));
+
+        return this;
+    }
+
+    /**
+     * Merges the data of the given {@code other} category, which was freshly bound by the {@link EntityMapper}, into this category.
+     *
+     * @param other is the freshly bound category.
+     *
+     * @return this category.
+     */
+    public Category update(Category other) {
+        final State bound = other.state;
+
+        if (other != this && bound.name != null)
+            this.state = bound;
+        updateFetchedAt(other);
 
         return this;
     }
+
+    void writeSnapshot(DataOutputStream out) throws IOException {
+        CacheSnapshot.writeString(out, id);
+        CacheSnapshot.writeString(out, state.name);
+    }
+
+    Category readSnapshot(ByteBuffer in) throws IOException {
+        this.state = new State(CacheSnapshot.readString(in));
+
+        return this;
+    }
+
+    /**
+     * An immutable version of the data of a {@link Category}.
+     * Every update of a category replaces its state as a whole, so a state is always consistent.
+     */
+    public static final class State {
+        static final State EMPTY = new State(null);
+
+        private final @Nullable String name;
+
+        State(@Nullable String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
 }
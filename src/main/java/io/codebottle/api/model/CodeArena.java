@@ -0,0 +1,370 @@
+package io.codebottle.api.model;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Stores code bodies as UTF-8 in off-heap {@linkplain ByteBuffer#allocateDirect(int) direct buffers},
+ * so that the size of the cache does not add to the work of the garbage collector.
+ * <p>
+ * Entities only keep a {@code long} handle to their code. Code is appended to fixed-size chunks;
+ * once less than half of a chunk is still in use, because the code in it was replaced or released,
+ * the remaining code is moved to the current chunk and the old chunk is dropped.
+ * Chunks are never overwritten, so {@linkplain #sequence(long) sequences} and {@linkplain #channel(long) channels}
+ * that were opened before stay valid.
+ */
+public final class CodeArena {
+    /**
+     * The handle of no code. Generations start at {@code 1}, so no handle of stored code is ever {@code 0}.
+     */
+    public static final long NONE = 0;
+
+    private final int chunkSize;
+    private final List<Chunk> chunks = new ArrayList<>();
+    private @NotNull Chunk current;
+    private boolean compacting = false;
+
+    // the location of the code behind every slot of a handle
+    private int[] chunkOf = new int[64];
+    private int[] offsetOf = new int[64];
+    private int[] lengthOf = new int[64];
+    private int[] generationOf = new int[64];
+    private boolean[] asciiOf = new boolean[64];
+    private int slotCount = 0;
+    private int[] freeSlots = new int[16];
+    private int freeSlotCount = 0;
+
+    /**
+     * Creates a new arena.
+     *
+     * @param chunkSize is the size of the direct buffers to allocate, in bytes. Larger code gets a chunk of its own.
+     */
+    public CodeArena(int chunkSize) {
+        if (chunkSize < 1)
+            throw new IllegalArgumentException("chunkSize must be positive");
+
+        this.chunkSize = chunkSize;
+        this.current = newChunk(chunkSize);
+    }
+
+    /**
+     * Stores the given {@code code}.
+     *
+     * @param code is the code to store.
+     *
+     * @return the handle of the stored code.
+     */
+    public synchronized long store(String code) {
+        final byte[] bytes = code.getBytes(StandardCharsets.UTF_8);
+        final int slot = newSlot();
+
+        place(slot, ByteBuffer.wrap(bytes));
+        asciiOf[slot] = bytes.length == code.length();
+
+        return handle(slot);
+    }
+
+    /**
+     * Frees the code behind the given {@code handle}. Freeing {@link #NONE} does nothing.
+     *
+     * @param handle is the handle of the code.
+     */
+    public synchronized void free(long handle) {
+        if (handle == NONE)
+            return;
+
+        final int slot = slotOf(handle);
+        final Chunk chunk = chunks.get(chunkOf[slot]);
+
+        chunk.live -= lengthOf[slot];
+        if (++generationOf[slot] == 0)
+            generationOf[slot] = 1;
+
+        if (freeSlotCount == freeSlots.length)
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+        freeSlots[freeSlotCount++] = slot;
+
+        compactIfSparse(chunk);
+    }
+
+    /**
+     * Decodes the code behind the given {@code handle}.
+     *
+     * @param handle is the handle of the code.
+     *
+     * @return the decoded code.
+     */
+    public String decode(long handle) {
+        return StandardCharsets.UTF_8.decode(slice(handle)).toString();
+    }
+
+    /**
+     * Returns the code behind the given {@code handle} as a {@link CharSequence}.
+     * Code that is pure ASCII is read directly from the off-heap buffer without copying;
+     * other code is decoded first.
+     *
+     * @param handle is the handle of the code.
+     *
+     * @return the code.
+     */
+    public CharSequence sequence(long handle) {
+        final boolean ascii;
+
+        synchronized (this) {
+            ascii = asciiOf[slotOf(handle)];
+        }
+
+        final ByteBuffer slice = slice(handle);
+
+        return ascii ? new AsciiSequence(slice) : StandardCharsets.UTF_8.decode(slice);
+    }
+
+    /**
+     * Opens a channel that reads the UTF-8 bytes of the code behind the given {@code handle} without copying them to the heap.
+     *
+     * @param handle is the handle of the code.
+     *
+     * @return the channel.
+     */
+    public ReadableByteChannel channel(long handle) {
+        return new SliceChannel(slice(handle));
+    }
+
+    /**
+     * Returns the length of the code behind the given {@code handle} in bytes.
+     *
+     * @param handle is the handle of the code.
+     *
+     * @return the length in bytes.
+     */
+    public synchronized int length(long handle) {
+        return lengthOf[slotOf(handle)];
+    }
+
+    /**
+     * Frees the code of the given {@code snippet} and all of its revisions.
+     * This happens automatically when a snippet is removed from the cache.
+     * The code is copied to the heap first, so that a released snippet that is still referenced stays readable.
+     *
+     * @param snippet is the snippet to release.
+     */
+    public void release(Snippet snippet) {
+        snippet.releaseCode();
+    }
+
+    /**
+     * @return the number of bytes of code that are currently stored.
+     */
+    public synchronized long getLiveBytes() {
+        long live = 0;
+
+        for (Chunk chunk : chunks)
+            if (chunk != null)
+                live += chunk.live;
+
+        return live;
+    }
+
+    /**
+     * @return the number of bytes that are allocated off-heap.
+     */
+    public synchronized long getAllocatedBytes() {
+        long allocated = 0;
+
+        for (Chunk chunk : chunks)
+            if (chunk != null)
+                allocated += chunk.buffer.capacity();
+
+        return allocated;
+    }
+
+    private synchronized ByteBuffer slice(long handle) {
+        final int slot = slotOf(handle);
+        final ByteBuffer slice = chunks.get(chunkOf[slot]).buffer.duplicate();
+
+        slice.limit(offsetOf[slot] + lengthOf[slot]).position(offsetOf[slot]);
+
+        return slice.slice();
+    }
+
+    // must be called while holding the lock
+    private int slotOf(long handle) {
+        final int slot = (int) handle;
+
+        if (handle == NONE || slot < 0 || slot >= slotCount || generationOf[slot] != (int) (handle >>> 32))
+            throw new IllegalStateException("The code behind the handle was freed");
+
+        return slot;
+    }
+
+    private long handle(int slot) {
+        return (long) generationOf[slot] << 32 | slot;
+    }
+
+    private int newSlot() {
+        if (freeSlotCount > 0)
+            return freeSlots[--freeSlotCount];
+
+        if (slotCount == chunkOf.length) {
+            final int capacity = slotCount * 2;
+
+            chunkOf = Arrays.copyOf(chunkOf, capacity);
+            offsetOf = Arrays.copyOf(offsetOf, capacity);
+            lengthOf = Arrays.copyOf(lengthOf, capacity);
+            generationOf = Arrays.copyOf(generationOf, capacity);
+            asciiOf = Arrays.copyOf(asciiOf, capacity);
+        }
+
+        generationOf[slotCount] = 1;
+
+        return slotCount++;
+    }
+
+    // appends the bytes to the current chunk and points the slot at them
+    private void place(int slot, ByteBuffer bytes) {
+        final int length = bytes.remaining();
+        Chunk full = null;
+
+        if (current.buffer.remaining() < length) {
+            full = current;
+            current = newChunk(Math.max(chunkSize, length));
+        }
+
+        chunkOf[slot] = current.index;
+        offsetOf[slot] = current.buffer.position();
+        lengthOf[slot] = length;
+
+        current.buffer.put(bytes);
+        current.live += length;
+
+        // only now that the slot points at its new location, the full chunk may be compacted
+        if (full != null)
+            compactIfSparse(full);
+    }
+
+    private void compactIfSparse(Chunk chunk) {
+        if (compacting || chunk == current || chunk.live * 2 >= chunk.buffer.position())
+            return;
+
+        compacting = true;
+        try {
+            final ByteBuffer source = chunk.buffer.duplicate();
+            final boolean[] free = new boolean[slotCount];
+
+            for (int i = 0; i < freeSlotCount; i++)
+                free[freeSlots[i]] = true;
+
+            for (int slot = 0; slot < slotCount; slot++)
+                if (!free[slot] && chunkOf[slot] == chunk.index) {
+                    source.limit(offsetOf[slot] + lengthOf[slot]).position(offsetOf[slot]);
+                    chunk.live -= lengthOf[slot];
+                    place(slot, source);
+                }
+
+            // open sequences and channels keep the dropped buffer alive until they are garbage collected
+            chunks.set(chunk.index, null);
+        } finally {
+            compacting = false;
+        }
+    }
+
+    private Chunk newChunk(int size) {
+        int index = chunks.indexOf(null);
+
+        if (index == -1) {
+            index = chunks.size();
+            chunks.add(null);
+        }
+
+        final Chunk chunk = new Chunk(index, ByteBuffer.allocateDirect(size));
+        chunks.set(index, chunk);
+
+        return chunk;
+    }
+
+    private static final class Chunk {
+        private final int index;
+        // the position of the buffer is where the next code is appended
+        private final ByteBuffer buffer;
+        private int live = 0;
+
+        private Chunk(int index, ByteBuffer buffer) {
+            this.index = index;
+            this.buffer = buffer;
+        }
+    }
+
+    private static final class AsciiSequence implements CharSequence {
+        private final ByteBuffer bytes;
+
+        private AsciiSequence(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int length() {
+            return bytes.limit();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) bytes.get(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            final ByteBuffer slice = bytes.duplicate();
+            slice.limit(end).position(start);
+
+            return new AsciiSequence(slice.slice());
+        }
+
+        @Override
+        public @NotNull String toString() {
+            return StandardCharsets.US_ASCII.decode(bytes.duplicate()).toString();
+        }
+    }
+
+    private static final class SliceChannel implements ReadableByteChannel {
+        private final ByteBuffer bytes;
+        private boolean open = true;
+
+        private SliceChannel(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public synchronized int read(ByteBuffer destination) throws ClosedChannelException {
+            if (!open)
+                throw new ClosedChannelException();
+            if (!bytes.hasRemaining())
+                return -1;
+
+            final int count = Math.min(bytes.remaining(), destination.remaining());
+            final ByteBuffer chunk = bytes.duplicate();
+
+            chunk.limit(chunk.position() + count);
+            destination.put(chunk);
+            bytes.position(bytes.position() + count);
+
+            return count;
+        }
+
+        @Override
+        public synchronized boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public synchronized void close() {
+            open = false;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package io.codebottle.api.model;
+
+import java.util.Locale;
+import java.util.function.Consumer;
+
+import org.jetbrains.annotations.Nullable;
+
+/*
+Splits text into lowercase search terms in a way that suits source code.
+Every identifier is emitted as a whole, and additionally split into its parts at underscores
+and camelCase humps: "parseHTTPResponse_v2" yields
+"parsehttpresponse_v2", "parse", "http", "response" and "v2".
+ */
+final class CodeTokenizer {
+    private static final int MIN_LENGTH = 2;
+    private static final int MAX_LENGTH = 64;
+
+    private CodeTokenizer() {
+    }
+
+    static void tokenize(@Nullable String text, Consumer<String> terms) {
+        if (text == null)
+            return;
+
+        final int length = text.length();
+        int i = 0;
+
+        while (i < length) {
+            while (i < length && !isWordChar(text.charAt(i)))
+                i++;
+
+            final int start = i;
+
+            while (i < length && isWordChar(text.charAt(i)))
+                i++;
+
+            if (i > start)
+                splitIdentifier(text, start, i, terms);
+        }
+    }
+
+    private static void splitIdentifier(String text, int start, int end, Consumer<String> terms) {
+        // leading and trailing underscores are not part of the name
+        while (start < end && text.charAt(start) == '_')
+            start++;
+        while (end > start && text.charAt(end - 1) == '_')
+            end--;
+
+        if (start == end)
+            return;
+
+        emit(text, start, end, terms);
+
+        int partStart = start;
+        boolean split = false;
+
+        for (int i = start + 1; i <= end; i++) {
+            final boolean underscore = i < end && text.charAt(i) == '_';
+
+            if (i == end || underscore || (i > partStart && isBoundary(text, i, end))) {
+                // a single part is the identifier itself, which was already emitted
+                if ((split || i < end) && i > partStart)
+                    emit(text, partStart, i, terms);
+
+                partStart = underscore ? i + 1 : i;
+                split = true;
+            }
+        }
+    }
+
+    private static boolean isBoundary(String text, int i, int end) {
+        final char previous = text.charAt(i - 1);
+        final char current = text.charAt(i);
+
+        if (Character.isLowerCase(previous) && Character.isUpperCase(current))
+            return true;
+
+        // the last capital of an acronym starts the next part: "HTTPResponse" -> "HTTP", "Response"
+        return Character.isUpperCase(previous) && Character.isUpperCase(current)
+                && i + 1 < end && Character.isLowerCase(text.charAt(i + 1));
+    }
+
+    private static void emit(String text, int start, int end, Consumer<String> terms) {
+        final int length = end - start;
+
+        if (length >= MIN_LENGTH && length <= MAX_LENGTH)
+            terms.accept(text.substring(start, end).toLowerCase(Locale.ROOT));
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+}
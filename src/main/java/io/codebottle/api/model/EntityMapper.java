@@ -0,0 +1,150 @@
+package io.codebottle.api.model;
+
+import java.io.IOException;
+import java.util.Collection;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.InjectableValues;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import io.codebottle.api.CodeBottleAPI;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Binds entities directly from a {@link JsonParser}, without building an intermediate {@link com.fasterxml.jackson.databind.JsonNode} tree.
+ * <p>
+ * All {@link ObjectReader}s are created once per {@link CodeBottleAPI} instance and reused for every request.
+ */
+public final class EntityMapper {
+    private final static ObjectMapper objectMapper;
+
+    private final CodeBottleAPI context;
+    private final ObjectReader languageReader;
+    private final ObjectReader categoryReader;
+    private final ObjectReader snippetReader;
+    private final ObjectReader revisionReader;
+
+    static {
+        objectMapper = new ObjectMapper()
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    public EntityMapper(CodeBottleAPI context) {
+        this.context = context;
+
+        final ObjectReader reader = objectMapper.reader(new InjectableValues.Std()
+                .addValue(CodeBottleAPI.class, context));
+
+        this.languageReader = reader.forType(Language.class);
+        this.categoryReader = reader.forType(Category.class);
+        this.snippetReader = reader.forType(Snippet.class);
+        this.revisionReader = reader.forType(Snippet.Revision.Bound.class);
+    }
+
+    /**
+     * Marks the given cached {@code value} as just received, after the API confirmed that it was not modified.
+     * Entities and the entities in collections are marked; other values are ignored.
+     *
+     * @param value is the cached value that was revalidated.
+     */
+    public void markRevalidated(@Nullable Object value) {
+        if (value instanceof AbstractEntity)
+            ((AbstractEntity) value).markFetched();
+        else if (value instanceof Collection)
+            for (Object element : (Collection<?>) value)
+                if (element instanceof AbstractEntity)
+                    ((AbstractEntity) element).markFetched();
+    }
+
+    /**
+     * Binds a new {@link Language} from the object the given {@code parser} is positioned at.
+     * The returned language is not cached; use {@link Language#update(Language)} to merge it into a cached instance.
+     *
+     * @param parser is the parser to read from.
+     *
+     * @return the bound language.
+     *
+     * @throws IOException if the data could not be read.
+     */
+    public Language readLanguage(JsonParser parser) throws IOException {
+        final Language language = languageReader.readValue(parser);
+
+        language.markFetched();
+
+        return language;
+    }
+
+    /**
+     * Binds a new {@link Category} from the object the given {@code parser} is positioned at.
+     * The returned category is not cached; use {@link Category#update(Category)} to merge it into a cached instance.
+     *
+     * @param parser is the parser to read from.
+     *
+     * @return the bound category.
+     *
+     * @throws IOException if the data could not be read.
+     */
+    public Category readCategory(JsonParser parser) throws IOException {
+        final Category category = categoryReader.readValue(parser);
+
+        category.markFetched();
+
+        return category;
+    }
+
+    /**
+     * Binds a new {@link Snippet} from the object the given {@code parser} is positioned at.
+     * The returned snippet is not cached; use {@link Snippet#update(Snippet)} to merge it into a cached instance.
+     * <p>
+     * If {@linkplain CodeBottleAPI#isLazySnippetFields() lazy snippet fields} are enabled, only the id is decoded,
+     * and the object is kept as compact UTF-8 JSON to decode the other fields from when they are first read.
+     *
+     * @param parser is the parser to read from.
+     *
+     * @return the bound snippet.
+     *
+     * @throws IOException if the data could not be read.
+     */
+    public Snippet readSnippet(JsonParser parser) throws IOException {
+        final Snippet snippet = context.isLazySnippetFields() ? readLazySnippet(parser) : snippetReader.readValue(parser);
+
+        snippet.markFetched();
+
+        return snippet;
+    }
+
+    private Snippet readLazySnippet(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT)
+            throw MismatchedInputException.from(parser, Snippet.class, "Expected a JSON object");
+
+        final byte[] raw = RawFields.copy(parser);
+        final String id = RawFields.text(raw, "id");
+
+        if (id == null)
+            throw MismatchedInputException.from(parser, Snippet.class, "Missing required property 'id'");
+
+        return new Snippet(context, id, raw);
+    }
+
+    /**
+     * Reads the object the given {@code parser} is positioned at and merges it into the given {@code revision}.
+     * The revision is updated at once, after the whole object was read.
+     *
+     * @param parser   is the parser to read from.
+     * @param revision is the revision to update.
+     *
+     * @return the updated revision.
+     *
+     * @throws IOException if the data could not be read.
+     */
+    public Snippet.Revision readRevision(JsonParser parser, Snippet.Revision revision) throws IOException {
+        final Snippet.Revision read = revision.update(revisionReader.<Snippet.Revision.Bound>readValue(parser));
+
+        read.markFetched();
+
+        return read;
+    }
+}
@@ -1,25 +1,110 @@
 package io.codebottle.api.model;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import com.fasterxml.jackson.annotation.JacksonInject;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.JsonNode;
 import io.codebottle.api.CodeBottleAPI;
+import org.jetbrains.annotations.Nullable;
 
 public class Language extends AbstractEntity {
-    private @JsonProperty(required = true) int id;
-    private @JsonProperty(required = true) String name;
+    private static final AtomicReferenceFieldUpdater<Language, State> STATE
+            = AtomicReferenceFieldUpdater.newUpdater(Language.class, State.class, "state");
+
+    // not initialized explicitly, because binding a tree already sets it during the super constructor
+    private volatile State state;
 
     public Language(CodeBottleAPI context, JsonNode data) {
         super(context, data);
     }
 
+    Language(CodeBottleAPI context, String id) {
+        super(context, id);
+
+        this.state = State.EMPTY;
+    }
+
+    @JsonCreator
+    Language(
+            @JacksonInject CodeBottleAPI context,
+            @JsonProperty(value = "id", required = true) String id,
+            @JsonProperty("name") @Nullable String name
+    ) {
+        super(context, id);
+
+        this.state = new State(name);
+    }
+
     public String getName() {
-        return name;
+        return state.name;
+    }
+
+    /**
+     * Returns the current state of this language, which does not change when the language is updated.
+     *
+     * @return the current state.
+     */
+    @JsonIgnore
+    public State getState() {
+        return state;
     }
 
     @Override
     public Language update(JsonNode data) {
-        this.name = data.path("name").asText(name);
+        STATE.updateAndGet(this, current -> new State(data.path("name").asText(current == null ? null : current.name)));
+
+        return this;
+    }
+
+    /**
+     * Merges the data of the given {@code other} language, which was freshly bound by the {@link EntityMapper}, into this language.
+     *
+     * @param other is the freshly bound language.
+     *
+     * @return this language.
+     */
+    public Language update(Language other) {
+        final State bound = other.state;
+
+        if (other != this && bound.name != null)
+            this.state = bound;
+        updateFetchedAt(other);
 
         return this;
     }
+
+    void writeSnapshot(DataOutputStream out) throws IOException {
+        CacheSnapshot.writeString(out, id);
+        CacheSnapshot.writeString(out, state.name);
+    }
+
+    Language readSnapshot(ByteBuffer in) throws IOException {
+        this.state = new State(CacheSnapshot.readString(in));
+
+        return this;
+    }
+
+    /**
+     * An immutable version of the data of a {@link Language}.
+     * Every update of a language replaces its state as a whole, so a state is always consistent.
+     */
+    public static final class State {
+        static final State EMPTY = new State(null);
+
+        private final @Nullable String name;
+
+        State(@Nullable String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
 }
@@ -0,0 +1,93 @@
+package io.codebottle.api.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.jetbrains.annotations.Nullable;
+
+/*
+Reads single fields from the compact UTF-8 JSON of an entity, for entities whose fields are decoded on demand.
+Looking up a field skips all values before it without materializing them.
+ */
+final class RawFields {
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private RawFields() {
+    }
+
+    // copies the object the parser is positioned at, without building strings of its values
+    static byte[] copy(JsonParser parser) throws IOException {
+        final ByteArrayOutputStream raw = new ByteArrayOutputStream(512);
+
+        try (JsonGenerator generator = FACTORY.createGenerator(raw)) {
+            generator.copyCurrentStructure(parser);
+        }
+
+        return raw.toByteArray();
+    }
+
+    static @Nullable String text(byte[] raw, String field) {
+        return read(raw, field, parser -> parser.currentToken() == JsonToken.VALUE_NULL ? null : parser.getValueAsString());
+    }
+
+    static int integer(byte[] raw, String field) {
+        final Integer value = read(raw, field, JsonParser::getValueAsInt);
+
+        return value == null ? 0 : value;
+    }
+
+    // returns the given properties of the object in the field, or null if there is no such object
+    static @Nullable String[] object(byte[] raw, String field, String... properties) {
+        return read(raw, field, parser -> {
+            if (parser.currentToken() != JsonToken.START_OBJECT)
+                return null;
+
+            final String[] values = new String[properties.length];
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String name = parser.getCurrentName();
+                parser.nextToken();
+
+                for (int i = 0; i < properties.length; i++)
+                    if (properties[i].equals(name))
+                        values[i] = parser.getValueAsString();
+
+                parser.skipChildren();
+            }
+
+            return values;
+        });
+    }
+
+    private static @Nullable <T> T read(byte[] raw, String field, ValueReader<T> reader) {
+        try (JsonParser parser = FACTORY.createParser(raw)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT)
+                return null;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final boolean match = field.equals(parser.getCurrentName());
+                parser.nextToken();
+
+                if (match)
+                    return reader.read(parser);
+
+                parser.skipChildren();
+            }
+
+            return null;
+        } catch (IOException e) {
+            // the data was written by copy(), so it is always valid
+            throw new UncheckedIOException("Malformed entity data", e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ValueReader<T> {
+        @Nullable T read(JsonParser parser) throws IOException;
+    }
+}
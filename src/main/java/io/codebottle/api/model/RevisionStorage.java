@@ -0,0 +1,315 @@
+package io.codebottle.api.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Stores the code of {@link Snippet.Revision}s as line-based deltas against the previous revision of the same snippet.
+ * <p>
+ * Most revisions differ from their predecessor by a few lines, so a delta only holds the lines that are new,
+ * and references to the ranges of lines that are copied from the previous revision.
+ * Every {@linkplain #getKeyframeInterval() few} revisions, the full code is stored as a keyframe,
+ * so that decoding a revision never has to replay more than a few deltas.
+ * The most recently decoded revisions are kept in a small LRU cache shared by all snippets.
+ * If a {@link CodeArena} is given, keyframes are stored off-heap.
+ */
+public final class RevisionStorage {
+    private static final int MAX_CANDIDATES = 16;
+    private static final int OP_OVERHEAD = 4;
+    private static final int DELTA_OVERHEAD = 48;
+
+    private final int keyframeInterval;
+    private final int decodedCacheSize;
+    private final @Nullable CodeArena arena;
+    private final Map<Snippet.Revision, String> decoded;
+
+    /**
+     * Creates a new revision storage.
+     *
+     * @param keyframeInterval is the distance between two keyframes. {@code 1} stores every revision in full.
+     * @param decodedCacheSize is the number of decoded revisions to keep.
+     * @param arena            is the arena to store keyframes in, or {@code null} to keep them on the heap.
+     *
+     * @throws IllegalArgumentException if the keyframe interval is not positive, or the cache size is negative.
+     */
+    public RevisionStorage(int keyframeInterval, int decodedCacheSize, @Nullable CodeArena arena) throws IllegalArgumentException {
+        if (keyframeInterval < 1)
+            throw new IllegalArgumentException("keyframeInterval must be positive");
+        if (decodedCacheSize < 0)
+            throw new IllegalArgumentException("decodedCacheSize must not be negative");
+
+        this.keyframeInterval = keyframeInterval;
+        this.decodedCacheSize = decodedCacheSize;
+        this.arena = arena;
+        this.decoded = new LinkedHashMap<Snippet.Revision, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Snippet.Revision, String> eldest) {
+                return size() > RevisionStorage.this.decodedCacheSize;
+            }
+        };
+    }
+
+    public int getKeyframeInterval() {
+        return keyframeInterval;
+    }
+
+    public int getDecodedCacheSize() {
+        return decodedCacheSize;
+    }
+
+    Chain newChain() {
+        return new Chain();
+    }
+
+    private @Nullable String cachedDecoded(Snippet.Revision revision) {
+        synchronized (decoded) {
+            return decoded.get(revision);
+        }
+    }
+
+    private void cacheDecoded(Snippet.Revision revision, @Nullable String code) {
+        synchronized (decoded) {
+            if (code == null)
+                decoded.remove(revision);
+            else if (decodedCacheSize > 0)
+                decoded.put(revision, code);
+        }
+    }
+
+    private static String[] lines(String code) {
+        // a trailing line break results in a trailing empty line, so that joining restores the code exactly
+        return code.split("\n", -1);
+    }
+
+    private static String join(String[] lines) {
+        return String.join("\n", lines);
+    }
+
+    /*
+    The encoded code of all revisions of one snippet, by revision index.
+    A delta always refers to the revision right before it.
+     */
+    final class Chain {
+        private final List<Encoded> entries = new ArrayList<>();
+        // set once the snippet left the cache; its keyframes are kept on the heap from then on
+        private boolean released = false;
+
+        synchronized @Nullable String get(Snippet.Revision revision, int index) {
+            final String cached = cachedDecoded(revision);
+
+            if (cached != null)
+                return cached;
+
+            final String[] lines = decodeLines(index);
+            final String code = lines == null ? null : join(lines);
+
+            cacheDecoded(revision, code);
+
+            return code;
+        }
+
+        synchronized void put(Snippet.Revision revision, int index, @Nullable String code) {
+            while (entries.size() <= index)
+                entries.add(null);
+
+            if (entries.get(index) != null && Objects.equals(code, get(revision, index)))
+                return;
+
+            // the deltas that follow depend on this revision, so they are decoded before it changes
+            final List<String> dependents = new ArrayList<>();
+            for (int i = index + 1; i < entries.size() && entries.get(i) != null && entries.get(i).isDelta(); i++)
+                dependents.add(join(decodeLines(i)));
+
+            replace(index, encode(index, code));
+            for (int i = 0; i < dependents.size(); i++)
+                replace(index + 1 + i, encode(index + 1 + i, dependents.get(i)));
+
+            cacheDecoded(revision, code);
+        }
+
+        synchronized int encodedSize(int index) {
+            final Encoded entry = index < entries.size() ? entries.get(index) : null;
+
+            return entry == null ? 0 : entry.size(arena);
+        }
+
+        synchronized void release() {
+            // the keyframes are copied to the heap, so that revisions that are still referenced stay readable
+            if (arena != null)
+                for (int i = 0; i < entries.size(); i++) {
+                    final Encoded entry = entries.get(i);
+
+                    if (entry != null && entry.handle != CodeArena.NONE) {
+                        entries.set(i, new Encoded(entry.keyframe(arena), CodeArena.NONE, null, null));
+                        arena.free(entry.handle);
+                    }
+                }
+
+            released = true;
+        }
+
+        private void replace(int index, Encoded entry) {
+            final Encoded previous = entries.set(index, entry);
+
+            if (previous != null && arena != null)
+                arena.free(previous.handle);
+        }
+
+        private @Nullable String[] decodeLines(int index) {
+            final Encoded entry = index < entries.size() ? entries.get(index) : null;
+
+            if (entry == null)
+                return null;
+
+            // walk back to the keyframe, and replay the deltas from there
+            int keyframe = index;
+            while (entries.get(keyframe).isDelta())
+                keyframe--;
+
+            final String code = entries.get(keyframe).keyframe(arena);
+
+            if (code == null)
+                return null;
+
+            String[] lines = lines(code);
+            for (int i = keyframe + 1; i <= index; i++)
+                lines = entries.get(i).apply(lines);
+
+            return lines;
+        }
+
+        private Encoded encode(int index, @Nullable String code) {
+            if (code == null || index % keyframeInterval == 0 || entries.get(index - 1) == null)
+                return keyframe(code);
+
+            final String[] base = decodeLines(index - 1);
+
+            if (base == null)
+                return keyframe(code);
+
+            final Encoded delta = diff(base, lines(code));
+
+            return delta.size(arena) < Snippet.textSize(code) ? delta : keyframe(code);
+        }
+
+        private Encoded keyframe(@Nullable String code) {
+            if (arena == null || released || code == null)
+                return new Encoded(code, CodeArena.NONE, null, null);
+
+            return new Encoded(null, arena.store(code), null, null);
+        }
+    }
+
+    /*
+    Finds a short sequence of operations that turns the 'base' lines into the 'target' lines.
+    Every target line that also occurs in the base starts a copy of the longest matching run of base lines;
+    all other lines are inserted literally.
+     */
+    static Encoded diff(String[] base, String[] target) {
+        final Map<String, List<Integer>> positions = new HashMap<>();
+        for (int i = 0; i < base.length; i++)
+            positions.computeIfAbsent(base[i], line -> new ArrayList<>(1)).add(i);
+
+        int[] ops = new int[8];
+        int opCount = 0;
+        final List<String> inserted = new ArrayList<>();
+
+        for (int j = 0; j < target.length; ) {
+            final List<Integer> candidates = positions.get(target[j]);
+            int bestStart = -1;
+            int bestLength = 0;
+
+            if (candidates != null)
+                for (int c = 0; c < candidates.size() && c < MAX_CANDIDATES; c++) {
+                    final int start = candidates.get(c);
+                    int length = 0;
+
+                    while (start + length < base.length && j + length < target.length
+                            && base[start + length].equals(target[j + length]))
+                        length++;
+
+                    if (length > bestLength) {
+                        bestStart = start;
+                        bestLength = length;
+                    }
+                }
+
+            if (opCount + 2 > ops.length)
+                ops = Arrays.copyOf(ops, ops.length * 2);
+
+            if (bestLength > 0) {
+                ops[opCount++] = bestStart;
+                ops[opCount++] = bestLength;
+                j += bestLength;
+            } else {
+                ops[opCount++] = -1 - inserted.size();
+                inserted.add(target[j++]);
+            }
+        }
+
+        return new Encoded(null, CodeArena.NONE, Arrays.copyOf(ops, opCount), inserted.toArray(new String[0]));
+    }
+
+    /*
+    Either a keyframe with the full code, on the heap or in the arena, or a delta.
+    A delta is a sequence of operations: a non-negative value and a length copy a range of base lines,
+    and a negative value inserts the line at index '-1 - value' of the inserted lines.
+     */
+    static final class Encoded {
+        private final @Nullable String keyframe;
+        private final long handle;
+        private final @Nullable int[] ops;
+        private final @Nullable String[] inserted;
+
+        private Encoded(@Nullable String keyframe, long handle, @Nullable int[] ops, @Nullable String[] inserted) {
+            this.keyframe = keyframe;
+            this.handle = handle;
+            this.ops = ops;
+            this.inserted = inserted;
+        }
+
+        boolean isDelta() {
+            return ops != null;
+        }
+
+        @Nullable String keyframe(@Nullable CodeArena arena) {
+            return handle != CodeArena.NONE && arena != null ? arena.decode(handle) : keyframe;
+        }
+
+        String[] apply(String[] base) {
+            final List<String> lines = new ArrayList<>(base.length + inserted.length);
+
+            for (int i = 0; i < ops.length; i++) {
+                final int op = ops[i];
+
+                if (op >= 0) {
+                    final int length = ops[++i];
+
+                    lines.addAll(Arrays.asList(base).subList(op, op + length));
+                } else lines.add(inserted[-1 - op]);
+            }
+
+            return lines.toArray(new String[0]);
+        }
+
+        int size(@Nullable CodeArena arena) {
+            if (handle != CodeArena.NONE && arena != null)
+                return arena.length(handle);
+            if (ops == null)
+                return Snippet.textSize(keyframe);
+
+            int size = DELTA_OVERHEAD + OP_OVERHEAD * ops.length;
+            for (String line : inserted)
+                size += Snippet.textSize(line) + OP_OVERHEAD;
+
+            return size;
+        }
+    }
+}
@@ -1,14 +1,31 @@
 package io.codebottle.api.model;
 
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Function;
 
+import com.fasterxml.jackson.annotation.JacksonInject;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.JsonNode;
 import io.codebottle.api.CodeBottleAPI;
@@ -19,228 +36,1003 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public class Snippet extends AbstractEntity {
+    private static final int ENTITY_OVERHEAD = 128;
+    private static final int STRING_OVERHEAD = 40;
+    private static final AtomicReferenceFieldUpdater<Snippet, State> STATE
+            = AtomicReferenceFieldUpdater.newUpdater(Snippet.class, State.class, "state");
+
     private final List<Revision> revisions;
+    private final RevisionStorage.Chain revisionCode;
 
-    private @JsonProperty(required = true) String title;
-    private @JsonProperty @Nullable String description;
-    private @JsonProperty(required = true) String code;
-    private @JsonProperty(required = true) int views;
-    private @JsonProperty(required = true) Language language;
-    private @JsonProperty(required = true) Category category;
-    private @JsonProperty(required = true) int votes;
-    private @JsonProperty(required = true) String username;
-    private @JsonProperty(required = true) Instant createdAt;
-    private @JsonProperty(required = true) Instant updatedAt;
+    // not initialized explicitly, because binding a tree already sets it during the super constructor
+    private volatile State state;
+    // set once the snippet left the cache; code that is stored afterwards is moved to the heap, as it is never released
+    private volatile boolean codeReleased;
 
     public Snippet(CodeBottleAPI context, JsonNode data) {
         super(context, data);
 
         revisions = new ArrayList<>();
+        revisionCode = context.getRevisionStorage().newChain();
+    }
+
+    Snippet(CodeBottleAPI context, String id) {
+        super(context, id);
+
+        revisions = new ArrayList<>();
+        revisionCode = context.getRevisionStorage().newChain();
+        state = State.EMPTY;
+    }
+
+    @JsonCreator
+    Snippet(
+            @JacksonInject CodeBottleAPI context,
+            @JsonProperty(value = "id", required = true) String id,
+            @JsonProperty("title") String title,
+            @JsonProperty("description") @Nullable String description,
+            @JsonProperty("code") @Nullable String code,
+            @JsonProperty("views") int views,
+            @JsonProperty("language") @Nullable Language language,
+            @JsonProperty("category") @Nullable Category category,
+            @JsonProperty("votes") int votes,
+            @JsonProperty("username") String username,
+            @JsonProperty("createdAt") @Nullable String createdAt,
+            @JsonProperty("updatedAt") @Nullable String updatedAt
+    ) {
+        super(context, id);
+
+        revisions = new ArrayList<>();
+        revisionCode = context.getRevisionStorage().newChain();
+
+        final CodeArena arena = context.getCodeArena().orElse(null);
+        state = new State(title, description, code, storeCode(arena, code), arena, views,
+                language == null ? null : resolveLanguage(context, language),
+                category == null ? null : resolveCategory(context, category),
+                votes, username, parseInstant(createdAt), parseInstant(updatedAt));
+    }
+
+    // a snippet whose fields are decoded from the given raw data when they are first read
+    Snippet(CodeBottleAPI context, String id, byte[] raw) {
+        super(context, id);
+
+        revisions = new ArrayList<>();
+        revisionCode = context.getRevisionStorage().newChain();
+        state = new State(context, raw);
     }
 
     public String getTitle() {
-        return title;
+        return state.getTitle();
     }
 
     public Optional<String> getDescription() {
-        return Optional.ofNullable(description);
+        return state.getDescription();
     }
 
     public String getCode() {
-        return code;
+        return readCode(State::getCode);
+    }
+
+    /**
+     * Returns the code of this snippet as a {@link CharSequence}.
+     * If the code is stored off-heap and is pure ASCII, the sequence reads it in place without copying it to the heap.
+     *
+     * @return the code of this snippet.
+     */
+    public CharSequence getCodeSequence() {
+        return readCode(State::getCodeSequence);
+    }
+
+    /**
+     * Opens a channel that reads the code of this snippet as UTF-8.
+     * If the code is stored off-heap, it is read in place without copying it to the heap.
+     *
+     * @return a channel to read the code from.
+     */
+    public ReadableByteChannel openCode() {
+        return readCode(State::openCode);
+    }
+
+    // the code of a state is freed once the snippet was updated with new code, which the state that replaced it holds
+    private <R> R readCode(Function<State, R> read) {
+        State state = this.state;
+
+        while (true)
+            try {
+                return read.apply(state);
+            } catch (IllegalStateException e) {
+                final State current = this.state;
+
+                if (current == state)
+                    throw e;
+
+                state = current;
+            }
     }
 
     public int getViews() {
-        return views;
+        return state.getViews();
     }
 
     public Language getLanguage() {
-        return language;
+        return state.getLanguage();
     }
 
     public Category getCategory() {
-        return category;
+        return state.getCategory();
     }
 
     public int getVotes() {
-        return votes;
+        return state.getVotes();
     }
 
     public String getUsername() {
-        return username;
+        return state.getUsername();
     }
 
     public Instant getCreatedAt() {
-        return createdAt;
+        return state.getCreatedAt();
     }
 
     public Instant getUpdatedAt() {
-        return updatedAt;
+        return state.getUpdatedAt();
+    }
+
+    /**
+     * Returns the current state of this snippet, which does not change when the snippet is updated.
+     * Use it to read several fields that must belong to the same version of the snippet.
+     *
+     * @return the current state.
+     */
+    @JsonIgnore
+    public State getState() {
+        return state;
     }
 
     @Override
     public Snippet update(JsonNode data) {
-        this.title = data.path("title").asText(title);
-        this.description = data.path("description").asText(description);
-        this.code = data.path("code").asText(code);
-        this.views = data.path("views").asInt(views);
-        this.language = context.getLanguageByID(data.path("language").path("id").asText(null))
+        final boolean hasCode = !data.path("code").isMissingNode() && !data.path("code").isNull();
+        final CodeArena arena = context.getCodeArena().orElse(null);
+        final String code = hasCode ? data.path("code").asText() : null;
+        final long codeHandle = storeCode(arena, code);
+        final Language language = context.peekLanguageByID(data.path("language").path("id").asText(null))
                 .orElseGet(() -> new Language(context, data.path("language")))
                 .update(data.path("language"));
-        this.category = context.getCategoryByID(data.path("category").path("id").asText(null))
+        final Category category = context.peekCategoryByID(data.path("category").path("id").asText(null))
                 .orElseGet(() -> new Category(context, data.path("category")))
                 .update(data.path("category"));
-        this.votes = data.path("votes").asInt(votes);
-        this.username = data.path("username").asText(username);
-        this.createdAt = Optional.ofNullable(data.path("createdAt").asText(null))
-                .map(Instant::parse)
-                .orElse(createdAt);
-        this.updatedAt = Optional.ofNullable(data.path("updatedAt").asText(null))
-                .map(Instant::parse)
-                .orElse(updatedAt);
+
+        final State previous = STATE.getAndUpdate(this, current -> {
+            if (current == null) current = State.EMPTY;
+
+            return new State(
+                    data.path("title").asText(current.getTitle()),
+                    data.path("description").asText(current.getDescription().orElse(null)),
+                    hasCode ? code : current.heapCode(),
+                    hasCode ? codeHandle : current.codeHandle,
+                    hasCode ? arena : current.arena,
+                    data.path("views").asInt(current.getViews()),
+                    language,
+                    category,
+                    data.path("votes").asInt(current.getVotes()),
+                    data.path("username").asText(current.getUsername()),
+                    Optional.ofNullable(data.path("createdAt").asText(null))
+                            .map(Instant::parse)
+                            .orElse(current.getCreatedAt()),
+                    Optional.ofNullable(data.path("updatedAt").asText(null))
+                            .map(Instant::parse)
+                            .orElse(current.getUpdatedAt())
+            );
+        });
+
+        if (hasCode)
+            freeReplacedCode(previous, codeHandle);
+        if (codeReleased)
+            moveCodeToHeap();
+
+        reindex();
+
+        return this;
+    }
+
+    /**
+     * Merges the data of the given {@code other} snippet, which was freshly bound by the {@link EntityMapper}, into this snippet.
+     *
+     * @param other is the freshly bound snippet.
+     *
+     * @return this snippet.
+     */
+    public Snippet update(Snippet other) {
+        if (other == this) return this;
+
+        final State bound = other.state;
+
+        if (bound.raw != null) {
+            final State current = this.state;
+            updateFetchedAt(other);
+
+            // unchanged data keeps the fields that were already decoded
+            if (current.raw != null && Arrays.equals(current.raw, bound.raw))
+                return this;
+
+            // data that is decoded on demand is always complete, so it replaces the current state as a whole
+            this.state = bound;
+
+            reindex();
+
+            return this;
+        }
+
+        final boolean hasCode = bound.code != null || bound.codeHandle != CodeArena.NONE;
+
+        if (hasCode)
+            // the freshly bound snippet is discarded after merging, so its stored code is taken over instead of copied
+            other.state = bound.withoutCode();
+
+        final State previous = STATE.getAndUpdate(this, current -> new State(
+                bound.title != null ? bound.title : current.getTitle(),
+                bound.description != null ? bound.description : current.getDescription().orElse(null),
+                hasCode ? bound.code : current.heapCode(),
+                hasCode ? bound.codeHandle : current.codeHandle,
+                hasCode ? bound.arena : current.arena,
+                bound.views,
+                bound.language != null ? bound.language : current.getLanguage(),
+                bound.category != null ? bound.category : current.getCategory(),
+                bound.votes,
+                bound.username != null ? bound.username : current.getUsername(),
+                bound.createdAt != null ? bound.createdAt : current.getCreatedAt(),
+                bound.updatedAt != null ? bound.updatedAt : current.getUpdatedAt()
+        ));
+
+        if (hasCode)
+            freeReplacedCode(previous, bound.codeHandle);
+        if (codeReleased)
+            moveCodeToHeap();
+        updateFetchedAt(other);
+
+        reindex();
+
+        return this;
+    }
+
+    // stores the code off-heap if an arena is configured
+    private static long storeCode(@Nullable CodeArena arena, @Nullable String code) {
+        return arena != null && code != null ? arena.store(code) : CodeArena.NONE;
+    }
+
+    // frees the stored code of the replaced state, unless it was kept
+    private static void freeReplacedCode(@Nullable State replaced, long codeHandle) {
+        if (replaced != null && replaced.codeHandle != CodeArena.NONE && replaced.codeHandle != codeHandle)
+            replaced.arena.free(replaced.codeHandle);
+    }
+
+    private static @Nullable Instant parseInstant(@Nullable String instant) {
+        return instant == null ? null : Instant.parse(instant);
+    }
+
+    void releaseCode() {
+        codeReleased = true;
+        moveCodeToHeap();
+        revisionCode.release();
+    }
+
+    // copies the code of a snippet that left the cache to the heap, so that it stays readable while it is referenced
+    private void moveCodeToHeap() {
+        while (true) {
+            final State current = this.state;
+            final State onHeap;
+
+            try {
+                onHeap = current.onHeap();
+            } catch (IllegalStateException e) {
+                // the code was replaced meanwhile, so the state that replaced it is moved instead
+                if (this.state == current)
+                    throw e;
+
+                continue;
+            }
+
+            if (STATE.compareAndSet(this, current, onHeap)) {
+                if (current.codeHandle != CodeArena.NONE)
+                    current.arena.free(current.codeHandle);
+
+                return;
+            }
+        }
+    }
+
+    /**
+     * Estimates the memory used by this snippet and its cached revisions in bytes.
+     *
+     * @return the estimated size in bytes.
+     */
+    public int estimateSize() {
+        int size = ENTITY_OVERHEAD + readCode(state -> state.raw != null
+                ? state.raw.length
+                : textSize(state.title) + textSize(state.description) + textSize(state.username)
+                + (state.codeHandle != CodeArena.NONE ? state.arena.length(state.codeHandle) : textSize(state.code)));
+
+        synchronized (revisions) {
+            for (Revision revision : revisions)
+                if (revision != null)
+                    size += revision.estimateSize();
+        }
+
+        return size;
+    }
+
+    void writeSnapshot(DataOutputStream out) throws IOException {
+        // the code is decoded first, so that all fields are written from the state it belongs to
+        final Map.Entry<State, String> decoded = readCode(current -> new AbstractMap.SimpleImmutableEntry<>(current, current.getCode()));
+        final State state = decoded.getKey();
+
+        CacheSnapshot.writeString(out, id);
+        CacheSnapshot.writeString(out, state.getTitle());
+        CacheSnapshot.writeString(out, state.getDescription().orElse(null));
+        CacheSnapshot.writeString(out, decoded.getValue());
+        out.writeInt(state.getViews());
+        CacheSnapshot.writeString(out, state.getLanguage() == null ? null : state.getLanguage().getID());
+        CacheSnapshot.writeString(out, state.getCategory() == null ? null : state.getCategory().getID());
+        out.writeInt(state.getVotes());
+        CacheSnapshot.writeString(out, state.getUsername());
+        CacheSnapshot.writeInstant(out, state.getCreatedAt());
+        CacheSnapshot.writeInstant(out, state.getUpdatedAt());
+
+        synchronized (revisions) {
+            out.writeInt(revisions.size());
+
+            for (Revision revision : revisions) {
+                out.writeBoolean(revision != null);
+
+                if (revision != null)
+                    revision.writeSnapshot(out);
+            }
+        }
+    }
+
+    Snippet readSnapshot(ByteBuffer in, Map<String, Language> languages, Map<String, Category> categories) throws IOException {
+        final CodeArena arena = context.getCodeArena().orElse(null);
+        final String title = CacheSnapshot.readString(in);
+        final String description = CacheSnapshot.readString(in);
+        final String code = CacheSnapshot.readString(in);
+        final int views = in.getInt();
+        final Language language = snapshotReference(CacheSnapshot.readString(in), languages, id -> new Language(context, id));
+        final Category category = snapshotReference(CacheSnapshot.readString(in), categories, id -> new Category(context, id));
+        final int votes = in.getInt();
+        final String username = CacheSnapshot.readString(in);
+        final Instant createdAt = CacheSnapshot.readInstant(in);
+        final Instant updatedAt = CacheSnapshot.readInstant(in);
+
+        this.state = new State(title, description, code, storeCode(arena, code), arena, views, language, category, votes, username, createdAt, updatedAt);
+
+        final int revisionCount = in.getInt();
+
+        synchronized (revisions) {
+            for (int i = 0; i < revisionCount; i++)
+                revisions.add(in.get() == 0 ? null : new Revision(context, i, revisionCode).readSnapshot(in, languages, categories));
+        }
 
         return this;
     }
 
-    public Optional<Revision> getRevisionByID(int id) throws IndexOutOfBoundsException {
-        return Optional.ofNullable(revisions.get(id));
+    @Nullable
+    private static <T> T snapshotReference(@Nullable String id, Map<String, T> known, Function<String, T> unknown) {
+        return id == null ? null : known.computeIfAbsent(id, unknown);
     }
 
+    public Optional<Revision> getRevisionByID(int id) {
+        synchronized (revisions) {
+            return id >= 0 && id < revisions.size() ? Optional.ofNullable(revisions.get(id)) : Optional.empty();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the cached revisions of this snippet, in the order of their IDs.
+     * Revisions that were not received yet are left out.
+     *
+     * @return the cached revisions.
+     */
     public Collection<Revision> getRevisions() {
-        return Collections.unmodifiableCollection(revisions);
+        return Collections.unmodifiableList(copyRevisions());
+    }
+
+    // the cached revisions, without gaps
+    List<Revision> copyRevisions() {
+        synchronized (revisions) {
+            final List<Revision> copy = new ArrayList<>(revisions.size());
+
+            for (Revision revision : revisions)
+                if (revision != null)
+                    copy.add(revision);
+
+            return copy;
+        }
+    }
+
+    private void reindex() {
+        // the constructor updates the snippet before its fields are initialized; a new snippet is not indexed anyway
+        if (revisions == null)
+            return;
+
+        context.getSnippetIndex().reindex(this);
+        context.getSearchIndex().reindex(this);
     }
 
     public CompletableFuture<Revision> requestRevision(int id) {
         return new CodeBottleRequest<Revision>(context)
                 .to(Endpoint.SNIPPET_REVISION_SPECIFIC, this.id, id)
                 .makeGET()
-                .then(data -> {
-                    synchronized (revisions) {
-                        if (revisions.size() >= id) {
-                            // existing revision
-                            final Revision revision = revisions.get(id);
+                .orIfNotModified(getRevisionByID(id).orElse(null))
+                .thenRead(parser -> {
+                    final Revision revision;
 
-                            return revision.update(data);
-                        } else {
-                            // nonexisting revision
-                            final Revision revision = new Revision(context, data, id);
-
-                            revisions.set(id, revision);
-
-                            return revision;
-                        }
+                    synchronized (revisions) {
+                        revision = revisionAt(id);
                     }
+
+                    return context.getEntityMapper().readRevision(parser, revision);
                 });
     }
 
     public CompletableFuture<List<Revision>> requestRevisions() {
+        final AtomicInteger index = new AtomicInteger(0);
+
         return new CodeBottleRequest<List<Revision>>(context)
                 .to(Endpoint.SNIPPET_REVISIONS, id)
                 .makeGET()
-                .then(data -> {
+                .orIfNotModified(cachedRevisions())
+                .thenEach(parser -> {
+                    final int i = index.getAndIncrement();
+                    final Revision revision;
+
                     synchronized (revisions) {
-                        int i = -1;
+                        revision = revisionAt(i);
+                    }
 
-                        try {
-                            for (i = 0; i < revisions.size(); i++) {
-                                final Revision revision = revisions.get(i);
-                                final JsonNode revNode = data.path(i);
+                    return context.getEntityMapper().readRevision(parser, revision);
+                }, Collections::unmodifiableList);
+    }
 
-                                if (revNode.isMissingNode())
-                                    continue;
+    private @Nullable List<Revision> cachedRevisions() {
+        synchronized (revisions) {
+            if (revisions.isEmpty() || revisions.contains(null))
+                return null;
 
-                                revision.update(revNode);
-                            }
-                        } catch (IndexOutOfBoundsException e) {
-                            // when this occurrs, an index that didn't exist in cache before was reached
+            return Collections.unmodifiableList(new ArrayList<>(revisions));
+        }
+    }
 
-                            // this will never happen
-                            if (i == -1) throw new AssertionError("something fucked up happened to your jvm");
-                        }
+    // must be called while holding the lock on 'revisions'
+    private Revision revisionAt(int index) {
+        while (revisions.size() <= index)
+            revisions.add(null);
 
-                        while (i < data.size()) {
-                            revisions.add(new Revision(context, data.get(i), i));
+        Revision revision = revisions.get(index);
 
-                            i++;
-                        }
+        if (revision == null) {
+            // nonexisting revision
+            revision = new Revision(context, index, revisionCode);
 
-                        return Collections.unmodifiableList(revisions);
-                    }
-                });
+            revisions.set(index, revision);
+        }
+
+        return revision;
     }
 
-    public static class Revision extends AbstractEntity implements Comparable<Revision> {
-        public static final Comparator<Revision> REVISION_COMPARATOR = Comparator.comparingInt(entity -> Integer.parseInt(entity.getID()));
+    static int textSize(@Nullable String text) {
+        // 2 bytes per char is the worst case for compact strings
+        return text == null ? 0 : STRING_OVERHEAD + 2 * text.length();
+    }
 
-        private @JsonProperty(required = true) String title;
-        private @JsonProperty @Nullable String description;
-        private @JsonProperty(required = true) String code;
-        private @JsonProperty(required = true) Language language;
-        private @JsonProperty(required = true) Category category;
-        private @JsonProperty(required = true) String author;
-        private @JsonProperty(required = true) String explanation;
-        private @JsonProperty(required = true) Instant createdAt;
+    static Language resolveLanguage(CodeBottleAPI context, Language bound) {
+        return context.peekLanguageByID(bound.getID())
+                .map(language -> language.update(bound))
+                .orElse(bound);
+    }
 
-        protected Revision(CodeBottleAPI context, JsonNode data, int index) {
-            super(context, index);
+    static Category resolveCategory(CodeBottleAPI context, Category bound) {
+        return context.peekCategoryByID(bound.getID())
+                .map(category -> category.update(bound))
+                .orElse(bound);
+    }
+
+    /**
+     * An immutable version of the data of a {@link Snippet}.
+     * Every update of a snippet replaces its state as a whole, so all getters of a state belong to the same version.
+     * <p>
+     * If the code is {@linkplain CodeBottleAPI.Builder#setOffHeapCode(boolean) stored off-heap}, it is freed once the
+     * snippet was updated with new code; reading the code of an older state afterwards throws an {@link IllegalStateException}.
+     * The code getters of the {@link Snippet} itself never throw, because they read the code of the state that replaced it instead.
+     * Sequences and channels that were opened before stay readable.
+     * <p>
+     * If {@linkplain CodeBottleAPI.Builder#setLazySnippetFields(boolean) lazy snippet fields} are enabled, the state keeps
+     * the raw data of the snippet instead, and decodes every field when it is first read.
+     * Decoded fields are cached, except for the code, which is decoded again every time it is read.
+     */
+    public static final class State {
+        static final State EMPTY = new State(null, null, null, CodeArena.NONE, null, 0, null, null, 0, null, null, null);
+
+        private static final AtomicIntegerFieldUpdater<State> DECODED = AtomicIntegerFieldUpdater.newUpdater(State.class, "decoded");
+        private static final int TITLE = 1;
+        private static final int DESCRIPTION = 1 << 1;
+        private static final int VIEWS = 1 << 2;
+        private static final int LANGUAGE = 1 << 3;
+        private static final int CATEGORY = 1 << 4;
+        private static final int VOTES = 1 << 5;
+        private static final int USERNAME = 1 << 6;
+        private static final int CREATED_AT = 1 << 7;
+        private static final int UPDATED_AT = 1 << 8;
+        private static final int ALL = (1 << 9) - 1;
+
+        // the compact JSON of the snippet if its fields are decoded on demand, together with the context to resolve them in
+        private final @Nullable byte[] raw;
+        private final @Nullable CodeBottleAPI context;
+        // the fields that were decoded; every field is written before its bit is set, so a set bit publishes the field
+        private volatile int decoded;
+
+        private String title;
+        private @Nullable String description;
+        // null if the code is stored off-heap
+        private final @Nullable String code;
+        private final long codeHandle;
+        private final @Nullable CodeArena arena;
+        private int views;
+        private Language language;
+        private Category category;
+        private int votes;
+        private String username;
+        private Instant createdAt;
+        private Instant updatedAt;
+
+        State(
+                String title,
+                @Nullable String description,
+                @Nullable String code,
+                long codeHandle,
+                @Nullable CodeArena arena,
+                int views,
+                Language language,
+                Category category,
+                int votes,
+                String username,
+                Instant createdAt,
+                Instant updatedAt
+        ) {
+            this.raw = null;
+            this.context = null;
+            this.title = title;
+            this.description = description;
+            this.code = codeHandle != CodeArena.NONE ? null : code;
+            this.codeHandle = codeHandle;
+            this.arena = arena;
+            this.views = views;
+            this.language = language;
+            this.category = category;
+            this.votes = votes;
+            this.username = username;
+            this.createdAt = createdAt;
+            this.updatedAt = updatedAt;
+            this.decoded = ALL;
+        }
+
+        State(CodeBottleAPI context, byte[] raw) {
+            this.raw = raw;
+            this.context = context;
+            this.code = null;
+            this.codeHandle = CodeArena.NONE;
+            this.arena = null;
         }
 
         public String getTitle() {
+            if (isUndecoded(TITLE)) {
+                title = RawFields.text(raw, "title");
+                markDecoded(TITLE);
+            }
+
             return title;
         }
 
         public Optional<String> getDescription() {
+            if (isUndecoded(DESCRIPTION)) {
+                description = RawFields.text(raw, "description");
+                markDecoded(DESCRIPTION);
+            }
+
             return Optional.ofNullable(description);
         }
 
         public String getCode() {
-            return code;
+            if (raw != null)
+                return RawFields.text(raw, "code");
+
+            return codeHandle != CodeArena.NONE ? arena.decode(codeHandle) : code;
+        }
+
+        /**
+         * Returns the code as a {@link CharSequence}, see {@link Snippet#getCodeSequence()}.
+         *
+         * @return the code.
+         */
+        public CharSequence getCodeSequence() {
+            return codeHandle != CodeArena.NONE ? arena.sequence(codeHandle) : getCode();
+        }
+
+        /**
+         * Opens a channel that reads the code as UTF-8, see {@link Snippet#openCode()}.
+         *
+         * @return a channel to read the code from.
+         */
+        public ReadableByteChannel openCode() {
+            if (codeHandle != CodeArena.NONE)
+                return arena.channel(codeHandle);
+
+            final String code = getCode();
+
+            return Channels.newChannel(new ByteArrayInputStream(code == null ? new byte[0] : code.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        public int getViews() {
+            if (isUndecoded(VIEWS)) {
+                views = RawFields.integer(raw, "views");
+                markDecoded(VIEWS);
+            }
+
+            return views;
         }
 
         public Language getLanguage() {
+            if (isUndecoded(LANGUAGE)) {
+                final String[] named = RawFields.object(raw, "language", "id", "name");
+
+                // the data is not merged into the cached language, because reading a field must not change the cache
+                language = named == null || named[0] == null ? null : context.peekLanguageByID(named[0])
+                        .orElseGet(() -> new Language(context, named[0], named[1]));
+                markDecoded(LANGUAGE);
+            }
+
             return language;
         }
 
         public Category getCategory() {
+            if (isUndecoded(CATEGORY)) {
+                final String[] named = RawFields.object(raw, "category", "id", "name");
+
+                category = named == null || named[0] == null ? null : context.peekCategoryByID(named[0])
+                        .orElseGet(() -> new Category(context, named[0], named[1]));
+                markDecoded(CATEGORY);
+            }
+
             return category;
         }
 
+        public int getVotes() {
+            if (isUndecoded(VOTES)) {
+                votes = RawFields.integer(raw, "votes");
+                markDecoded(VOTES);
+            }
+
+            return votes;
+        }
+
+        public String getUsername() {
+            if (isUndecoded(USERNAME)) {
+                username = RawFields.text(raw, "username");
+                markDecoded(USERNAME);
+            }
+
+            return username;
+        }
+
+        public Instant getCreatedAt() {
+            if (isUndecoded(CREATED_AT)) {
+                createdAt = parseInstant(RawFields.text(raw, "createdAt"));
+                markDecoded(CREATED_AT);
+            }
+
+            return createdAt;
+        }
+
+        public Instant getUpdatedAt() {
+            if (isUndecoded(UPDATED_AT)) {
+                updatedAt = parseInstant(RawFields.text(raw, "updatedAt"));
+                markDecoded(UPDATED_AT);
+            }
+
+            return updatedAt;
+        }
+
+        // concurrent readers might decode the same field at the same time, but they all decode the same value
+        private boolean isUndecoded(int field) {
+            return (decoded & field) == 0;
+        }
+
+        private void markDecoded(int field) {
+            int current;
+
+            do {
+                current = decoded;
+            } while (!DECODED.compareAndSet(this, current, current | field));
+        }
+
+        // the code if it is kept on the heap, for a new state that keeps the code of this one
+        @Nullable String heapCode() {
+            return raw != null ? getCode() : code;
+        }
+
+        // the same state without the code, for a snippet whose code was taken over by another one
+        State withoutCode() {
+            return new State(title, description, null, CodeArena.NONE, null, views, language, category, votes, username, createdAt, updatedAt);
+        }
+
+        // the same state with the code on the heap, for a snippet whose code was released from the arena
+        State onHeap() {
+            if (codeHandle == CodeArena.NONE)
+                return this;
+
+            return new State(title, description, arena.decode(codeHandle), CodeArena.NONE, null, views, language, category, votes, username, createdAt, updatedAt);
+        }
+    }
+
+    public static class Revision extends AbstractEntity implements Comparable<Revision> {
+        public static final Comparator<Revision> REVISION_COMPARATOR = Comparator.comparingInt(entity -> Integer.parseInt(entity.getID()));
+        private static final AtomicReferenceFieldUpdater<Revision, State> STATE
+                = AtomicReferenceFieldUpdater.newUpdater(Revision.class, State.class, "state");
+
+        private final int index;
+        // the code is stored as a delta against the previous revision
+        private final RevisionStorage.Chain encodedCode;
+
+        private volatile State state;
+
+        protected Revision(CodeBottleAPI context, JsonNode data, int index) {
+            this(context, index);
+
+            update(data);
+        }
+
+        protected Revision(CodeBottleAPI context, int index) {
+            this(context, index, context.getRevisionStorage().newChain());
+        }
+
+        Revision(CodeBottleAPI context, int index, RevisionStorage.Chain code) {
+            super(context, index);
+
+            this.index = index;
+            this.encodedCode = code;
+            this.state = State.EMPTY;
+        }
+
+        public String getTitle() {
+            return state.title;
+        }
+
+        public Optional<String> getDescription() {
+            return state.getDescription();
+        }
+
+        /**
+         * Returns the code of this revision, which is decoded from the stored delta if it was not decoded recently.
+         *
+         * @return the code of this revision.
+         */
+        public String getCode() {
+            return encodedCode.get(this, index);
+        }
+
+        public Language getLanguage() {
+            return state.language;
+        }
+
+        public Category getCategory() {
+            return state.category;
+        }
+
         public String getAuthor() {
-            return author;
+            return state.author;
         }
 
         public String getExplanation() {
-            return explanation;
+            return state.explanation;
         }
 
         public Instant getCreatedAt() {
-            return createdAt;
+            return state.createdAt;
+        }
+
+        /**
+         * Returns the current state of this revision, which does not change when the revision is updated.
+         * The code is not part of the state, because it is stored as a delta against the other revisions of the snippet.
+         *
+         * @return the current state.
+         */
+        @JsonIgnore
+        public State getState() {
+            return state;
         }
 
         @Override
         public Revision update(JsonNode data) {
-            this.title = data.path("title").asText(title);
-            this.description = data.path("description").asText(description);
-            this.code = data.path("code").asText(code);
-            this.language = context.getLanguageByID(data.path("language").path("id").asText(null))
+            final Language language = context.peekLanguageByID(data.path("language").path("id").asText(null))
                     .orElseGet(() -> new Language(context, data.path("language")))
                     .update(data.path("language"));
-            this.category = context.getCategoryByID(data.path("category").path("id").asText(null))
+            final Category category = context.peekCategoryByID(data.path("category").path("id").asText(null))
                     .orElseGet(() -> new Category(context, data.path("category")))
                     .update(data.path("category"));
-            this.author = data.path("author").asText(author);
-            this.explanation = data.path("explanation").asText(explanation);
-            this.createdAt = Optional.ofNullable(data.path("createdAt").asText(null))
-                    .map(Instant::parse)
-                    .orElse(createdAt);
+
+            this.encodedCode.put(this, index, data.path("code").asText(getCode()));
+            STATE.updateAndGet(this, current -> new State(
+                    data.path("title").asText(current.title),
+                    data.path("description").asText(current.description),
+                    language,
+                    category,
+                    data.path("author").asText(current.author),
+                    data.path("explanation").asText(current.explanation),
+                    Optional.ofNullable(data.path("createdAt").asText(null))
+                            .map(Instant::parse)
+                            .orElse(current.createdAt)
+            ));
+
+            return this;
+        }
+
+        // merges a freshly bound revision into this one; only the received properties are replaced
+        Revision update(Bound bound) {
+            if (bound.code != null)
+                this.encodedCode.put(this, index, bound.code);
+            STATE.updateAndGet(this, current -> new State(
+                    bound.title != null ? bound.title : current.title,
+                    bound.description != null ? bound.description : current.description,
+                    bound.language != null ? bound.language : current.language,
+                    bound.category != null ? bound.category : current.category,
+                    bound.author != null ? bound.author : current.author,
+                    bound.explanation != null ? bound.explanation : current.explanation,
+                    bound.createdAt != null ? bound.createdAt : current.createdAt
+            ));
+
+            return this;
+        }
+
+        void writeSnapshot(DataOutputStream out) throws IOException {
+            final State state = this.state;
+
+            CacheSnapshot.writeString(out, state.title);
+            CacheSnapshot.writeString(out, state.description);
+            CacheSnapshot.writeString(out, getCode());
+            CacheSnapshot.writeString(out, state.language == null ? null : state.language.getID());
+            CacheSnapshot.writeString(out, state.category == null ? null : state.category.getID());
+            CacheSnapshot.writeString(out, state.author);
+            CacheSnapshot.writeString(out, state.explanation);
+            CacheSnapshot.writeInstant(out, state.createdAt);
+        }
+
+        Revision readSnapshot(ByteBuffer in, Map<String, Language> languages, Map<String, Category> categories) throws IOException {
+            final String title = CacheSnapshot.readString(in);
+            final String description = CacheSnapshot.readString(in);
+            this.encodedCode.put(this, index, CacheSnapshot.readString(in));
+            final Language language = snapshotReference(CacheSnapshot.readString(in), languages, id -> new Language(context, id));
+            final Category category = snapshotReference(CacheSnapshot.readString(in), categories, id -> new Category(context, id));
+            final String author = CacheSnapshot.readString(in);
+            final String explanation = CacheSnapshot.readString(in);
+
+            this.state = new State(title, description, language, category, author, explanation, CacheSnapshot.readInstant(in));
 
             return this;
         }
 
+        /**
+         * Estimates the memory used by this revision in bytes.
+         *
+         * @return the estimated size in bytes.
+         */
+        public int estimateSize() {
+            final State state = this.state;
+
+            return ENTITY_OVERHEAD + textSize(state.title) + textSize(state.description) + encodedCode.encodedSize(index)
+                    + textSize(state.author) + textSize(state.explanation);
+        }
+
         @Override
         @Contract(pure = true)
         public int compareTo(@NotNull Snippet.Revision other) {
             return REVISION_COMPARATOR.compare(this, other);
         }
+
+        /**
+         * An immutable version of the data of a {@link Revision}, except for its code.
+         * Every update of a revision replaces its state as a whole, so all getters of a state belong to the same version.
+         */
+        public static final class State {
+            static final State EMPTY = new State(null, null, null, null, null, null, null);
+
+            private final String title;
+            private final @Nullable String description;
+            private final Language language;
+            private final Category category;
+            private final String author;
+            private final String explanation;
+            private final Instant createdAt;
+
+            State(
+                    String title,
+                    @Nullable String description,
+                    Language language,
+                    Category category,
+                    String author,
+                    String explanation,
+                    Instant createdAt
+            ) {
+                this.title = title;
+                this.description = description;
+                this.language = language;
+                this.category = category;
+                this.author = author;
+                this.explanation = explanation;
+                this.createdAt = createdAt;
+            }
+
+            public String getTitle() {
+                return title;
+            }
+
+            public Optional<String> getDescription() {
+                return Optional.ofNullable(description);
+            }
+
+            public Language getLanguage() {
+                return language;
+            }
+
+            public Category getCategory() {
+                return category;
+            }
+
+            public String getAuthor() {
+                return author;
+            }
+
+            public String getExplanation() {
+                return explanation;
+            }
+
+            public Instant getCreatedAt() {
+                return createdAt;
+            }
+        }
+
+        /*
+        A revision as it was bound by the EntityMapper, before it is merged into the cached revision at its index.
+        Revisions are identified by their index, which is not part of the data, so they cannot be bound directly.
+         */
+        static final class Bound {
+            private final @Nullable String title;
+            private final @Nullable String description;
+            private final @Nullable String code;
+            private final @Nullable Language language;
+            private final @Nullable Category category;
+            private final @Nullable String author;
+            private final @Nullable String explanation;
+            private final @Nullable Instant createdAt;
+
+            @JsonCreator
+            Bound(
+                    @JacksonInject CodeBottleAPI context,
+                    @JsonProperty("title") @Nullable String title,
+                    @JsonProperty("description") @Nullable String description,
+                    @JsonProperty("code") @Nullable String code,
+                    @JsonProperty("language") @Nullable Language language,
+                    @JsonProperty("category") @Nullable Category category,
+                    @JsonProperty("author") @Nullable String author,
+                    @JsonProperty("explanation") @Nullable String explanation,
+                    @JsonProperty("createdAt") @Nullable String createdAt
+            ) {
+                this.title = title;
+                this.description = description;
+                this.code = code;
+                this.language = language == null ? null : resolveLanguage(context, language);
+                this.category = category == null ? null : resolveCategory(context, category);
+                this.author = author;
+                this.explanation = explanation;
+                this.createdAt = parseInstant(createdAt);
+            }
+        }
     }
 }
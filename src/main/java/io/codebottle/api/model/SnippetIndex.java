@@ -0,0 +1,192 @@
+package io.codebottle.api.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Secondary indexes of the cached {@link Snippet}s by language, category and username.
+ * <p>
+ * A snippet is moved between index entries in one step whenever an update changes its language, category or username,
+ * so a lookup never sees a snippet under two languages at once.
+ * Lookups cost time in the size of their result, not in the number of cached snippets.
+ */
+public final class SnippetIndex {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<String, Map<String, Snippet>> byLanguage = new HashMap<>();
+    private final Map<String, Map<String, Snippet>> byCategory = new HashMap<>();
+    private final Map<String, Map<String, Snippet>> byUsername = new HashMap<>();
+
+    /**
+     * Adds the given {@code snippet} to the index, or moves it to its current keys if it is already indexed.
+     * A different snippet instance with the same ID is replaced.
+     *
+     * @param snippet is the snippet to index.
+     */
+    public void add(Snippet snippet) {
+        lock.writeLock().lock();
+        try {
+            final Entry entry = entries.get(snippet.getID());
+
+            if (entry == null)
+                entries.put(snippet.getID(), link(snippet));
+            else if (entry.snippet != snippet) {
+                unlink(entry);
+                entries.put(snippet.getID(), link(snippet));
+            } else relink(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the given {@code snippet} from the index.
+     * Nothing happens if a different snippet instance with the same ID is indexed.
+     *
+     * @param snippet is the snippet to remove.
+     */
+    public void remove(Snippet snippet) {
+        lock.writeLock().lock();
+        try {
+            final Entry entry = entries.get(snippet.getID());
+
+            if (entry != null && entry.snippet == snippet) {
+                entries.remove(snippet.getID());
+                unlink(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all snippets from the index.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            byLanguage.clear();
+            byCategory.clear();
+            byUsername.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Collection<Snippet> getByLanguage(String languageId) {
+        return lookup(byLanguage, languageId);
+    }
+
+    public Collection<Snippet> getByCategory(String categoryId) {
+        return lookup(byCategory, categoryId);
+    }
+
+    public Collection<Snippet> getByUsername(String username) {
+        return lookup(byUsername, username);
+    }
+
+    // moves the snippet to its current keys if it is indexed; called after every update of a snippet
+    void reindex(Snippet snippet) {
+        lock.writeLock().lock();
+        try {
+            final Entry entry = entries.get(snippet.getID());
+
+            if (entry != null && entry.snippet == snippet)
+                relink(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Collection<Snippet> lookup(Map<String, Map<String, Snippet>> index, String key) {
+        lock.readLock().lock();
+        try {
+            final Map<String, Snippet> snippets = index.get(key);
+
+            return snippets == null
+                    ? Collections.emptyList()
+                    : Collections.unmodifiableList(new ArrayList<>(snippets.values()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void relink(Entry entry) {
+        final Snippet snippet = entry.snippet;
+
+        if (Objects.equals(entry.language, languageOf(snippet))
+                && Objects.equals(entry.category, categoryOf(snippet))
+                && Objects.equals(entry.username, snippet.getUsername()))
+            return;
+
+        unlink(entry);
+        entries.put(snippet.getID(), link(snippet));
+    }
+
+    private Entry link(Snippet snippet) {
+        final Entry entry = new Entry(snippet, languageOf(snippet), categoryOf(snippet), snippet.getUsername());
+
+        put(byLanguage, entry.language, snippet);
+        put(byCategory, entry.category, snippet);
+        put(byUsername, entry.username, snippet);
+
+        return entry;
+    }
+
+    private void unlink(Entry entry) {
+        remove(byLanguage, entry.language, entry.snippet);
+        remove(byCategory, entry.category, entry.snippet);
+        remove(byUsername, entry.username, entry.snippet);
+    }
+
+    private static void put(Map<String, Map<String, Snippet>> index, @Nullable String key, Snippet snippet) {
+        if (key != null)
+            index.computeIfAbsent(key, k -> new HashMap<>()).put(snippet.getID(), snippet);
+    }
+
+    private static void remove(Map<String, Map<String, Snippet>> index, @Nullable String key, Snippet snippet) {
+        if (key == null)
+            return;
+
+        final Map<String, Snippet> snippets = index.get(key);
+
+        if (snippets != null && snippets.get(snippet.getID()) == snippet) {
+            snippets.remove(snippet.getID());
+
+            if (snippets.isEmpty())
+                index.remove(key);
+        }
+    }
+
+    private static @Nullable String languageOf(Snippet snippet) {
+        return snippet.getLanguage() == null ? null : snippet.getLanguage().getID();
+    }
+
+    private static @Nullable String categoryOf(Snippet snippet) {
+        return snippet.getCategory() == null ? null : snippet.getCategory().getID();
+    }
+
+    // the keys a snippet is currently indexed under
+    private static final class Entry {
+        private final Snippet snippet;
+        private final @Nullable String language;
+        private final @Nullable String category;
+        private final @Nullable String username;
+
+        private Entry(Snippet snippet, @Nullable String language, @Nullable String category, @Nullable String username) {
+            this.snippet = snippet;
+            this.language = language;
+            this.category = category;
+            this.username = username;
+        }
+    }
+}
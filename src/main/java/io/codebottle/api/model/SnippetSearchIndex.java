@@ -0,0 +1,448 @@
+package io.codebottle.api.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * An inverted full-text index over the cached {@link Snippet}s, ranked with BM25.
+ * <p>
+ * Titles, descriptions and code are split into terms by a tokenizer for source code, which splits identifiers
+ * at underscores and camelCase humps, so {@code "user name"} finds {@code getUserName()}.
+ * Depending on the {@link Scope}, the cached {@linkplain Snippet.Revision revisions} of a snippet are indexed as well.
+ * The index is updated incrementally whenever a snippet changes.
+ */
+public final class SnippetSearchIndex {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int TITLE_WEIGHT = 3;
+
+    private final Scope scope;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Document> documents = new HashMap<>();
+    private final Map<String, Postings> postings = new HashMap<>();
+    /*
+    Every indexed document has a slot, so that scores can be accumulated in an array.
+    Postings refer to slots instead of documents, and the generation of a slot changes whenever its document is removed,
+    so that searching only touches primitive arrays.
+     */
+    private Document[] slots = new Document[64];
+    private int[] slotLengths = new int[64];
+    private int[] slotGenerations = new int[64];
+    private int slotCount = 0;
+    // the BM25 length normalization of every slot, recomputed lazily after the index changed
+    private volatile double[] slotNorms = new double[0];
+    private volatile boolean normsStale = false;
+    private int[] freeSlots = new int[16];
+    private int freeSlotCount = 0;
+    private long totalLength = 0;
+
+    public SnippetSearchIndex(Scope scope) {
+        this.scope = scope;
+    }
+
+    public Scope getScope() {
+        return scope;
+    }
+
+    /**
+     * Adds the given {@code snippet} to the index, or re-indexes it if it is already indexed and its text changed.
+     * A different snippet instance with the same ID is replaced.
+     *
+     * @param snippet is the snippet to index.
+     */
+    public void add(Snippet snippet) {
+        if (scope == Scope.NONE)
+            return;
+
+        final long fingerprint = fingerprint(snippet);
+
+        lock.readLock().lock();
+        try {
+            final Document indexed = documents.get(snippet.getID());
+
+            if (indexed != null && indexed.snippet == snippet && indexed.fingerprint == fingerprint)
+                return;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // tokenizing is the expensive part, so it happens before the lock is taken
+        final Document document = tokenize(snippet, fingerprint);
+
+        lock.writeLock().lock();
+        try {
+            final Document indexed = documents.get(snippet.getID());
+
+            if (indexed != null)
+                unlink(indexed);
+
+            link(document);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // re-indexes the snippet if it is indexed; called after every update of a snippet
+    void reindex(Snippet snippet) {
+        if (scope == Scope.NONE)
+            return;
+
+        final Document indexed;
+
+        lock.readLock().lock();
+        try {
+            indexed = documents.get(snippet.getID());
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // snippets that are not indexed are not fingerprinted, as most updates are of those
+        if (indexed == null || indexed.snippet != snippet)
+            return;
+
+        final long fingerprint = fingerprint(snippet);
+
+        if (indexed.fingerprint == fingerprint)
+            return;
+
+        final Document document = tokenize(snippet, fingerprint);
+
+        lock.writeLock().lock();
+        try {
+            final Document current = documents.get(snippet.getID());
+
+            // the snippet might have left the index in the meantime
+            if (current != null && current.snippet == snippet) {
+                unlink(current);
+                link(document);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the given {@code snippet} from the index.
+     * Nothing happens if a different snippet instance with the same ID is indexed.
+     *
+     * @param snippet is the snippet to remove.
+     */
+    public void remove(Snippet snippet) {
+        if (scope == Scope.NONE)
+            return;
+
+        lock.writeLock().lock();
+        try {
+            final Document indexed = documents.get(snippet.getID());
+
+            if (indexed != null && indexed.snippet == snippet)
+                unlink(indexed);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Searches the indexed snippets for the given {@code query}.
+     *
+     * @param query is the text to search for. It is tokenized like the indexed text.
+     * @param limit is the maximum number of results.
+     *
+     * @return the best matching snippets, best match first.
+     *
+     * @throws IllegalStateException if the {@linkplain #getScope() scope} of this index is {@link Scope#NONE}.
+     */
+    public List<Hit> search(String query, int limit) throws IllegalStateException {
+        if (scope == Scope.NONE)
+            throw new IllegalStateException("Full-text search is disabled; set a search scope on the Builder");
+
+        final Set<String> terms = new LinkedHashSet<>();
+        CodeTokenizer.tokenize(query, terms::add);
+
+        if (terms.isEmpty() || limit <= 0)
+            return Collections.emptyList();
+
+        final PriorityQueue<Hit> best = new PriorityQueue<>(Comparator.comparingDouble(Hit::getScore));
+
+        lock.readLock().lock();
+        try {
+            final int documentCount = documents.size();
+            final double[] norms = norms();
+            final double[] scores = new double[slotCount];
+
+            for (String term : terms) {
+                final Postings matches = postings.get(term);
+
+                if (matches == null)
+                    continue;
+
+                final int frequency = matches.size - matches.stale;
+                final double weight = (K1 + 1) * Math.log(1 + (documentCount - frequency + 0.5) / (frequency + 0.5));
+
+                for (int i = 0; i < matches.size; i++) {
+                    final int slot = matches.slots[i];
+
+                    if (matches.generations[i] != slotGenerations[slot])
+                        continue; // removed from the index, but not yet compacted away
+
+                    final int termFrequency = matches.frequencies[i];
+
+                    scores[slot] += weight * termFrequency / (termFrequency + norms[slot]);
+                }
+            }
+
+            // keep only the best 'limit' results, the worst of them at the head
+            for (int slot = 0; slot < scores.length; slot++) {
+                final double score = scores[slot];
+
+                if (score <= 0)
+                    continue;
+
+                if (best.size() < limit)
+                    best.add(new Hit(slots[slot].snippet, score));
+                else if (score > best.peek().score) {
+                    best.poll();
+                    best.add(new Hit(slots[slot].snippet, score));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        final List<Hit> hits = new ArrayList<>(best);
+        hits.sort(Comparator.comparingDouble(Hit::getScore).reversed());
+
+        return Collections.unmodifiableList(hits);
+    }
+
+    // must be called while holding the read lock
+    private double[] norms() {
+        double[] norms = slotNorms;
+
+        if (normsStale || norms.length < slotCount) {
+            // concurrent searches might compute this at the same time, but they all compute the same values
+            final double averageLength = documents.isEmpty() ? 1 : (double) totalLength / documents.size();
+
+            norms = new double[slotCount];
+            for (int slot = 0; slot < slotCount; slot++)
+                norms[slot] = K1 * (1 - B + B * slotLengths[slot] / averageLength);
+
+            slotNorms = norms;
+            normsStale = false;
+        }
+
+        return norms;
+    }
+
+    private Document tokenize(Snippet snippet, long fingerprint) {
+        final Map<String, Integer> frequencies = new HashMap<>();
+        final int[] length = {0};
+
+        CodeTokenizer.tokenize(snippet.getTitle(), term -> {
+            frequencies.merge(term, TITLE_WEIGHT, Integer::sum);
+            length[0] += TITLE_WEIGHT;
+        });
+
+        for (String text : texts(snippet))
+            CodeTokenizer.tokenize(text, term -> {
+                frequencies.merge(term, 1, Integer::sum);
+                length[0]++;
+            });
+
+        return new Document(snippet, frequencies, length[0], fingerprint);
+    }
+
+    // the texts of a snippet besides its title
+    private List<String> texts(Snippet snippet) {
+        final List<String> texts = new ArrayList<>();
+
+        texts.add(snippet.getDescription().orElse(null));
+        texts.add(snippet.getCode());
+
+        if (scope == Scope.SNIPPETS_AND_REVISIONS)
+            for (Snippet.Revision revision : snippet.copyRevisions()) {
+                texts.add(revision.getTitle());
+                texts.add(revision.getDescription().orElse(null));
+                texts.add(revision.getCode());
+                texts.add(revision.getExplanation());
+            }
+
+        return texts;
+    }
+
+    // identifies the indexed text, so that unchanged snippets are not tokenized again
+    private long fingerprint(Snippet snippet) {
+        long fingerprint = hash(1, snippet.getTitle());
+
+        for (String text : texts(snippet))
+            fingerprint = hash(fingerprint, text);
+
+        return fingerprint;
+    }
+
+    private static long hash(long hash, @Nullable String text) {
+        if (text == null)
+            return hash * 1_000_003;
+
+        // 64 bits, so that distinct texts practically never collide
+        for (int i = 0; i < text.length(); i++)
+            hash = (hash ^ text.charAt(i)) * 0x100000001b3L;
+
+        return hash * 31 + text.length();
+    }
+
+    private void link(Document document) {
+        if (freeSlotCount > 0)
+            document.slot = freeSlots[--freeSlotCount];
+        else {
+            if (slotCount == slots.length) {
+                slots = Arrays.copyOf(slots, slots.length * 2);
+                slotLengths = Arrays.copyOf(slotLengths, slots.length);
+                slotGenerations = Arrays.copyOf(slotGenerations, slots.length);
+            }
+
+            document.slot = slotCount++;
+        }
+
+        slots[document.slot] = document;
+        slotLengths[document.slot] = document.length;
+        normsStale = true;
+        documents.put(document.snippet.getID(), document);
+        totalLength += document.length;
+
+        document.frequencies.forEach((term, frequency) -> postings
+                .computeIfAbsent(term, key -> new Postings())
+                .add(document.slot, slotGenerations[document.slot], frequency));
+    }
+
+    private void unlink(Document document) {
+        slots[document.slot] = null;
+        slotGenerations[document.slot]++;
+        normsStale = true;
+        if (freeSlotCount == freeSlots.length)
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+        freeSlots[freeSlotCount++] = document.slot;
+
+        documents.remove(document.snippet.getID());
+        totalLength -= document.length;
+
+        // the postings of the document are only marked as stale, and compacted once they make up half of a list
+        document.frequencies.keySet().forEach(term -> {
+            final Postings matches = postings.get(term);
+
+            if (matches != null && ++matches.stale * 2 >= matches.size) {
+                matches.compact(slotGenerations);
+
+                if (matches.size == 0)
+                    postings.remove(term);
+            }
+        });
+    }
+
+    /**
+     * What is indexed for full-text search.
+     */
+    public enum Scope {
+        /**
+         * Nothing is indexed, and full-text search is disabled.
+         */
+        NONE,
+
+        /**
+         * The title, description and code of all cached snippets are indexed.
+         */
+        SNIPPETS,
+
+        /**
+         * Like {@link #SNIPPETS}, and additionally the title, description, code and explanation of all cached revisions.
+         */
+        SNIPPETS_AND_REVISIONS
+    }
+
+    /**
+     * A snippet that matched a search, and how well it matched.
+     */
+    public static final class Hit {
+        private final Snippet snippet;
+        private final double score;
+
+        private Hit(Snippet snippet, double score) {
+            this.snippet = snippet;
+            this.score = score;
+        }
+
+        public Snippet getSnippet() {
+            return snippet;
+        }
+
+        /**
+         * @return the BM25 score of the match. Higher scores are better matches.
+         */
+        public double getScore() {
+            return score;
+        }
+    }
+
+    // the documents that contain a term, and how often they contain it
+    private static final class Postings {
+        private int[] slots = new int[4];
+        private int[] generations = new int[4];
+        private int[] frequencies = new int[4];
+        private int size = 0;
+        private int stale = 0;
+
+        private void add(int slot, int generation, int frequency) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+                generations = Arrays.copyOf(generations, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+
+            slots[size] = slot;
+            generations[size] = generation;
+            frequencies[size++] = frequency;
+        }
+
+        private void compact(int[] slotGenerations) {
+            int live = 0;
+
+            for (int i = 0; i < size; i++)
+                if (generations[i] == slotGenerations[slots[i]]) {
+                    slots[live] = slots[i];
+                    generations[live] = generations[i];
+                    frequencies[live++] = frequencies[i];
+                }
+
+            size = live;
+            stale = 0;
+        }
+    }
+
+    // one indexed snippet, with the frequencies of its terms
+    private static final class Document {
+        private final Snippet snippet;
+        private final Map<String, Integer> frequencies;
+        private final int length;
+        private final long fingerprint;
+        private int slot = -1;
+
+        private Document(Snippet snippet, Map<String, Integer> frequencies, int length, long fingerprint) {
+            this.snippet = snippet;
+            this.frequencies = frequencies;
+            this.length = length;
+            this.fingerprint = fingerprint;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package io.codebottle.api.rest;
+
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Response;
+
+/**
+ * Computes how long a request waits before it is retried.
+ */
+public final class Backoff {
+    /**
+     * The upper bound of the delay before the first retry, in nanoseconds.
+     */
+    public static final long INITIAL_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+    /**
+     * The upper bound of the delay before any retry, in nanoseconds.
+     */
+    public static final long MAX_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private Backoff() {
+    }
+
+    /**
+     * Returns the delay before the given retry, using exponential backoff with equal jitter:
+     * the delay is at least half of the exponential bound, and at most the bound itself.
+     *
+     * @param attempt is the number of retries before this one.
+     *
+     * @return the delay in nanoseconds.
+     */
+    public static long delay(int attempt) {
+        final long cap = Math.min(MAX_NANOS, INITIAL_NANOS << Math.min(attempt, 20));
+
+        return cap / 2 + ThreadLocalRandom.current().nextLong(cap / 2 + 1);
+    }
+
+    /**
+     * Returns the delay requested by the {@code Retry-After} header of the given response,
+     * which is either a number of seconds or an HTTP-date.
+     *
+     * @param response is the throttling response.
+     *
+     * @return the requested delay in nanoseconds, or {@code 0} if there is none or it already passed.
+     */
+    public static long retryAfter(Response response) {
+        final String retryAfter = response.header("Retry-After");
+
+        if (retryAfter == null)
+            return 0;
+
+        try {
+            return TimeUnit.SECONDS.toNanos(Math.max(0, Long.parseLong(retryAfter.trim())));
+        } catch (NumberFormatException e) {
+            // not delay-seconds, so it must be an HTTP-date
+            final Date date = response.headers().getDate("Retry-After");
+
+            return date == null ? 0 : TimeUnit.MILLISECONDS.toNanos(Math.max(0, date.getTime() - System.currentTimeMillis()));
+        }
+    }
+}
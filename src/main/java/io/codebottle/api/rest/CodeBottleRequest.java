@@ -1,22 +1,38 @@
 package io.codebottle.api.rest;
 
+import java.io.Closeable;
+import java.io.FilterInputStream;
 import java.io.IOException;
-import java.net.URL;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.codebottle.api.CodeBottleAPI;
 import io.codebottle.api.rest.exception.UnexpectedStatusCodeException;
 import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
 import okhttp3.MediaType;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
 import org.intellij.lang.annotations.MagicConstant;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.reactivestreams.Publisher;
 
 public final class CodeBottleRequest<T> {
     /*
@@ -42,11 +58,21 @@ public final class CodeBottleRequest<T> {
      */
 
     private final static ObjectMapper objectMapper;
+    // immutable, so every request shares the same instance
+    private final static Headers HEADERS = Headers.of("Accept", "application/vnd.codebottle.v1+json"); // fixed request header
+    // the result of a conditional request that was not modified, before it is replaced with the cached value
+    private final static Object NOT_MODIFIED = new Object();
 
     private final Request.Builder httpRequest;
     private final CodeBottleAPI context;
 
     private int expected = HTTPCodes.OK;
+    private Method method = Method.GET;
+    private @Nullable Endpoint endpoint = null;
+    private @Nullable String url = null;
+    private boolean revalidate = false;
+    private @Nullable T notModified = null;
+    private boolean shared = true;
 
     static {
         objectMapper = new ObjectMapper();
@@ -55,11 +81,11 @@ public final class CodeBottleRequest<T> {
     public CodeBottleRequest(CodeBottleAPI context) {
         this.context = context;
         this.httpRequest = new Request.Builder()
-                .addHeader("Accept", "application/vnd.codebottle.v1+json"); // fixed request header
-
-        // Experimental Feature:
-        // Add the token as 'Authorization' header ifPresent
-        context.getToken().ifPresent(token -> httpRequest.addHeader("Authorization", token));
+                .headers(context.getToken()
+                        // Experimental Feature:
+                        // Add the token as 'Authorization' header ifPresent
+                        .map(token -> HEADERS.newBuilder().add("Authorization", token).build())
+                        .orElse(HEADERS));
     }
 
     public CodeBottleAPI getContext() {
@@ -72,14 +98,17 @@ public final class CodeBottleRequest<T> {
     }
 
     public CodeBottleRequest<T> make(Method method, JsonNode withData) {
+        this.method = method;
         httpRequest.method(method.name(), method == Method.GET ? null : RequestBody.create(withData.toString(), MediaType.parse("application/json")));
 
         return this;
     }
 
     public CodeBottleRequest<T> to(Endpoint endpoint, Object... at) throws IllegalArgumentException {
-        final URL url = endpoint.url(at);
+        final HttpUrl url = endpoint.url(context.getBaseUrl(), at);
         httpRequest.url(url);
+        this.endpoint = endpoint;
+        this.url = url.toString();
 
         return this;
     }
@@ -90,34 +119,552 @@ public final class CodeBottleRequest<T> {
         return this;
     }
 
+    /**
+     * Stores the {@linkplain ValidatorCache validators} of the response, and makes this request conditional
+     * if a validator from a previous response is known and a {@code cached} value is present.
+     * If the server responds with {@link HTTPCodes#NOT_MODIFIED}, the response is not parsed and the returned future
+     * completes with the given {@code cached} value instead.
+     * <p>
+     * Only {@link Method#GET} requests are sent conditionally.
+     *
+     * @param cached is the currently cached value, or {@code null} if nothing is cached.
+     *
+     * @return this request.
+     */
+    public CodeBottleRequest<T> orIfNotModified(@Nullable T cached) {
+        this.revalidate = true;
+        this.notModified = cached;
+
+        return this;
+    }
+
+    /**
+     * Sends this request on its own, instead of sharing one round trip with identical requests that are in flight
+     * at the same time. Callers that decide on their own whether the request is sent conditionally, and compare the result
+     * against what they passed to {@link #orIfNotModified(Object)}, must not receive a response to someone else's request.
+     *
+     * @return this request.
+     */
+    public CodeBottleRequest<T> unshared() {
+        this.shared = false;
+
+        return this;
+    }
+
+    /**
+     * Sends the request and maps the response data using the given {@code remap} function.
+     * <p>
+     * The request is dispatched asynchronously using the {@linkplain okhttp3.Dispatcher dispatcher} of the
+     * {@linkplain CodeBottleAPI#getHttpClient() http client}; no thread is blocked while waiting for the response.
+     * The response is then parsed and mapped on the {@linkplain CodeBottleAPI#getExecutor() executor} of the API.
+     * Cancelling the returned future cancels the underlying call.
+     *
+     * @param remap is the function to map the received data with.
+     *
+     * @return a future that will complete with the mapped data.
+     */
     public CompletableFuture<T> then(Function<JsonNode, T> remap) {
-        return CompletableFuture.supplyAsync(() -> {
-            final Request request = httpRequest.build();
+        return execute(body -> remap.apply(objectMapper.readTree(body)), remap);
+    }
 
-            try {
-                final Call call = context.getHttpClient()
-                        .newCall(request);
+    /**
+     * Sends the request and reads the response data from a {@link JsonParser} using the given {@code reader}.
+     * <p>
+     * Unlike {@link #then(Function)}, no intermediate {@link JsonNode} tree is built;
+     * the reader is handed a parser that is positioned at the first token of the response.
+     *
+     * @param reader is the reader to read the received data with.
+     *
+     * @return a future that will complete with the read data.
+     */
+    public CompletableFuture<T> thenRead(ElementReader<T> reader) {
+        return execute(body -> {
+            try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+                parser.nextToken();
+
+                return reader.read(parser);
+            }
+        }, reader);
+    }
 
-                final Response response = call.execute();
-                final ResponseBody body = response.body();
+    /**
+     * Sends the request and streams the elements of the received JSON array through the given {@code reader}.
+     * <p>
+     * Unlike {@link #then(Function)}, the response is never held in memory as a whole;
+     * the body is parsed incrementally and only one element is materialized at a time.
+     * Elements are read in the order they are received.
+     *
+     * @param reader   is the reader to read each received element with.
+     *                 It is handed a parser that is positioned at the start of the element.
+     * @param finisher is the function to create the result from all read elements.
+     * @param <E>      is the type of the read elements.
+     *
+     * @return a future that will complete with the finished result.
+     */
+    public <E> CompletableFuture<T> thenEach(ElementReader<E> reader, Function<List<E>, T> finisher) {
+        return execute(body -> {
+            try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+                if (parser.nextToken() != JsonToken.START_ARRAY)
+                    throw new JsonParseException(parser, "Expected a JSON array");
 
-                if (body == null) return null;
-                final String str = body.string();
-                final JsonNode data = objectMapper.readTree(str);
+                final List<E> yields = new ArrayList<>();
 
-                final int code = response.code();
+                while (parser.nextToken() == JsonToken.START_OBJECT)
+                    yields.add(reader.read(parser));
 
-                if (code == expected) {
-                    if (expected == 204) // 204 always has null response
-                        return null;
+                if (parser.currentToken() != JsonToken.END_ARRAY)
+                    throw new JsonParseException(parser, "Expected a JSON object or the end of the array");
 
-                    return remap.apply(data);
-                } else throw new UnexpectedStatusCodeException(code, data.path("error").asText("No error message received"));
-            } catch (JsonProcessingException e) {
-                throw new AssertionError("Received invalid JSON data", e);
-            } catch (IOException e) {
-                throw new AssertionError("Unexpected IOException occurred", e);
+                return finisher.apply(yields);
             }
+        }, reader, finisher);
+    }
+
+    /**
+     * Returns a publisher that sends the request and emits the elements of the received JSON array as they are parsed.
+     * <p>
+     * The request is sent once a subscriber first signals demand, and every subscriber sends its own request.
+     * Elements are only parsed while the subscriber has outstanding demand, so a slow subscriber slows down
+     * receiving the response instead of buffering it; the whole response is never held in memory.
+     * Elements are parsed and emitted on the {@linkplain CodeBottleAPI#getExecutor() executor} of the API.
+     *
+     * @param reader is the reader to read each received element with.
+     *               It is handed a parser that is positioned at the start of the element.
+     *
+     * @return a publisher of the read elements.
+     */
+    public Publisher<T> thenPublish(ElementReader<T> reader) {
+        return new ElementPublisher<>(context.getExecutor(), () -> open(reader));
+    }
+
+    // the readers are the functions the response is read with; requests are only shared if they read it the same way
+    private CompletableFuture<T> execute(BodyHandler<T> handler, Object... readers) {
+        final CompletableFuture<Object> response;
+
+        if (shared && method == Method.GET && url != null)
+            // identical GET requests that are in flight at the same time share one round trip
+            response = context.getInFlightRequests().join(new SharedKey(method.name() + ' ' + url, readers, revalidate, notModified != null),
+                    () -> send(handler));
+        else response = send(handler);
+
+        return resolve(response);
+    }
+
+    // every caller falls back to the value it has cached itself, which is only looked at once the response arrived
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<T> resolve(CompletableFuture<Object> response) {
+        final @Nullable T cached = notModified;
+        final CompletableFuture<T> result = response.thenApply(value -> {
+            if (value != NOT_MODIFIED)
+                return (T) value;
+
+            context.getEntityMapper().markRevalidated(cached);
+
+            return cached;
+        });
+
+        result.whenComplete((value, throwable) -> {
+            if (result.isCancelled())
+                response.cancel(true);
         });
+
+        return result;
+    }
+
+    private CompletableFuture<Object> send(BodyHandler<T> handler) {
+        final boolean revalidate = this.revalidate && method == Method.GET && url != null;
+        final boolean conditional = revalidate && notModified != null;
+
+        if (conditional)
+            context.getValidatorCache()
+                    .get(url)
+                    .ifPresent(validator -> validator.applyTo(httpRequest));
+
+        final Exchange<Object> exchange = new Exchange<>(httpRequest.build(), response -> handle(response, handler, revalidate, conditional));
+
+        exchange.attempt();
+
+        return exchange.future;
+    }
+
+    private CompletableFuture<ElementStream> open(ElementReader<T> reader) {
+        final Exchange<ElementStream> exchange = new Exchange<>(httpRequest.build(), response -> stream(response, reader));
+
+        exchange.attempt();
+
+        return exchange.future;
+    }
+
+    private static boolean isThrottled(int code) {
+        return code == HTTPCodes.TOO_MANY_REQUESTS || code == HTTPCodes.SERVICE_UNAVAILABLE;
+    }
+
+    /*
+    One request, including all of its attempts.
+    Every attempt first takes a permit from the rate limiter (if any), and idempotent requests are retried
+    with jittered exponential backoff after network failures and throttling responses.
+     */
+    private final class Exchange<R> implements Callback {
+        private final CompletableFuture<R> future = new CompletableFuture<>();
+        private final Request request;
+        private final ResponseHandler<R> handler;
+        private volatile @Nullable Call call = null;
+        private int attempt = 0;
+        private volatile long dispatchedAt;
+
+        private Exchange(Request request, ResponseHandler<R> handler) {
+            this.request = request;
+            this.handler = handler;
+
+            future.whenComplete((result, throwable) -> {
+                final Call call = this.call;
+
+                if (future.isCancelled() && call != null)
+                    call.cancel();
+            });
+        }
+
+        private void attempt() {
+            final long delay = context.getRateLimiter()
+                    .map(RateLimiter::reserve)
+                    .orElse(0L);
+
+            if (delay > 0)
+                schedule(this::dispatch, delay);
+            else dispatch();
+        }
+
+        private void dispatch() {
+            if (future.isDone())
+                return;
+
+            final Call call = context.getHttpClient().newCall(request);
+
+            this.call = call;
+            this.dispatchedAt = System.nanoTime();
+            call.enqueue(this);
+        }
+
+        private void retry(long minimumDelay) {
+            final long delay = Math.max(minimumDelay, Backoff.delay(attempt++));
+
+            schedule(this::attempt, delay);
+        }
+
+        private boolean canRetry() {
+            // only idempotent requests are retried
+            return method == Method.GET && attempt < context.getMaxRetries() && !future.isDone();
+        }
+
+        private void schedule(Runnable task, long delayNanos) {
+            try {
+                context.getScheduler().schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                future.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public void onFailure(@NotNull Call call, @NotNull IOException e) {
+            try {
+                if (endpoint != null)
+                    context.getMetrics().recordFailure(endpoint, System.nanoTime() - dispatchedAt);
+            } finally {
+                if (!call.isCanceled() && canRetry())
+                    retry(0);
+                else future.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public void onResponse(@NotNull Call call, @NotNull Response response) {
+            final int code = response.code();
+            final long latency = System.nanoTime() - dispatchedAt;
+
+            if (isThrottled(code) && code != expected) {
+                final long retryAfter = Backoff.retryAfter(response);
+
+                context.getRateLimiter().ifPresent(limiter -> limiter.onThrottled(retryAfter));
+
+                if (canRetry()) {
+                    response.close();
+
+                    try {
+                        record(code, latency);
+                    } finally {
+                        retry(retryAfter);
+                    }
+                    return;
+                }
+            } else context.getRateLimiter().ifPresent(RateLimiter::onSuccess);
+
+            try {
+                context.getExecutor().execute(() -> {
+                    try {
+                        final R result;
+
+                        // the response is recorded once it was handled and closed, and before the future completes
+                        try {
+                            result = handler.handle(response);
+                        } finally {
+                            record(code, latency);
+                        }
+
+                        // a stream that was opened for a request that was cancelled meanwhile is closed right away
+                        if (!future.complete(result) && result instanceof Closeable)
+                            ((Closeable) result).close();
+                    } catch (Throwable t) {
+                        future.completeExceptionally(t);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                response.close();
+
+                try {
+                    record(code, latency);
+                } finally {
+                    future.completeExceptionally(e);
+                }
+            }
+        }
+
+        private void record(int code, long latencyNanos) {
+            if (endpoint != null)
+                context.getMetrics().recordResponse(endpoint, code, latencyNanos);
+        }
+    }
+
+    private @Nullable Object handle(Response response, BodyHandler<T> handler, boolean revalidate, boolean conditional) {
+        try {
+            final ResponseBody body = response.body();
+
+            if (body == null) return null;
+
+            final int code = response.code();
+
+            if (conditional && code == HTTPCodes.NOT_MODIFIED) {
+                // the cached value is still up to date, so the body is not even looked at
+                return NOT_MODIFIED;
+            }
+
+            if (code == expected) {
+                if (expected == 204) // 204 always has null response
+                    return null;
+
+                // reading the response may evict what it cached again, which invalidates its validator
+                final long stamp = revalidate ? context.getValidatorCache().stamp(url) : 0;
+                final CountingInputStream stream = new CountingInputStream(body.byteStream());
+                final long parseStart = System.nanoTime();
+                final T yield = handler.handle(stream);
+
+                if (endpoint != null)
+                    context.getMetrics().recordParsed(endpoint, stream.count, System.nanoTime() - parseStart);
+
+                if (revalidate)
+                    context.getValidatorCache().store(url, response, stamp);
+
+                return yield;
+            } else throw new UnexpectedStatusCodeException(code, readErrorMessage(body));
+        } catch (JsonProcessingException e) {
+            throw new AssertionError("Received invalid JSON data", e);
+        } catch (IOException e) {
+            throw new AssertionError("Unexpected IOException occurred", e);
+        } finally {
+            response.close();
+        }
+    }
+
+    private ElementStream stream(Response response, ElementReader<T> reader) throws IOException {
+        final ResponseBody body = response.body();
+
+        try {
+            if (body == null || response.code() != expected)
+                throw new UnexpectedStatusCodeException(response.code(), body == null ? "No response body" : readErrorMessage(body));
+
+            final CountingInputStream stream = new CountingInputStream(body.byteStream());
+            // closing the parser closes the stream, and with it the response
+            final JsonParser parser = objectMapper.getFactory().createParser(stream);
+
+            if (parser.nextToken() != JsonToken.START_ARRAY)
+                throw new JsonParseException(parser, "Expected a JSON array");
+
+            return new ElementStream(parser, stream, reader);
+        } catch (Throwable t) {
+            response.close();
+            throw t;
+        }
+    }
+
+    private static String readErrorMessage(ResponseBody body) throws IOException {
+        try {
+            return objectMapper.readTree(body.byteStream())
+                    .path("error")
+                    .asText("No error message received");
+        } catch (JsonProcessingException e) {
+            // error responses are not guaranteed to be JSON
+            return "No error message received";
+        }
+    }
+
+    /**
+     * Reads a value from a {@link JsonParser}.
+     *
+     * @param <T> is the type of the read value.
+     */
+    @FunctionalInterface
+    public interface ElementReader<T> {
+        /**
+         * Reads a value from the given {@code parser}.
+         * The reader must consume exactly the value the parser is positioned at.
+         *
+         * @param parser is the parser to read from.
+         *
+         * @return the read value.
+         *
+         * @throws IOException if the value could not be read.
+         */
+        T read(JsonParser parser) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface BodyHandler<T> {
+        T handle(InputStream body) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface ResponseHandler<R> {
+        R handle(Response response) throws IOException;
+    }
+
+    /*
+    The elements of a JSON array response that is still being received.
+    Elements are only parsed when they are asked for, so a slow reader slows down receiving the response.
+    Not thread-safe; must be read by one thread at a time.
+     */
+    private final class ElementStream implements ElementPublisher.Source<T> {
+        private final JsonParser parser;
+        private final CountingInputStream stream;
+        private final ElementReader<T> reader;
+        private long parseNanos = 0;
+        private boolean closed = false;
+
+        private ElementStream(JsonParser parser, CountingInputStream stream, ElementReader<T> reader) {
+            this.parser = parser;
+            this.stream = stream;
+            this.reader = reader;
+        }
+
+        @Override
+        public @Nullable T next() throws IOException {
+            final long start = System.nanoTime();
+
+            try {
+                final JsonToken token = parser.nextToken();
+
+                if (token == JsonToken.END_ARRAY)
+                    return null;
+                if (token != JsonToken.START_OBJECT)
+                    throw new JsonParseException(parser, "Expected a JSON object or the end of the array");
+
+                return reader.read(parser);
+            } finally {
+                parseNanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed)
+                return;
+
+            closed = true;
+            parser.close();
+
+            if (endpoint != null)
+                context.getMetrics().recordParsed(endpoint, stream.count, parseNanos);
+        }
+    }
+
+    /*
+    Identifies the requests that can share one round trip: they must be sent to the same URL, read the response
+    with the same code, and either all or none of them must have a cached value to fall back to if it was not modified.
+    Which value that is is only resolved per caller once the response arrived.
+    The code is identified by the classes of the readers, so anything a reader captures must be implied by the URL.
+     */
+    private static final class SharedKey {
+        private final String request;
+        private final Class<?>[] readers;
+        private final boolean revalidate;
+        private final boolean conditional;
+
+        private SharedKey(String request, Object[] readers, boolean revalidate, boolean conditional) {
+            this.request = request;
+            this.readers = new Class<?>[readers.length];
+            this.revalidate = revalidate;
+            this.conditional = conditional;
+
+            for (int i = 0; i < readers.length; i++)
+                this.readers[i] = readers[i].getClass();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) return true;
+            if (!(other instanceof SharedKey)) return false;
+
+            final SharedKey key = (SharedKey) other;
+
+            return request.equals(key.request)
+                    && Arrays.equals(readers, key.readers)
+                    && revalidate == key.revalidate
+                    && conditional == key.conditional;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * request.hashCode() + Arrays.hashCode(readers);
+        }
+
+        @Override
+        public String toString() {
+            return request;
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count = 0;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int read = super.read();
+
+            if (read != -1)
+                count++;
+
+            return read;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int read = super.read(b, off, len);
+
+            if (read > 0)
+                count += read;
+
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            final long skipped = super.skip(n);
+
+            count += skipped;
+
+            return skipped;
+        }
     }
 }
@@ -0,0 +1,193 @@
+package io.codebottle.api.rest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.jetbrains.annotations.Nullable;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/*
+A cold publisher of the elements of one response.
+The source is opened once a subscriber first signals demand, and elements are only read from it while demand is
+outstanding. Reading happens on the executor, serialized per subscription, so no thread waits for demand.
+ */
+final class ElementPublisher<E> implements Publisher<E> {
+    private final Executor executor;
+    private final Supplier<CompletableFuture<? extends Source<E>>> opener;
+
+    ElementPublisher(Executor executor, Supplier<CompletableFuture<? extends Source<E>>> opener) {
+        this.executor = executor;
+        this.opener = opener;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super E> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+
+        subscriber.onSubscribe(new Emission(subscriber));
+    }
+
+    static Throwable unwrap(Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+    }
+
+    /*
+    Elements that are read one at a time.
+     */
+    interface Source<E> extends Closeable {
+        // returns null once there are no more elements
+        @Nullable E next() throws IOException;
+    }
+
+    private final class Emission implements Subscription {
+        private final Subscriber<? super E> subscriber;
+        private final AtomicLong requested = new AtomicLong(0);
+        private final AtomicInteger wip = new AtomicInteger(0);
+        private final AtomicBoolean opened = new AtomicBoolean(false);
+        private volatile @Nullable CompletableFuture<? extends Source<E>> opening = null;
+        private volatile @Nullable Source<E> source = null;
+        private volatile @Nullable Throwable failure = null;
+        private volatile boolean cancelled = false;
+        private long emitted = 0; // guarded by 'wip'
+        private boolean done = false; // guarded by 'wip'
+
+        private Emission(Subscriber<? super E> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0)
+                failure = new IllegalArgumentException("Requested a non-positive number of elements: " + n);
+            else requested.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+
+            if (failure == null && !cancelled && opened.compareAndSet(false, true)) {
+                final CompletableFuture<? extends Source<E>> opening = opener.get();
+
+                this.opening = opening;
+                if (cancelled)
+                    opening.cancel(true);
+
+                opening.whenComplete((source, throwable) -> {
+                    if (throwable != null)
+                        failure = unwrap(throwable);
+                    else this.source = source;
+
+                    schedule();
+                });
+                return;
+            }
+
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+
+            final CompletableFuture<? extends Source<E>> opening = this.opening;
+
+            // stops the request if the source is still being opened
+            if (opening != null)
+                opening.cancel(true);
+
+            // the source is closed by the drain loop, so it is never closed while being read
+            schedule();
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() != 0)
+                return;
+
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                failure = e;
+                drain();
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+
+            do {
+                if (!done)
+                    emit();
+                else close(source);
+
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void emit() {
+            final Source<E> source = this.source;
+            final Throwable failure = this.failure;
+
+            if (cancelled) {
+                finish(source);
+                return;
+            }
+
+            if (failure != null) {
+                finish(source);
+                subscriber.onError(failure);
+                return;
+            }
+
+            if (source == null)
+                // still opening
+                return;
+
+            long emitted = this.emitted;
+
+            while (emitted != requested.get() && !cancelled && this.failure == null) {
+                final E element;
+
+                try {
+                    element = source.next();
+                } catch (Throwable t) {
+                    finish(source);
+                    subscriber.onError(t);
+                    return;
+                }
+
+                if (element == null) {
+                    finish(source);
+                    subscriber.onComplete();
+                    return;
+                }
+
+                subscriber.onNext(element);
+                emitted++;
+            }
+
+            // a cancellation or failure that stopped the loop also scheduled another pass
+            this.emitted = emitted;
+        }
+
+        private void finish(@Nullable Source<E> source) {
+            done = true;
+            close(source);
+        }
+
+        // a source that was opened after the emission finished is closed by the next pass; closing it again has no effect
+        private void close(@Nullable Source<E> source) {
+            if (source != null)
+                try {
+                    source.close();
+                } catch (IOException ignored) {
+                }
+        }
+    }
+}
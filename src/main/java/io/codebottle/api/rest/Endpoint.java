@@ -1,8 +1,10 @@
 package io.codebottle.api.rest;
 
-import java.net.MalformedURLException;
 import java.net.URL;
 
+import okhttp3.HttpUrl;
+import org.jetbrains.annotations.Nullable;
+
 import static java.lang.String.format;
 
 public enum Endpoint {
@@ -22,39 +24,87 @@ public enum Endpoint {
     SNIPPET_REVISION_SPECIFIC("snippets/%s/revisions/%s", 2);
 
     public static final String URL_BASE = "https://api.codebottle.io/";
+    /**
+     * The base URL of the public CodeBottle API.
+     */
+    public static final HttpUrl DEFAULT_BASE_URL = Defaults.BASE_URL;
 
-    private final String appendix;
     private final int requiredParameterCount;
+    // the path segments of the appendix; a parameter is substituted for every 'null' segment, in order
+    private final String[] segments;
+    // the complete URL against the default base, if the endpoint has no parameters
+    private final @Nullable HttpUrl defaultUrl;
 
     Endpoint(String appendix) {
-        this.appendix = appendix;
-        this.requiredParameterCount = 0;
+        this(appendix, 0);
     }
 
     Endpoint(String appendix, int requiredParameterCount) {
-        this.appendix = appendix;
         this.requiredParameterCount = requiredParameterCount;
+        this.segments = appendix.split("/");
+
+        for (int i = 0; i < segments.length; i++)
+            if (segments[i].equals("%s"))
+                segments[i] = null;
+
+        this.defaultUrl = requiredParameterCount == 0 ? resolve(Defaults.BASE_URL) : null;
     }
 
+    /**
+     * Returns the URL of this endpoint against the {@linkplain #DEFAULT_BASE_URL default base URL}.
+     *
+     * @param args are the parameters of the endpoint.
+     *
+     * @return the URL.
+     *
+     * @throws IllegalArgumentException if the number of parameters does not match.
+     * @deprecated Use {@link #url(HttpUrl, Object...)}, which honors a configured base URL and does not format or parse the URL.
+     */
+    @Deprecated
     public URL url(Object... args) throws IllegalArgumentException {
+        return url(DEFAULT_BASE_URL, args).url();
+    }
+
+    /**
+     * Returns the URL of this endpoint against the given {@code base} URL.
+     * The parameters are substituted into the precompiled path template as encoded path segments,
+     * so the URL is neither formatted as a string nor parsed again.
+     *
+     * @param base is the base URL, e.g. {@link #DEFAULT_BASE_URL}.
+     * @param args are the parameters of the endpoint.
+     *
+     * @return the URL.
+     *
+     * @throws IllegalArgumentException if the number of parameters does not match.
+     */
+    public HttpUrl url(HttpUrl base, Object... args) throws IllegalArgumentException {
         final int parameterCount = getRequiredParameterCount();
 
         if (args.length != parameterCount)
             throw new IllegalArgumentException(format("Illegal argument count {actual: %d, expected: %d}", args.length, parameterCount));
 
-        Object[] strings = new String[args.length];
+        if (defaultUrl != null && base == Defaults.BASE_URL)
+            return defaultUrl;
 
-        for (int i = 0; i < args.length; i++)
-            strings[i] = String.valueOf(args[i]);
+        return resolve(base, args);
+    }
+
+    private HttpUrl resolve(HttpUrl base, Object... args) {
+        final HttpUrl.Builder builder = base.newBuilder();
+        int parameter = 0;
+
+        for (String segment : segments)
+            builder.addPathSegment(segment != null ? segment : String.valueOf(args[parameter++]));
 
-        try {
-            return new URL(format(URL_BASE + appendix, strings));
-        } catch (MalformedURLException e) {
-            throw new AssertionError("Unexpected MalformedURLException", e);
-        }
+        return builder.build();
     }
 
     public int getRequiredParameterCount() {
         return requiredParameterCount;
     }
+
+    // enum constants are initialized before the static fields of their enum, so they cannot use them
+    private static final class Defaults {
+        private static final HttpUrl BASE_URL = HttpUrl.get(URL_BASE);
+    }
 }
@@ -0,0 +1,173 @@
+package io.codebottle.api.rest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+import org.jetbrains.annotations.Nullable;
+import org.reactivestreams.Publisher;
+
+/**
+ * Runs an asynchronous task for every input with a bounded number of tasks in flight.
+ * <p>
+ * Tasks are composed without blocking any thread: a new task is only started once a running task completes.
+ * If any task or the {@link ProgressListener} fails, no further tasks are started and the resulting future completes exceptionally.
+ *
+ * @param <T> is the type of the inputs.
+ * @param <R> is the result type of the tasks.
+ */
+public final class FanOut<T, R> {
+    private final List<T> inputs;
+    private final Function<T, CompletableFuture<R>> task;
+    private final @Nullable ProgressListener listener;
+    private final AtomicReferenceArray<R> results;
+    private final CompletableFuture<List<R>> future = new CompletableFuture<>();
+    private final AtomicInteger permits;
+    private final AtomicInteger completed = new AtomicInteger(0);
+    private final AtomicInteger wip = new AtomicInteger(0);
+    private int next = 0; // guarded by 'wip'
+
+    private FanOut(List<T> inputs, Function<T, CompletableFuture<R>> task, int maxInFlight, @Nullable ProgressListener listener) {
+        this.inputs = inputs;
+        this.task = task;
+        this.listener = listener;
+        this.results = new AtomicReferenceArray<>(inputs.size());
+        this.permits = new AtomicInteger(maxInFlight);
+    }
+
+    /**
+     * Runs the given {@code task} for every input.
+     *
+     * @param inputs      are the inputs to run the task for.
+     * @param task        starts the task for one input.
+     * @param maxInFlight is the maximum number of tasks running at the same time.
+     * @param listener    is notified whenever a task completed, or {@code null}.
+     * @param <T>         is the type of the inputs.
+     * @param <R>         is the result type of the tasks.
+     *
+     * @return a future that will complete with the results of all tasks, in the order of the inputs.
+     */
+    public static <T, R> CompletableFuture<List<R>> run(
+            Collection<T> inputs,
+            Function<T, CompletableFuture<R>> task,
+            int maxInFlight,
+            @Nullable ProgressListener listener
+    ) {
+        if (maxInFlight < 1)
+            throw new IllegalArgumentException("maxInFlight must be at least 1");
+
+        if (inputs.isEmpty())
+            return CompletableFuture.completedFuture(Collections.emptyList());
+
+        final FanOut<T, R> fanOut = new FanOut<>(new ArrayList<>(inputs), task, maxInFlight, listener);
+
+        fanOut.drain();
+
+        return fanOut.future;
+    }
+
+    /**
+     * Returns a publisher that runs the given {@code task} for every input emitted by the given publisher,
+     * and emits the elements of all task results.
+     * <p>
+     * Inputs are only requested while the demand of the subscriber is not met by results that are already available,
+     * so the subscriber's demand limits how many tasks are started.
+     * Results are emitted in the order the tasks complete. If any task fails, the inputs are cancelled and the
+     * subscriber receives the failure.
+     *
+     * @param inputs      is the publisher of the inputs to run the task for.
+     * @param task        starts the task for one input.
+     * @param maxInFlight is the maximum number of tasks running at the same time.
+     * @param <T>         is the type of the inputs.
+     * @param <R>         is the element type of the task results.
+     *
+     * @return a publisher of the elements of all task results.
+     */
+    public static <T, R> Publisher<R> publish(
+            Publisher<T> inputs,
+            Function<T, CompletableFuture<? extends Collection<R>>> task,
+            int maxInFlight
+    ) {
+        if (maxInFlight < 1)
+            throw new IllegalArgumentException("maxInFlight must be at least 1");
+
+        return new FanOutPublisher<>(inputs, task, maxInFlight);
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0)
+            // another thread is draining, it will pick up the freed permit
+            return;
+
+        do {
+            while (!future.isDone() && next < inputs.size() && permits.get() > 0) {
+                permits.decrementAndGet();
+                launch(next++);
+            }
+        } while (wip.decrementAndGet() != 0);
+    }
+
+    private void launch(int index) {
+        final CompletableFuture<R> running;
+
+        try {
+            running = task.apply(inputs.get(index));
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+            return;
+        }
+
+        running.whenComplete((result, throwable) -> {
+            if (throwable != null) {
+                future.completeExceptionally(throwable);
+                return;
+            }
+
+            results.set(index, result);
+
+            final int done = completed.incrementAndGet();
+
+            if (listener != null)
+                try {
+                    listener.onProgress(done, inputs.size());
+                } catch (Throwable t) {
+                    // the permit of this task is not returned, but no further tasks are started anyway
+                    future.completeExceptionally(t);
+                    return;
+                }
+
+            if (done == inputs.size()) {
+                final List<R> yields = new ArrayList<>(done);
+
+                for (int i = 0; i < done; i++)
+                    yields.add(results.get(i));
+
+                future.complete(Collections.unmodifiableList(yields));
+            } else {
+                permits.incrementAndGet();
+                drain();
+            }
+        });
+    }
+
+    /**
+     * Is notified about the progress of a {@link FanOut}.
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        /**
+         * Called whenever a task completed successfully.
+         * This method may be called concurrently from the threads that complete the tasks.
+         * If it throws, the fan-out fails with the thrown exception.
+         *
+         * @param completed is the number of completed tasks.
+         * @param total     is the total number of tasks.
+         */
+        void onProgress(int completed, int total);
+    }
+}
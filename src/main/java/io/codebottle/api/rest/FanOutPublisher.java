@@ -0,0 +1,193 @@
+package io.codebottle.api.rest;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import org.jetbrains.annotations.Nullable;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/*
+Runs an asynchronous task for every input of an upstream publisher, and emits the results of all tasks.
+Inputs are only requested from upstream while the downstream demand is not met by results that are ready,
+so downstream demand throttles how many tasks are started. Results are emitted in the order the tasks complete.
+ */
+final class FanOutPublisher<T, R> implements Publisher<R> {
+    private final Publisher<T> inputs;
+    private final Function<T, CompletableFuture<? extends Collection<R>>> task;
+    private final int maxInFlight;
+
+    FanOutPublisher(Publisher<T> inputs, Function<T, CompletableFuture<? extends Collection<R>>> task, int maxInFlight) {
+        this.inputs = inputs;
+        this.task = task;
+        this.maxInFlight = maxInFlight;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super R> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+
+        inputs.subscribe(new Emission(subscriber));
+    }
+
+    private final class Emission implements Subscriber<T>, Subscription {
+        private final Subscriber<? super R> subscriber;
+        private final Queue<R> ready = new ConcurrentLinkedQueue<>();
+        private final AtomicLong requested = new AtomicLong(0);
+        private final AtomicInteger wip = new AtomicInteger(0);
+        // inputs that were requested but not received yet, and tasks that are running
+        private final AtomicInteger pending = new AtomicInteger(0);
+        private final AtomicInteger inFlight = new AtomicInteger(0);
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private volatile @Nullable Subscription upstream = null;
+        private volatile boolean upstreamDone = false;
+        private volatile boolean cancelled = false;
+        private long emitted = 0; // guarded by 'wip'
+        private boolean done = false; // guarded by 'wip'
+
+        private Emission(Subscriber<? super R> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            if (upstream != null) {
+                subscription.cancel();
+                return;
+            }
+
+            upstream = subscription;
+            subscriber.onSubscribe(this);
+        }
+
+        @Override
+        public void onNext(T input) {
+            pending.decrementAndGet();
+            inFlight.incrementAndGet();
+
+            CompletableFuture<? extends Collection<R>> running;
+            try {
+                running = task.apply(input);
+            } catch (Throwable t) {
+                running = failed(t);
+            }
+
+            running.whenComplete((results, throwable) -> {
+                if (throwable != null)
+                    failure.compareAndSet(null, ElementPublisher.unwrap(throwable));
+                else for (R result : results)
+                    if (result != null)
+                        ready.add(result);
+
+                inFlight.decrementAndGet();
+                drain();
+            });
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            failure.compareAndSet(null, throwable);
+            upstreamDone = true;
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            upstreamDone = true;
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0)
+                failure.compareAndSet(null, new IllegalArgumentException("Requested a non-positive number of elements: " + n));
+            else requested.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0)
+                return;
+
+            int missed = 1;
+
+            do {
+                if (!done)
+                    emit();
+
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void emit() {
+            final Subscription upstream = this.upstream;
+            final Throwable failure = this.failure.get();
+
+            if (cancelled || failure != null) {
+                done = true;
+                ready.clear();
+                if (!upstreamDone && upstream != null)
+                    upstream.cancel();
+                if (failure != null && !cancelled)
+                    subscriber.onError(failure);
+                return;
+            }
+
+            final long requested = this.requested.get();
+            long emitted = this.emitted;
+
+            while (emitted != requested) {
+                final R result = ready.poll();
+
+                if (result == null)
+                    break;
+
+                subscriber.onNext(result);
+                emitted++;
+            }
+
+            this.emitted = emitted;
+
+            if (upstreamDone && inFlight.get() == 0 && ready.isEmpty()) {
+                done = true;
+                subscriber.onComplete();
+                return;
+            }
+
+            if (upstreamDone || emitted == requested || !ready.isEmpty() || upstream == null)
+                return;
+
+            // at most one new task per element of unmet demand, and never more than 'maxInFlight' at once
+            final long unmet = Math.min(requested - emitted, maxInFlight);
+            final int wanted = (int) unmet - inFlight.get() - pending.get();
+
+            if (wanted > 0) {
+                pending.addAndGet(wanted);
+                upstream.request(wanted);
+            }
+        }
+
+        private CompletableFuture<? extends Collection<R>> failed(Throwable throwable) {
+            final CompletableFuture<Collection<R>> future = new CompletableFuture<>();
+
+            future.completeExceptionally(throwable);
+
+            return future;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package io.codebottle.api.rest;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical requests that are in flight at the same time, so that concurrent callers share one round trip.
+ * <p>
+ * Every caller receives its own future. Cancelling it only cancels the shared request once all callers have cancelled.
+ */
+public final class InFlightRequests {
+    private final Map<Object, Shared<?>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Joins the request in flight for the given {@code key}, or starts a new one using the given {@code request} supplier.
+     *
+     * @param key     identifies the request by everything that determines its result, e.g. its method, URL and how the response is read.
+     *                Keys are compared using {@link Object#equals(Object)}.
+     * @param request starts the request if none is in flight.
+     * @param <T>     is the result type of the request. All requests with equal keys must have the same result type.
+     *
+     * @return a future that will complete with the result of the shared request.
+     */
+    public <T> CompletableFuture<T> join(Object key, Supplier<CompletableFuture<T>> request) {
+        while (true) {
+            final Shared<T> created = new Shared<>(key);
+            @SuppressWarnings("unchecked")
+            final Shared<T> existing = (Shared<T>) inFlight.putIfAbsent(key, created);
+
+            if (existing == null) {
+                // this caller is responsible for starting the request
+                final CompletableFuture<T> caller = created.newCaller();
+
+                created.start(request);
+
+                return caller;
+            }
+
+            final CompletableFuture<T> caller = existing.newCaller();
+
+            if (caller != null)
+                return caller;
+
+            // the existing request was cancelled meanwhile
+            inFlight.remove(key, existing);
+        }
+    }
+
+    /**
+     * Returns the number of distinct requests currently in flight.
+     *
+     * @return the number of requests in flight.
+     */
+    public int size() {
+        return inFlight.size();
+    }
+
+    private final class Shared<T> {
+        private final Object key;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private volatile CompletableFuture<T> source;
+        private int callers = 0;
+        private boolean cancelled = false;
+
+        private Shared(Object key) {
+            this.key = key;
+        }
+
+        private void start(Supplier<CompletableFuture<T>> request) {
+            final CompletableFuture<T> source;
+
+            try {
+                source = request.get();
+            } catch (Throwable t) {
+                inFlight.remove(key, this);
+                result.completeExceptionally(t);
+                return;
+            }
+
+            this.source = source;
+            source.whenComplete((value, throwable) -> {
+                // callers arriving from now on must start a new request
+                inFlight.remove(key, this);
+
+                if (throwable != null)
+                    result.completeExceptionally(throwable);
+                else result.complete(value);
+            });
+
+            synchronized (this) {
+                if (cancelled)
+                    source.cancel(true);
+            }
+        }
+
+        private synchronized CompletableFuture<T> newCaller() {
+            if (cancelled)
+                return null;
+
+            callers++;
+
+            final CompletableFuture<T> caller = new CompletableFuture<>();
+
+            result.whenComplete((value, throwable) -> {
+                if (throwable != null)
+                    caller.completeExceptionally(throwable);
+                else caller.complete(value);
+            });
+            caller.whenComplete((value, throwable) -> {
+                if (caller.isCancelled())
+                    release();
+            });
+
+            return caller;
+        }
+
+        private void release() {
+            synchronized (this) {
+                if (--callers > 0 || result.isDone())
+                    return;
+
+                cancelled = true;
+            }
+
+            inFlight.remove(key, this);
+
+            final CompletableFuture<T> source = this.source;
+
+            if (source != null)
+                source.cancel(true);
+            result.cancel(true);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package io.codebottle.api.rest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket that adapts its rate to the server's throttling responses.
+ * <p>
+ * Every request reserves a permit before it is dispatched, and is delayed until that permit becomes available.
+ * When the server answers with {@link HTTPCodes#TOO_MANY_REQUESTS} or {@link HTTPCodes#SERVICE_UNAVAILABLE},
+ * the rate is halved and no permits are handed out until the requested {@code Retry-After} delay passed.
+ * Every successful response raises the rate again by a small step, up to the configured maximum.
+ */
+public final class RateLimiter {
+    private static final double MIN_RATE_FRACTION = 1 / 64d;
+    private static final double INCREASE_FRACTION = 1 / 32d;
+
+    private final double maxRate;
+    private final double minRate;
+    private final double burst;
+
+    private double rate;
+    private double tokens;
+    private long lastRefill;
+    private long pausedUntil;
+
+    /**
+     * Creates a rate limiter.
+     *
+     * @param permitsPerSecond is the maximum number of requests per second.
+     * @param burst            is the maximum number of requests that may be dispatched at once after an idle period.
+     */
+    public RateLimiter(double permitsPerSecond, int burst) {
+        if (!(permitsPerSecond > 0))
+            throw new IllegalArgumentException("permitsPerSecond must be positive");
+        if (burst < 1)
+            throw new IllegalArgumentException("burst must be at least 1");
+
+        this.maxRate = permitsPerSecond;
+        this.minRate = permitsPerSecond * MIN_RATE_FRACTION;
+        this.burst = burst;
+        this.rate = permitsPerSecond;
+        this.tokens = burst;
+        this.lastRefill = System.nanoTime();
+        this.pausedUntil = lastRefill;
+    }
+
+    /**
+     * Reserves a permit.
+     *
+     * @return the time in nanoseconds the caller has to wait before using the permit.
+     */
+    public synchronized long reserve() {
+        final long now = System.nanoTime();
+
+        refill(now);
+        tokens -= 1;
+
+        final long tokenDelay = tokens >= 0 ? 0 : (long) (-tokens / rate * TimeUnit.SECONDS.toNanos(1));
+
+        return Math.max(tokenDelay, remaining(pausedUntil, now));
+    }
+
+    /**
+     * Reports a throttling response, which lowers the rate and pauses the limiter.
+     *
+     * @param retryAfterNanos is the delay the server requested, or {@code 0}.
+     */
+    public synchronized void onThrottled(long retryAfterNanos) {
+        final long now = System.nanoTime();
+
+        refill(now);
+        rate = Math.max(minRate, rate / 2);
+        tokens = Math.min(tokens, 0);
+        final long until = now + retryAfterNanos;
+
+        // the backoff saturates at Long.MAX_VALUE, which must pause forever instead of wrapping into the past
+        pausedUntil = Math.max(pausedUntil, until < now ? Long.MAX_VALUE : until);
+    }
+
+    private static long remaining(long until, long now) {
+        final long remaining = until - now;
+
+        // a saturated pause stays out of reach even where the difference overflows
+        return remaining < 0 && until > now ? Long.MAX_VALUE : remaining;
+    }
+
+    /**
+     * Reports a response that was not throttled, which raises the rate up to the maximum.
+     */
+    public synchronized void onSuccess() {
+        rate = Math.min(maxRate, rate + maxRate * INCREASE_FRACTION);
+    }
+
+    /**
+     * Returns the current rate.
+     *
+     * @return the current number of permits per second.
+     */
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    private void refill(long now) {
+        final long elapsed = now - Math.max(lastRefill, Math.min(now, pausedUntil));
+
+        if (elapsed > 0)
+            tokens = Math.min(burst, tokens + elapsed * rate / TimeUnit.SECONDS.toNanos(1));
+
+        lastRefill = now;
+    }
+}
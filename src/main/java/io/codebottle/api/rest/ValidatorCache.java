@@ -0,0 +1,119 @@
+package io.codebottle.api.rest;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import okhttp3.Request;
+import okhttp3.Response;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Stores the cache validators ({@code ETag} and {@code Last-Modified}) of the last successful response per request URL,
+ * so that following requests to the same {@link Endpoint} with the same arguments can be sent conditionally.
+ */
+public final class ValidatorCache {
+    private final Map<String, Validator> validators = new ConcurrentHashMap<>();
+    // how often each URL was invalidated, so that responses that were read across an invalidation are not stored
+    private final Map<String, Long> invalidations = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the validator stored for the given {@code url} if present.
+     *
+     * @param url is the request URL.
+     *
+     * @return the stored validator.
+     */
+    public Optional<Validator> get(String url) {
+        return Optional.ofNullable(validators.get(url));
+    }
+
+    /**
+     * Stores the validators of the given {@code response}, or removes the stored validator if the response has none.
+     *
+     * @param url      is the request URL.
+     * @param response is the successful response.
+     */
+    public void store(String url, Response response) {
+        store(url, response, stamp(url));
+    }
+
+    /**
+     * Stores the validators of the given {@code response} like {@link #store(String, Response)},
+     * unless the {@code url} was {@linkplain #invalidate(String) invalidated} since the given {@code stamp} was taken.
+     * Responses take a stamp before they are applied to the cache, so that a response whose application
+     * was undone in the meantime is not revalidated as if it were still cached.
+     *
+     * @param url      is the request URL.
+     * @param response is the successful response.
+     * @param stamp    is the {@linkplain #stamp(String) stamp} taken before the response was applied.
+     */
+    public void store(String url, Response response, long stamp) {
+        final String etag = response.header("ETag");
+        final String lastModified = response.header("Last-Modified");
+
+        validators.compute(url, (key, current) -> {
+            if (stamp(url) != stamp)
+                return current;
+
+            return etag == null && lastModified == null ? null : new Validator(etag, lastModified);
+        });
+    }
+
+    /**
+     * Returns a stamp that changes whenever the given {@code url} is {@linkplain #invalidate(String) invalidated}.
+     *
+     * @param url is the request URL.
+     *
+     * @return the current stamp.
+     */
+    public long stamp(String url) {
+        return invalidations.getOrDefault(url, 0L);
+    }
+
+    /**
+     * Removes the validator stored for the given {@code url}, forcing the next request to it to be unconditional.
+     * Responses to the URL that are still being applied do not store their validators.
+     *
+     * @param url is the request URL.
+     */
+    public void invalidate(String url) {
+        validators.compute(url, (key, current) -> {
+            invalidations.merge(url, 1L, Long::sum);
+
+            return null;
+        });
+    }
+
+    /**
+     * Removes all stored validators.
+     */
+    public void clear() {
+        validators.clear();
+    }
+
+    public static final class Validator {
+        private final @Nullable String etag;
+        private final @Nullable String lastModified;
+
+        private Validator(@Nullable String etag, @Nullable String lastModified) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        public Optional<String> getETag() {
+            return Optional.ofNullable(etag);
+        }
+
+        public Optional<String> getLastModified() {
+            return Optional.ofNullable(lastModified);
+        }
+
+        void applyTo(Request.Builder request) {
+            if (etag != null)
+                request.header("If-None-Match", etag);
+            if (lastModified != null)
+                request.header("If-Modified-Since", lastModified);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package io.codebottle.api.test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.codebottle.api.CachePolicy;
+import io.codebottle.api.CodeBottleAPI;
+import io.codebottle.api.SnippetBatch;
+import io.codebottle.api.rest.Endpoint;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BatchLookupTest {
+    private static final int SNIPPET_COUNT = 500;
+
+    @Test
+    public void testFreshSnippetsAreNotRequested() {
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(TestData.offlineClient(SNIPPET_COUNT));
+        builder.setSnippetFreshness(Duration.ofMinutes(5));
+
+        final CodeBottleAPI api = builder.build().waitForLazyLoading();
+
+        final List<String> ids = new ArrayList<>();
+        for (int i = 0; i < SNIPPET_COUNT; i += 2)
+            ids.add(TestData.snippetID(i));
+        ids.add("unknown");
+
+        final SnippetBatch first = api.requestSnippetsByIDs(ids).join();
+
+        assertEquals(SNIPPET_COUNT / 2, first.getSnippets().size());
+        assertEquals(ids.subList(0, SNIPPET_COUNT / 2), new ArrayList<>(first.getSnippets().keySet()));
+        assertEquals(1, first.getFailures().size());
+        assertTrue(first.getFailures().containsKey("unknown"));
+        assertEquals(SNIPPET_COUNT / 2 + 1, requests(api));
+
+        // only the snippets that were not looked up before are requested
+        final List<String> all = new ArrayList<>();
+        for (int i = 0; i < SNIPPET_COUNT; i++)
+            all.add(TestData.snippetID(i));
+
+        final SnippetBatch second = api.requestSnippetsByIDs(all).join();
+
+        assertTrue(second.isComplete());
+        assertEquals(SNIPPET_COUNT, second.getSnippets().size());
+        assertEquals(SNIPPET_COUNT + 1, requests(api));
+    }
+
+    @Test
+    public void testFreshSnippetsSurviveEviction() {
+        final CachePolicy policy = CachePolicy.unbounded();
+        policy.setMaximumSize(10);
+
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(TestData.offlineClient(SNIPPET_COUNT));
+        builder.setSnippetFreshness(Duration.ofMinutes(5));
+        builder.setSnippetCachePolicy(policy);
+        // evictions are processed right away
+        builder.setExecutor(Runnable::run);
+
+        final CodeBottleAPI api = builder.build().waitForLazyLoading();
+
+        final List<String> cached = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            cached.add(TestData.snippetID(i));
+        api.requestSnippetsByIDs(cached).join();
+
+        // requesting the other snippets evicts the fresh ones before the batch is completed
+        final List<String> all = new ArrayList<>(cached);
+        for (int i = 10; i < 100; i++)
+            all.add(TestData.snippetID(i));
+
+        final SnippetBatch batch = api.requestSnippetsByIDs(all).join();
+
+        assertTrue(batch.isComplete());
+        assertEquals(all, new ArrayList<>(batch.getSnippets().keySet()));
+        assertEquals(100, requests(api));
+    }
+
+    private static long requests(CodeBottleAPI api) {
+        return api.getMetrics().snapshot().getEndpoint(Endpoint.SNIPPET_SPECIFIC).getRequests();
+    }
+}
@@ -0,0 +1,80 @@
+package io.codebottle.api.test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import io.codebottle.api.CachePolicy;
+import io.codebottle.api.CodeBottleAPI;
+import io.codebottle.api.model.CodeArena;
+import io.codebottle.api.model.Snippet;
+import io.codebottle.api.model.SnippetSearchIndex;
+import io.codebottle.api.rest.Endpoint;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CachePolicyTest {
+    private static final int SNIPPET_COUNT = 200;
+    private static final int RETAINED_COUNT = 20;
+
+    @Test
+    public void testOverfilledCacheIsCleanedUp() {
+        final CodeBottleAPI api = newApi(CachePolicy.unbounded());
+        final Snippet first = api.requestSnippetByID(TestData.snippetID(0)).join();
+
+        // room for about as many snippets as retained, while the whole list is fetched
+        final CachePolicy policy = CachePolicy.unbounded();
+        policy.setMaximumWeight((long) first.estimateSize() * RETAINED_COUNT);
+
+        final CodeBottleAPI bounded = newApi(policy);
+        final CodeArena arena = bounded.getCodeArena().orElseThrow(AssertionError::new);
+
+        bounded.requestSnippets().join();
+
+        final Collection<Snippet> cached = bounded.getSnippets();
+
+        assertTrue(cached.size() < SNIPPET_COUNT);
+        assertFalse(cached.isEmpty());
+
+        // the indexes only know the snippets that are still cached
+        assertEquals(cached.size(), IntStream.range(0, TestData.LANGUAGE_COUNT)
+                .mapToObj(language -> bounded.getSnippetsByLanguage(String.valueOf(language)))
+                .mapToInt(Collection::size)
+                .sum());
+
+        final List<SnippetSearchIndex.Hit> hits = bounded.searchSnippets("Snippet", SNIPPET_COUNT);
+
+        assertEquals(cached.size(), hits.size());
+        for (SnippetSearchIndex.Hit hit : hits)
+            assertSame(hit.getSnippet(), bounded.getSnippetByID(hit.getSnippet().getID()).orElse(null));
+
+        // the code of evicted snippets is released from the arena
+        final CodeArena expected = new CodeArena(1 << 20);
+        for (Snippet snippet : cached)
+            expected.store(snippet.getCode());
+
+        assertEquals(expected.getLiveBytes(), arena.getLiveBytes());
+
+        // the list no longer matches the cache, so it must not be revalidated
+        assertFalse(bounded.getValidatorCache()
+                .get(Endpoint.SNIPPETS.url(bounded.getBaseUrl()).toString())
+                .isPresent());
+    }
+
+    private static CodeBottleAPI newApi(CachePolicy policy) {
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(TestData.withValidators(TestData.offlineClient(SNIPPET_COUNT), TestData.Validator.ETAG, new ArrayList<>()));
+        builder.setSnippetCachePolicy(policy);
+        builder.setOffHeapCode(true);
+        builder.setSearchScope(SnippetSearchIndex.Scope.SNIPPETS);
+        // evicted snippets are cleaned up right away
+        builder.setExecutor(Runnable::run);
+
+        return builder.build().waitForLazyLoading();
+    }
+}
@@ -0,0 +1,210 @@
+package io.codebottle.api.test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.codebottle.api.CodeBottleAPI;
+import io.codebottle.api.model.Snippet;
+import io.codebottle.api.rest.CodeBottleRequest;
+import io.codebottle.api.rest.Endpoint;
+import io.codebottle.api.rest.InFlightRequests;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CoalescingTest {
+    private static final int CALLER_COUNT = 10;
+    private static final int SNIPPET_COUNT = 20;
+
+    private final Collection<Request> received = new ConcurrentLinkedQueue<>();
+    // responses wait until the gate is opened
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+
+    @Test
+    public void testConcurrentCallersShareOneRequest() {
+        final InFlightRequests inFlight = new InFlightRequests();
+        final AtomicInteger started = new AtomicInteger();
+        final CompletableFuture<String> source = new CompletableFuture<>();
+
+        final CompletableFuture<String> first = inFlight.join("key", () -> {
+            started.incrementAndGet();
+            return source;
+        });
+        final CompletableFuture<String> second = inFlight.join("key", () -> {
+            started.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+
+        assertEquals(1, started.get());
+        assertEquals(1, inFlight.size());
+
+        source.complete("value");
+
+        assertEquals("value", first.join());
+        assertEquals("value", second.join());
+        assertEquals(0, inFlight.size());
+
+        // a request that completed is not joined anymore
+        inFlight.join("key", () -> {
+            started.incrementAndGet();
+            return CompletableFuture.completedFuture("next");
+        });
+
+        assertEquals(2, started.get());
+    }
+
+    @Test
+    public void testCancellingOneCallerKeepsTheRequest() {
+        final InFlightRequests inFlight = new InFlightRequests();
+        final CompletableFuture<String> source = new CompletableFuture<>();
+
+        final CompletableFuture<String> first = inFlight.join("key", () -> source);
+        final CompletableFuture<String> second = inFlight.join("key", () -> source);
+
+        first.cancel(true);
+
+        assertFalse(source.isCancelled());
+
+        source.complete("value");
+
+        assertTrue(first.isCancelled());
+        assertEquals("value", second.join());
+    }
+
+    @Test
+    public void testCancellingAllCallersCancelsTheRequest() {
+        final InFlightRequests inFlight = new InFlightRequests();
+        final CompletableFuture<String> source = new CompletableFuture<>();
+
+        final CompletableFuture<String> first = inFlight.join("key", () -> source);
+        final CompletableFuture<String> second = inFlight.join("key", () -> source);
+
+        first.cancel(true);
+        second.cancel(true);
+
+        assertTrue(source.isCancelled());
+        assertEquals(0, inFlight.size());
+
+        // callers arriving afterwards start a new request
+        final CompletableFuture<String> next = new CompletableFuture<>();
+        final CompletableFuture<String> third = inFlight.join("key", () -> next);
+
+        next.complete("next");
+
+        assertEquals("next", third.join());
+    }
+
+    @Test
+    public void testIdenticalRequestsAreCoalesced() {
+        final CodeBottleAPI api = newApi();
+        final List<CompletableFuture<Snippet>> requests = new ArrayList<>();
+
+        gate = new CountDownLatch(1);
+        for (int i = 0; i < CALLER_COUNT; i++)
+            requests.add(api.requestSnippetByID(TestData.snippetID(1)));
+        gate.countDown();
+
+        final Snippet snippet = requests.get(0).join();
+
+        for (CompletableFuture<Snippet> request : requests)
+            assertSame(snippet, request.join());
+        assertEquals(1, requests("/snippets/" + TestData.snippetID(1)));
+    }
+
+    @Test
+    public void testRequestsWithACachedFallbackAreCoalesced() {
+        final CodeBottleAPI api = newApi();
+        final List<CompletableFuture<Collection<Snippet>>> requests = new ArrayList<>();
+
+        // every caller passes its own view of the warm cache as the fallback
+        api.requestSnippets().join();
+        received.clear();
+
+        gate = new CountDownLatch(1);
+        for (int i = 0; i < CALLER_COUNT; i++)
+            requests.add(api.requestSnippets());
+        gate.countDown();
+
+        for (CompletableFuture<Collection<Snippet>> request : requests)
+            assertEquals(SNIPPET_COUNT, request.join().size());
+        assertEquals(1, requests("/snippets"));
+    }
+
+    @Test
+    public void testRequestsThatReadDifferentlyAreNotCoalesced() {
+        final CodeBottleAPI api = newApi();
+
+        gate = new CountDownLatch(1);
+        final CompletableFuture<Collection<Snippet>> snippets = api.requestSnippets();
+        final CompletableFuture<Integer> count = new CodeBottleRequest<Integer>(api)
+                .to(Endpoint.SNIPPETS)
+                .makeGET()
+                .thenEach(parser -> parser.skipChildren(), List::size);
+        gate.countDown();
+
+        assertEquals(SNIPPET_COUNT, snippets.join().size());
+        assertEquals(Integer.valueOf(SNIPPET_COUNT), count.join());
+        assertEquals(2, requests("/snippets"));
+    }
+
+    @Test
+    public void testUnsharedRequestsAreSentOnTheirOwn() {
+        final CodeBottleAPI api = newApi();
+        final List<CompletableFuture<Integer>> counts = new ArrayList<>();
+
+        gate = new CountDownLatch(1);
+        for (int i = 0; i < CALLER_COUNT; i++) {
+            final CodeBottleRequest<Integer> request = new CodeBottleRequest<Integer>(api)
+                    .to(Endpoint.SNIPPETS)
+                    .makeGET();
+
+            // every other request would share the round trip of the first one
+            if (i % 2 == 1)
+                request.unshared();
+
+            counts.add(request.thenEach(parser -> parser.skipChildren(), List::size));
+        }
+        gate.countDown();
+
+        for (CompletableFuture<Integer> count : counts)
+            assertEquals(Integer.valueOf(SNIPPET_COUNT), count.join());
+        assertEquals(1 + CALLER_COUNT / 2, requests("/snippets"));
+    }
+
+    private CodeBottleAPI newApi() {
+        final OkHttpClient.Builder client = TestData.withValidators(TestData.offlineClient(SNIPPET_COUNT), TestData.Validator.ETAG, new ConcurrentLinkedQueue<>())
+                .newBuilder();
+        client.interceptors().add(0, chain -> {
+            received.add(chain.request());
+
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return chain.proceed(chain.request());
+        });
+
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(client.build());
+
+        return builder.build().waitForLazyLoading();
+    }
+
+    private long requests(String path) {
+        return received.stream()
+                .filter(request -> request.url().encodedPath().equals(path))
+                .count();
+    }
+}
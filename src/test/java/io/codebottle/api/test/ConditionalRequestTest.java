@@ -0,0 +1,133 @@
+package io.codebottle.api.test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import io.codebottle.api.CachePolicy;
+import io.codebottle.api.CodeBottleAPI;
+import io.codebottle.api.metrics.MetricsSnapshot;
+import io.codebottle.api.model.Language;
+import io.codebottle.api.model.Snippet;
+import io.codebottle.api.rest.Endpoint;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ConditionalRequestTest {
+    private static final int SNIPPET_COUNT = 10;
+
+    private final Collection<Request> received = new ConcurrentLinkedQueue<>();
+
+    @Test
+    public void testETagIsRevalidated() {
+        final CodeBottleAPI api = newApi(TestData.offlineClient(SNIPPET_COUNT), TestData.Validator.ETAG);
+        final List<Language> cached = new ArrayList<>(api.getLanguages());
+
+        // the languages were requested unconditionally while lazy loading
+        assertNull(lastRequest("/languages").header("If-None-Match"));
+
+        final Collection<Language> revalidated = api.requestLanguages().join();
+
+        assertNotNull(lastRequest("/languages").header("If-None-Match"));
+        assertEquals(cached.size(), revalidated.size());
+        for (Language language : revalidated)
+            assertTrue(cached.stream().anyMatch(known -> known == language));
+
+        final MetricsSnapshot.EndpointSnapshot languages = api.getMetrics().snapshot().getEndpoint(Endpoint.LANGUAGES);
+
+        assertEquals(Long.valueOf(1), languages.getStatusCodes().get(304));
+        // the body of a 304 response is not parsed
+        assertEquals(1, languages.getParseTime().getCount());
+    }
+
+    @Test
+    public void testLastModifiedIsRevalidated() {
+        final CodeBottleAPI api = newApi(TestData.offlineClient(SNIPPET_COUNT), TestData.Validator.LAST_MODIFIED);
+        final Snippet snippet = api.requestSnippetByID(TestData.snippetID(1)).join();
+
+        assertNull(lastRequest("/snippets/" + TestData.snippetID(1)).header("If-Modified-Since"));
+        assertSame(snippet, api.requestSnippetByID(TestData.snippetID(1)).join());
+
+        final Request conditional = lastRequest("/snippets/" + TestData.snippetID(1));
+
+        assertNotNull(conditional.header("If-Modified-Since"));
+        assertNull(conditional.header("If-None-Match"));
+        assertEquals(Long.valueOf(1), api.getMetrics().snapshot().getEndpoint(Endpoint.SNIPPET_SPECIFIC).getStatusCodes().get(304));
+    }
+
+    @Test
+    public void testModifiedResponseIsRead() {
+        final AtomicInteger version = new AtomicInteger(0);
+        final OkHttpClient client = TestData.offlineClient(
+                () -> TestData.snippets(IntStream.range(0, SNIPPET_COUNT), index -> "2019-08-0" + (2 + version.get()) + "T12:00:00.000Z"),
+                TestData.REVISION_COUNT);
+        final CodeBottleAPI api = newApi(client, TestData.Validator.ETAG);
+
+        api.requestSnippets().join();
+        version.set(1);
+
+        final Collection<Snippet> modified = api.requestSnippets().join();
+
+        assertEquals(SNIPPET_COUNT, modified.size());
+        for (Snippet snippet : modified)
+            assertEquals("2019-08-03T12:00:00Z", snippet.getUpdatedAt().toString());
+
+        // the validator of the modified response is sent with the next request
+        final Collection<Snippet> unmodified = api.requestSnippets().join();
+
+        assertEquals(SNIPPET_COUNT, unmodified.size());
+
+        final MetricsSnapshot.EndpointSnapshot snippets = api.getMetrics().snapshot().getEndpoint(Endpoint.SNIPPETS);
+
+        assertEquals(Long.valueOf(2), snippets.getStatusCodes().get(200));
+        assertEquals(Long.valueOf(1), snippets.getStatusCodes().get(304));
+    }
+
+    @Test
+    public void testEvictedListIsNotRevalidated() {
+        final CachePolicy policy = CachePolicy.unbounded();
+        policy.setMaximumSize(SNIPPET_COUNT / 2);
+
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(TestData.withValidators(TestData.offlineClient(SNIPPET_COUNT), TestData.Validator.ETAG, received));
+        builder.setSnippetCachePolicy(policy);
+        // evictions are processed right away
+        builder.setExecutor(Runnable::run);
+
+        final CodeBottleAPI api = builder.build().waitForLazyLoading();
+
+        // reading the list evicts half of it, so the cached list must not be served for a 304
+        assertEquals(SNIPPET_COUNT, api.requestSnippets().join().size());
+        assertEquals(SNIPPET_COUNT, api.requestSnippets().join().size());
+        assertNull(lastRequest("/snippets").header("If-None-Match"));
+    }
+
+    private CodeBottleAPI newApi(OkHttpClient client, TestData.Validator validator) {
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(TestData.withValidators(client, validator, received));
+
+        return builder.build().waitForLazyLoading();
+    }
+
+    private Request lastRequest(String path) {
+        Request last = null;
+
+        for (Request request : received)
+            if (request.url().encodedPath().equals(path))
+                last = request;
+
+        assertNotNull(last);
+
+        return last;
+    }
+}
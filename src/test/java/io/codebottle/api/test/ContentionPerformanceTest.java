@@ -0,0 +1,90 @@
+package io.codebottle.api.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.codebottle.api.CodeBottleAPI;
+import io.codebottle.api.model.Snippet;
+import io.codebottle.api.rest.Endpoint;
+import org.junit.Test;
+
+import static java.lang.System.nanoTime;
+import static java.lang.System.out;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ContentionPerformanceTest {
+    private static final int SNIPPET_COUNT = 2_000;
+    private static final int REFRESHERS = 8;
+    private static final int READERS = 2;
+    private static final int ROUNDS = 25;
+
+    @Test
+    public void concurrentRefreshes() throws InterruptedException {
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(TestData.offlineClient(SNIPPET_COUNT));
+
+        final CodeBottleAPI codeBottleAPI = builder.build().waitForLazyLoading();
+        codeBottleAPI.requestSnippets().join();
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicLong maxReadNanos = new AtomicLong();
+        final AtomicLong reads = new AtomicLong();
+        final CountDownLatch refreshed = new CountDownLatch(REFRESHERS);
+        final List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < READERS; i++)
+            threads.add(new Thread(() -> {
+                while (running.get()) {
+                    final long start = nanoTime();
+                    int views = 0;
+
+                    for (Snippet snippet : codeBottleAPI.getSnippets())
+                        views += snippet.getViews();
+
+                    maxReadNanos.accumulateAndGet(nanoTime() - start, Math::max);
+                    reads.incrementAndGet();
+
+                    if (views < 0) throw new AssertionError();
+                }
+            }, "reader-" + i));
+
+        // refreshes that overlap share one response, so every round merges at least once
+        for (int i = 0; i < REFRESHERS; i++)
+            threads.add(new Thread(() -> {
+                for (int round = 0; round < ROUNDS; round++)
+                    codeBottleAPI.requestSnippets().join();
+
+                refreshed.countDown();
+            }, "refresher-" + i));
+
+        final long start = nanoTime();
+
+        threads.forEach(Thread::start);
+        refreshed.await();
+
+        final long took = nanoTime() - start;
+
+        running.set(false);
+        for (Thread thread : threads)
+            thread.join();
+
+        // the initial request is not part of the measurement
+        final long responses = codeBottleAPI.getMetrics().snapshot().getEndpoint(Endpoint.SNIPPETS).getParseTime().getCount() - 1;
+        final long merges = responses * SNIPPET_COUNT;
+
+        assertEquals(SNIPPET_COUNT, codeBottleAPI.getSnippets().size());
+        assertTrue(responses >= ROUNDS && responses <= (long) REFRESHERS * ROUNDS);
+
+        out.printf("%d refreshers merging %d snippets %d times each, with %d concurrent readers:\n",
+                REFRESHERS, SNIPPET_COUNT, ROUNDS, READERS);
+        out.printf("\tTotal:\t\t\t%d ms\n", took / 1_000_000);
+        out.printf("\tMerged snippets:\t%d\n", merges);
+        out.printf("\tMerged snippets/s:\t%d\n", merges * 1_000_000_000L / took);
+        out.printf("\tFull reads:\t\t%d\n", reads.get());
+        out.printf("\tSlowest full read:\t%d us\n", maxReadNanos.get() / 1000);
+    }
+}
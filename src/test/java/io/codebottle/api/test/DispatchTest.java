@@ -0,0 +1,166 @@
+package io.codebottle.api.test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.codebottle.api.CodeBottleAPI;
+import io.codebottle.api.model.Snippet;
+import io.codebottle.api.rest.CodeBottleRequest;
+import io.codebottle.api.rest.Endpoint;
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DispatchTest {
+    private final AtomicReference<Call> dispatched = new AtomicReference<>();
+    // the interceptor waits for a call to arrive, and responses wait until the gate is opened
+    private volatile CountDownLatch arrived = new CountDownLatch(1);
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+
+    @Test
+    public void testRequestsDoNotBlockTheCaller() {
+        final CodeBottleAPI api = newApi(TestData.offlineClient(4));
+
+        gate = new CountDownLatch(1);
+        final CompletableFuture<String> thread = new CodeBottleRequest<String>(api)
+                .to(Endpoint.SNIPPETS)
+                .makeGET()
+                .then(data -> Thread.currentThread().getName());
+
+        assertFalse(thread.isDone());
+        gate.countDown();
+
+        // without an executor, responses are handled on the threads of the dispatcher
+        assertNotEquals(Thread.currentThread().getName(), thread.join());
+        assertTrue(thread.join().startsWith("OkHttp"));
+    }
+
+    @Test
+    public void testCancellingCancelsTheCall() throws InterruptedException {
+        final CodeBottleAPI api = newApi(TestData.offlineClient(4));
+
+        gate = new CountDownLatch(1);
+        final CompletableFuture<Snippet> request = api.requestSnippetByID(TestData.snippetID(1));
+
+        assertTrue(arrived.await(10, TimeUnit.SECONDS));
+        assertTrue(request.cancel(true));
+        gate.countDown();
+
+        final Call call = dispatched.get();
+
+        assertNotNull(call);
+        assertTrue(call.isCanceled());
+        assertTrue(request.isCompletedExceptionally());
+
+        try {
+            request.join();
+            fail("The cancelled request completed normally");
+        } catch (CancellationException expected) {
+            assertEquals(0, api.getInFlightRequests().size());
+        }
+    }
+
+    @Test
+    public void testResponsesCompleteOnTheExecutor() {
+        final ExecutorService executor = Executors.newSingleThreadExecutor(task -> new Thread(task, "completion"));
+
+        try {
+            final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+            builder.setHttpClient(TestData.offlineClient(4));
+            builder.setExecutor(executor);
+
+            final CodeBottleAPI api = builder.build().waitForLazyLoading();
+
+            assertEquals("completion", new CodeBottleRequest<String>(api)
+                    .to(Endpoint.SNIPPETS)
+                    .makeGET()
+                    .then(data -> Thread.currentThread().getName())
+                    .join());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testVirtualThreadsAreUsedIfSupported() {
+        boolean supported;
+
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            supported = true;
+        } catch (NoSuchMethodException e) {
+            supported = false;
+        }
+
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(TestData.offlineClient(4));
+
+        try {
+            builder.useVirtualThreads();
+        } catch (UnsupportedOperationException e) {
+            assertFalse(supported);
+            return;
+        }
+
+        assertTrue(supported);
+        assertTrue(builder.getExecutor().isPresent());
+        assertEquals(4, builder.build().waitForLazyLoading().requestSnippets().join().size());
+    }
+
+    @Test
+    public void testDispatcherLimitsAreApplied() {
+        final OkHttpClient shared = TestData.offlineClient(4);
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(shared);
+        builder.setMaxRequests(7);
+        builder.setMaxRequestsPerHost(3);
+
+        final CodeBottleAPI api = builder.build();
+
+        assertEquals(7, api.getHttpClient().dispatcher().getMaxRequests());
+        assertEquals(3, api.getHttpClient().dispatcher().getMaxRequestsPerHost());
+        // the limits don't leak into the client that was passed in
+        assertEquals(64, shared.dispatcher().getMaxRequests());
+        assertEquals(5, shared.dispatcher().getMaxRequestsPerHost());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxRequestsMustBePositive() {
+        new CodeBottleAPI.Builder().setMaxRequests(0);
+    }
+
+    private CodeBottleAPI newApi(OkHttpClient client) {
+        final OkHttpClient.Builder gated = client.newBuilder();
+        gated.interceptors().add(0, chain -> {
+            if (chain.request().url().encodedPath().startsWith("/snippets")) {
+                dispatched.set(chain.call());
+                arrived.countDown();
+            }
+
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return chain.proceed(chain.request());
+        });
+
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(gated.build());
+
+        return builder.build().waitForLazyLoading();
+    }
+}
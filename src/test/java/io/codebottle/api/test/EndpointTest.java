@@ -0,0 +1,47 @@
+package io.codebottle.api.test;
+
+import io.codebottle.api.rest.Endpoint;
+import okhttp3.HttpUrl;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class EndpointTest {
+    private static final HttpUrl MIRROR = HttpUrl.get("http://localhost:8080/mirror/");
+
+    @Test
+    public void testDefaultBaseUrl() {
+        assertEquals("https://api.codebottle.io/snippets", Endpoint.SNIPPETS.url(Endpoint.DEFAULT_BASE_URL).toString());
+        assertEquals("https://api.codebottle.io/snippets/1b6c6604d6/revisions/2",
+                Endpoint.SNIPPET_REVISION_SPECIFIC.url(Endpoint.DEFAULT_BASE_URL, "1b6c6604d6", 2).toString());
+
+        // parameterless endpoints are resolved once
+        assertSame(Endpoint.LANGUAGES.url(Endpoint.DEFAULT_BASE_URL), Endpoint.LANGUAGES.url(Endpoint.DEFAULT_BASE_URL));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testFormattedUrlIsUnchanged() {
+        assertEquals("https://api.codebottle.io/snippets/1b6c6604d6/revisions",
+                Endpoint.SNIPPET_REVISIONS.url("1b6c6604d6").toString());
+    }
+
+    @Test
+    public void testCustomBaseUrl() {
+        assertEquals("http://localhost:8080/mirror/categories", Endpoint.CATEGORIES.url(MIRROR).toString());
+        assertEquals("http://localhost:8080/mirror/snippets/1b6c6604d6",
+                Endpoint.SNIPPET_SPECIFIC.url(MIRROR, "1b6c6604d6").toString());
+    }
+
+    @Test
+    public void testParametersAreEncodedAsSegments() {
+        assertEquals("https://api.codebottle.io/snippets/a%2Fb%3Fc",
+                Endpoint.SNIPPET_SPECIFIC.url(Endpoint.DEFAULT_BASE_URL, "a/b?c").toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalArgumentCount() {
+        Endpoint.SNIPPET_REVISION_SPECIFIC.url(Endpoint.DEFAULT_BASE_URL, "1b6c6604d6");
+    }
+}
@@ -0,0 +1,78 @@
+package io.codebottle.api.test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.codebottle.api.CodeBottleAPI;
+import io.codebottle.api.model.Snippet;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class EntityStateTest {
+    private static final int UPDATE_COUNT = 20_000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testStateIsNotChangedByUpdates() {
+        final CodeBottleAPI api = newApi();
+        final Snippet snippet = api.requestSnippetByID(TestData.snippetID(1)).join();
+        final Snippet.State state = snippet.getState();
+
+        snippet.update(version(2));
+
+        assertEquals("Snippet #1", state.getTitle());
+        assertEquals(1, state.getViews());
+        assertEquals("Version 2", snippet.getTitle());
+        assertEquals(2, snippet.getViews());
+        // properties that were not received are kept
+        assertEquals(state.getUsername(), snippet.getUsername());
+    }
+
+    @Test
+    public void testReadersSeeConsistentVersions() throws InterruptedException {
+        final CodeBottleAPI api = newApi();
+        final Snippet snippet = api.requestSnippetByID(TestData.snippetID(1)).join();
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final AtomicReference<String> inconsistency = new AtomicReference<>();
+
+        final Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                final Snippet.State state = snippet.getState();
+
+                if (state.getViews() > 1 && !state.getTitle().equals("Version " + state.getViews()))
+                    inconsistency.set(state.getTitle() + " with " + state.getViews() + " views");
+            }
+        });
+        reader.start();
+
+        for (int i = 2; i < UPDATE_COUNT; i++)
+            snippet.update(version(i));
+
+        done.set(true);
+        reader.join();
+
+        assertNull(inconsistency.get());
+    }
+
+    private ObjectNode version(int version) {
+        final ObjectNode data = objectMapper.createObjectNode();
+        data.put("title", "Version " + version);
+        data.put("views", version);
+        data.putObject("language").put("id", "1");
+        data.putObject("category").put("id", "1");
+
+        return data;
+    }
+
+    private static CodeBottleAPI newApi() {
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(TestData.offlineClient(4));
+
+        return builder.build().waitForLazyLoading();
+    }
+}
@@ -0,0 +1,153 @@
+package io.codebottle.api.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import io.codebottle.api.rest.FanOut;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FanOutTest {
+    private static final int TASK_COUNT = 50;
+    private static final int MAX_IN_FLIGHT = 4;
+
+    private final List<Integer> inputs = IntStream.range(0, TASK_COUNT).boxed().collect(Collectors.toList());
+
+    @Test
+    public void testConcurrencyIsBounded() {
+        final List<CompletableFuture<Integer>> running = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+
+        final CompletableFuture<List<Integer>> results = FanOut.run(inputs, input -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+
+            final CompletableFuture<Integer> task = new CompletableFuture<>();
+            running.add(task);
+
+            return task.thenApply(result -> {
+                inFlight.decrementAndGet();
+                return result;
+            });
+        }, MAX_IN_FLIGHT, null);
+
+        // completing a task starts the next one, until all tasks completed
+        while (!results.isDone()) {
+            final List<CompletableFuture<Integer>> started = new ArrayList<>(running);
+            running.clear();
+
+            for (CompletableFuture<Integer> task : started)
+                task.complete(0);
+        }
+
+        assertEquals(MAX_IN_FLIGHT, maxInFlight.get());
+        assertEquals(TASK_COUNT, results.join().size());
+    }
+
+    @Test
+    public void testResultsAreInInputOrder() {
+        final List<Integer> results = FanOut.run(inputs, input -> CompletableFuture.supplyAsync(() -> input * 2), MAX_IN_FLIGHT, null).join();
+
+        for (int i = 0; i < TASK_COUNT; i++)
+            assertEquals(Integer.valueOf(i * 2), results.get(i));
+    }
+
+    @Test
+    public void testFailureStopsStartingTasks() {
+        final RuntimeException failure = new RuntimeException("failed");
+        final AtomicInteger started = new AtomicInteger();
+
+        final CompletableFuture<List<Integer>> results = FanOut.run(inputs, input -> {
+            started.incrementAndGet();
+
+            if (input == 3) {
+                final CompletableFuture<Integer> failed = new CompletableFuture<>();
+                failed.completeExceptionally(failure);
+                return failed;
+            }
+
+            return CompletableFuture.completedFuture(input);
+        }, 1, null);
+
+        assertSame(failure, cause(results));
+        assertEquals(4, started.get());
+    }
+
+    @Test
+    public void testThrowingTaskFailsTheFanOut() {
+        final IllegalStateException failure = new IllegalStateException("thrown");
+
+        final CompletableFuture<List<Integer>> results = FanOut.run(inputs, input -> {
+            if (input == 5)
+                throw failure;
+
+            return CompletableFuture.completedFuture(input);
+        }, MAX_IN_FLIGHT, null);
+
+        assertSame(failure, cause(results));
+    }
+
+    @Test
+    public void testListenerIsNotifiedAboutProgress() {
+        final List<Integer> progress = Collections.synchronizedList(new ArrayList<>());
+
+        FanOut.run(inputs, CompletableFuture::completedFuture, MAX_IN_FLIGHT, (completed, total) -> {
+            assertEquals(TASK_COUNT, total);
+            progress.add(completed);
+        }).join();
+
+        assertEquals(IntStream.rangeClosed(1, TASK_COUNT).boxed().collect(Collectors.toList()), progress);
+    }
+
+    @Test
+    public void testThrowingListenerFailsTheFanOut() throws InterruptedException, TimeoutException {
+        final IllegalStateException failure = new IllegalStateException("listener");
+
+        final CompletableFuture<List<Integer>> results = FanOut.run(inputs, input -> CompletableFuture.supplyAsync(() -> input),
+                MAX_IN_FLIGHT, (completed, total) -> {
+                    if (completed == 10)
+                        throw failure;
+                });
+
+        try {
+            // the fan-out used to hang once the listener threw
+            results.get(10, TimeUnit.SECONDS);
+            fail("The fan-out completed normally");
+        } catch (ExecutionException e) {
+            assertSame(failure, e.getCause());
+        }
+    }
+
+    @Test
+    public void testEmptyInputsComplete() {
+        assertTrue(FanOut.run(Collections.<Integer>emptyList(), CompletableFuture::completedFuture, MAX_IN_FLIGHT, null).join().isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxInFlightMustBePositive() {
+        FanOut.run(inputs, CompletableFuture::completedFuture, 0, null);
+    }
+
+    private static Throwable cause(CompletableFuture<?> future) {
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            return e.getCause();
+        }
+
+        throw new AssertionError("The fan-out completed normally");
+    }
+}
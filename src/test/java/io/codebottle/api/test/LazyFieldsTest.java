@@ -0,0 +1,112 @@
+package io.codebottle.api.test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.stream.LongStream;
+
+import io.codebottle.api.CodeBottleAPI;
+import io.codebottle.api.model.Snippet;
+import org.junit.Test;
+
+import static java.lang.System.out;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class LazyFieldsTest {
+    private static final int SNIPPET_COUNT = 5_000;
+    private static final int ROUNDS = 10;
+
+    @Test
+    public void testLazyFieldsMatchEagerFields() {
+        final CodeBottleAPI eager = load(false);
+        final CodeBottleAPI lazy = load(true);
+
+        for (int i = 0; i < SNIPPET_COUNT; i += 97) {
+            final Snippet expected = eager.getSnippetByID(TestData.snippetID(i)).orElseThrow(AssertionError::new);
+            final Snippet.State actual = lazy.getSnippetByID(TestData.snippetID(i)).orElseThrow(AssertionError::new).getState();
+
+            assertEquals(expected.getTitle(), actual.getTitle());
+            assertEquals(expected.getDescription(), actual.getDescription());
+            assertEquals(expected.getCode(), actual.getCode());
+            assertEquals(expected.getViews(), actual.getViews());
+            assertSame(lazy.getLanguageByID(expected.getLanguage().getID()).orElseThrow(AssertionError::new), actual.getLanguage());
+            assertSame(lazy.getCategoryByID(expected.getCategory().getID()).orElseThrow(AssertionError::new), actual.getCategory());
+            assertEquals(expected.getVotes(), actual.getVotes());
+            assertEquals(expected.getUsername(), actual.getUsername());
+            assertEquals(expected.getCreatedAt(), actual.getCreatedAt());
+            assertEquals(expected.getUpdatedAt(), actual.getUpdatedAt());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOffHeapCodeIsRejected() {
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setLazySnippetFields(true);
+        builder.setOffHeapCode(true);
+
+        builder.build();
+    }
+
+    @Test
+    public void compareListingAllocations() {
+        final CodeBottleAPI eager = load(false);
+        final CodeBottleAPI lazy = load(true);
+
+        // warmup
+        for (int i = 0; i < ROUNDS; i++) {
+            list(eager);
+            list(lazy);
+        }
+
+        final long eagerBytes = measure(eager);
+        final long lazyBytes = measure(lazy);
+
+        out.printf("Listing %d snippets, average of %d rounds:\n", SNIPPET_COUNT, ROUNDS);
+        out.printf("\teager fields:\t%d KiB allocated\n", eagerBytes / 1024);
+        out.printf("\tlazy fields:\t%d KiB allocated\n", lazyBytes / 1024);
+    }
+
+    private static CodeBottleAPI load(boolean lazySnippetFields) {
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(TestData.offlineClient(SNIPPET_COUNT));
+        builder.setLazySnippetFields(lazySnippetFields);
+
+        final CodeBottleAPI api = builder.build().waitForLazyLoading();
+        api.requestSnippets().join();
+
+        return api;
+    }
+
+    // refreshes the snippets, and reads the fields shown in a listing
+    private static int list(CodeBottleAPI api) {
+        final Collection<Snippet> snippets = api.requestSnippets().join();
+        int hash = 0;
+
+        for (Snippet snippet : snippets)
+            hash += snippet.getTitle().length() + snippet.getLanguage().getName().length() + snippet.getVotes();
+
+        return hash;
+    }
+
+    // returns the average allocated bytes per round
+    private static long measure(CodeBottleAPI api) {
+        final long allocatedBefore = allocatedBytes();
+
+        for (int i = 0; i < ROUNDS; i++)
+            list(api);
+
+        return (allocatedBytes() - allocatedBefore) / ROUNDS;
+    }
+
+    // responses are read on the threads of the http client, so the allocations of all threads are counted
+    private static long allocatedBytes() {
+        final java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean)
+            return LongStream.of(((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(threadMXBean.getAllThreadIds()))
+                    .filter(bytes -> bytes > 0)
+                    .sum();
+
+        return 0;
+    }
+}
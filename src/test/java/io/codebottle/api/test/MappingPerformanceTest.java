@@ -0,0 +1,109 @@
+package io.codebottle.api.test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.codebottle.api.CodeBottleAPI;
+import io.codebottle.api.model.EntityMapper;
+import io.codebottle.api.model.Snippet;
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.lang.System.nanoTime;
+import static java.lang.System.out;
+import static org.junit.Assert.assertEquals;
+
+public class MappingPerformanceTest {
+    private static final int SNIPPET_COUNT = 5_000;
+    private static final int ROUNDS = 20;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private CodeBottleAPI codeBottleAPI;
+    private byte[] payload;
+
+    @Before
+    public void setUp() {
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(TestData.offlineClient(0));
+
+        codeBottleAPI = builder.build();
+        payload = TestData.snippets(SNIPPET_COUNT);
+    }
+
+    @Test
+    public void compareMapping() throws IOException {
+        final EntityMapper entityMapper = codeBottleAPI.getEntityMapper();
+
+        // warmup
+        for (int i = 0; i < ROUNDS; i++) {
+            mapTree();
+            mapBound(entityMapper);
+        }
+
+        final long[] tree = measure(this::mapTree);
+        final long[] bound = measure(() -> mapBound(entityMapper));
+
+        assertEquals(mapTree().get(42).getTitle(), mapBound(entityMapper).get(42).getTitle());
+
+        out.printf("Mapping %d snippets, average of %d rounds:\n", SNIPPET_COUNT, ROUNDS);
+        out.printf("\tupdate(JsonNode):\t%d us\t%d KiB allocated\n", tree[0] / 1000, tree[1] / 1024);
+        out.printf("\tEntityMapper:\t\t%d us\t%d KiB allocated\n", bound[0] / 1000, bound[1] / 1024);
+    }
+
+    private List<Snippet> mapTree() throws IOException {
+        final List<Snippet> yields = new ArrayList<>(SNIPPET_COUNT);
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(payload)) {
+            parser.nextToken();
+
+            while (parser.nextToken() == JsonToken.START_OBJECT)
+                yields.add(new Snippet(codeBottleAPI, objectMapper.readTree(parser)));
+        }
+
+        return yields;
+    }
+
+    private List<Snippet> mapBound(EntityMapper entityMapper) throws IOException {
+        final List<Snippet> yields = new ArrayList<>(SNIPPET_COUNT);
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(payload)) {
+            parser.nextToken();
+
+            while (parser.nextToken() == JsonToken.START_OBJECT)
+                yields.add(entityMapper.readSnippet(parser));
+        }
+
+        return yields;
+    }
+
+    // returns {average nanoseconds, average allocated bytes} per round
+    private static long[] measure(Mapping mapping) throws IOException {
+        final long allocatedBefore = allocatedBytes();
+        final long start = nanoTime();
+
+        for (int i = 0; i < ROUNDS; i++)
+            mapping.map();
+
+        return new long[]{(nanoTime() - start) / ROUNDS, (allocatedBytes() - allocatedBefore) / ROUNDS};
+    }
+
+    private static long allocatedBytes() {
+        final java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+
+        return 0;
+    }
+
+    @FunctionalInterface
+    private interface Mapping {
+        List<Snippet> map() throws IOException;
+    }
+}
@@ -0,0 +1,99 @@
+package io.codebottle.api.test;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.codebottle.api.CodeBottleAPI;
+import io.codebottle.api.metrics.ClientMetrics;
+import io.codebottle.api.metrics.MetricsListener;
+import io.codebottle.api.metrics.MetricsSnapshot;
+import io.codebottle.api.model.Snippet;
+import io.codebottle.api.rest.Endpoint;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsTest {
+    private static final int SNIPPET_COUNT = 20;
+
+    @Test
+    public void testRequestsAndCacheAccessesAreRecorded() {
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(TestData.offlineClient(SNIPPET_COUNT));
+
+        final CodeBottleAPI api = builder.build().waitForLazyLoading();
+        api.requestSnippets().join();
+
+        api.getSnippetByID(TestData.snippetID(3));
+        api.getSnippetByID("missing");
+
+        final MetricsSnapshot snapshot = api.getMetrics().snapshot();
+        final MetricsSnapshot.EndpointSnapshot snippets = snapshot.getEndpoint(Endpoint.SNIPPETS);
+
+        assertEquals(1, snippets.getRequests());
+        assertEquals(Long.valueOf(1), snippets.getStatusCodes().get(200));
+        assertEquals(TestData.snippets(SNIPPET_COUNT).length, snippets.getBytes());
+        assertEquals(1, snippets.getParseTime().getCount());
+        assertTrue(snippets.getLatency().getValueAtPercentile(50) <= snippets.getLatency().getMax());
+
+        final MetricsSnapshot.CacheSnapshot snippetCache = snapshot.getCache(ClientMetrics.CacheType.SNIPPETS);
+
+        assertEquals(SNIPPET_COUNT, snippetCache.getSize());
+        assertEquals(1, snippetCache.getHits());
+        assertEquals(1, snippetCache.getMisses());
+    }
+
+    @Test
+    public void testFailingListenerDoesNotFailTheRequest() throws Exception {
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(TestData.offlineClient(SNIPPET_COUNT));
+
+        final CodeBottleAPI api = builder.build().waitForLazyLoading();
+        final AtomicInteger notified = new AtomicInteger();
+
+        api.getMetrics().addListener(new MetricsListener() {
+            @Override
+            public void onResponse(Endpoint endpoint, int statusCode, long latencyNanos) {
+                throw new IllegalStateException("Failing listener");
+            }
+
+            @Override
+            public void onParsed(Endpoint endpoint, long bytes, long parseNanos) {
+                throw new IllegalStateException("Failing listener");
+            }
+        });
+        api.getMetrics().addListener((endpoint, statusCode, latencyNanos) -> notified.incrementAndGet());
+
+        assertEquals(SNIPPET_COUNT, api.requestSnippets().get(10, TimeUnit.SECONDS).size());
+        // the listeners registered after the failing one are still notified
+        assertEquals(1, notified.get());
+        assertEquals(1, api.getMetrics().snapshot().getEndpoint(Endpoint.SNIPPETS).getRequests());
+    }
+
+    @Test
+    public void testLibraryLookupsAreNotRecorded() {
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(TestData.withValidators(TestData.offlineClient(SNIPPET_COUNT), TestData.Validator.ETAG, new ArrayList<>()));
+        builder.setLazySnippetFields(true);
+
+        final CodeBottleAPI api = builder.build().waitForLazyLoading();
+
+        // resolves the language and category of every snippet and revision, and revalidates the cached snippet
+        api.requestSnippets().join();
+        api.requestSnippetRevisions(TestData.snippetID(3)).join();
+        api.requestSnippetByID(TestData.snippetID(3)).join();
+        api.requestSnippetByID(TestData.snippetID(3)).join();
+        for (Snippet snippet : api.getSnippets())
+            snippet.getLanguage();
+
+        api.getLanguageByID("1");
+
+        final MetricsSnapshot snapshot = api.getMetrics().snapshot();
+
+        assertEquals(1, snapshot.getCache(ClientMetrics.CacheType.LANGUAGES).getHits());
+        assertEquals(0, snapshot.getCache(ClientMetrics.CacheType.CATEGORIES).getHits() + snapshot.getCache(ClientMetrics.CacheType.CATEGORIES).getMisses());
+        assertEquals(0, snapshot.getCache(ClientMetrics.CacheType.SNIPPETS).getHits() + snapshot.getCache(ClientMetrics.CacheType.SNIPPETS).getMisses());
+    }
+}
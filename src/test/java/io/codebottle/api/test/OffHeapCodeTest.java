@@ -0,0 +1,192 @@
+package io.codebottle.api.test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.codebottle.api.CachePolicy;
+import io.codebottle.api.CodeBottleAPI;
+import io.codebottle.api.model.CodeArena;
+import io.codebottle.api.model.Snippet;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OffHeapCodeTest {
+    private static final int SNIPPET_COUNT = 2_000;
+    private static final int READER_COUNT = 4;
+    private static final int UPDATE_COUNT = 50_000;
+
+    @Test
+    public void testCodeRoundTripAndCompaction() throws IOException {
+        final CodeBottleAPI onHeap = load(false, CachePolicy.unbounded());
+        final CodeBottleAPI offHeap = load(true, CachePolicy.unbounded());
+        final CodeArena arena = offHeap.getCodeArena().orElseThrow(AssertionError::new);
+
+        assertEquals(codes(onHeap), codes(offHeap));
+
+        final Snippet snippet = offHeap.getSnippetByID(TestData.snippetID(5)).orElseThrow(AssertionError::new);
+        assertEquals(snippet.getCode(), snippet.getCodeSequence().toString());
+        assertEquals(snippet.getCode().charAt(10), snippet.getCodeSequence().charAt(10));
+        assertEquals(snippet.getCode(), read(snippet.openCode()));
+
+        // every refresh replaces the stored code, which must not let the arena grow without bounds
+        final long live = arena.getLiveBytes();
+        for (int i = 0; i < 10; i++)
+            offHeap.requestSnippets().join();
+
+        assertEquals(live, arena.getLiveBytes());
+        assertTrue("Replaced code must be compacted", arena.getAllocatedBytes() <= 4 * Math.max(live, 1 << 20));
+        assertEquals(codes(onHeap), codes(offHeap));
+    }
+
+    @Test
+    public void testEvictedCodeIsReleased() {
+        final CachePolicy policy = CachePolicy.unbounded();
+        policy.setMaximumSize(10);
+
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(TestData.offlineClient(SNIPPET_COUNT));
+        builder.setOffHeapCode(true);
+        builder.setSnippetCachePolicy(policy);
+        // evicted snippets are released right away
+        builder.setExecutor(Runnable::run);
+
+        final CodeBottleAPI onHeap = load(false, CachePolicy.unbounded());
+        final CodeBottleAPI offHeap = builder.build().waitForLazyLoading();
+        final CodeArena arena = offHeap.getCodeArena().orElseThrow(AssertionError::new);
+        final List<Snippet> evicted = offHeap.requestSnippets()
+                .join()
+                .stream()
+                .filter(snippet -> !offHeap.getSnippetByID(snippet.getID()).isPresent())
+                .collect(Collectors.toList());
+
+        assertEquals(SNIPPET_COUNT - 10, evicted.size());
+        // only the code of the cached snippets is left in the arena
+        assertEquals(offHeap.getSnippets()
+                .stream()
+                .mapToLong(snippet -> snippet.getCode().getBytes(StandardCharsets.UTF_8).length)
+                .sum(), arena.getLiveBytes());
+
+        // snippets that are still referenced stay readable after they were evicted
+        for (Snippet snippet : evicted) {
+            final Snippet expected = onHeap.getSnippetByID(snippet.getID()).orElseThrow(AssertionError::new);
+
+            assertEquals(expected.getCode(), snippet.getCode());
+            assertEquals(expected.getCode(), snippet.getCodeSequence().toString());
+        }
+    }
+
+    @Test
+    public void testReleasedRevisionsStayReadable() {
+        final CodeBottleAPI offHeap = load(true, CachePolicy.unbounded());
+        final CodeArena arena = offHeap.getCodeArena().orElseThrow(AssertionError::new);
+        final Snippet snippet = offHeap.getSnippetByID(TestData.snippetID(5)).orElseThrow(AssertionError::new);
+        final List<String> codes = Stream.concat(Stream.of(snippet.getCode()), snippet.getRevisions()
+                .stream()
+                .map(Snippet.Revision::getCode))
+                .collect(Collectors.toList());
+        final long live = arena.getLiveBytes();
+
+        arena.release(snippet);
+
+        assertTrue(arena.getLiveBytes() < live);
+        assertEquals(codes, Stream.concat(Stream.of(snippet.getCode()), snippet.getRevisions()
+                .stream()
+                .map(Snippet.Revision::getCode))
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testCodeStaysReadableWhileItIsReplaced() throws Exception {
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(TestData.offlineClient(SNIPPET_COUNT));
+        builder.setOffHeapCode(true);
+
+        final CodeBottleAPI offHeap = builder.build().waitForLazyLoading();
+        final Snippet snippet = offHeap.requestSnippetByID(TestData.snippetID(5)).join();
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final List<Thread> readers = new ArrayList<>();
+
+        for (int i = 0; i < READER_COUNT; i++)
+            readers.add(new Thread(() -> {
+                try {
+                    while (running.get()) {
+                        // every read sees one of the versions of the code as a whole
+                        assertTrue(snippet.getCode().startsWith("code "));
+                        assertTrue(snippet.getCodeSequence().toString().startsWith("code "));
+                        assertTrue(read(snippet.openCode()).startsWith("code "));
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+            }, "reader-" + i));
+
+        final ObjectNode data = new ObjectMapper().createObjectNode();
+        data.putObject("language").put("id", snippet.getLanguage().getID());
+        data.putObject("category").put("id", snippet.getCategory().getID());
+        data.put("code", "code 0");
+        snippet.update(data);
+
+        readers.forEach(Thread::start);
+
+        // every update frees the code it replaced
+        for (int i = 1; i <= UPDATE_COUNT && failure.get() == null; i++) {
+            data.put("code", "code " + i);
+            snippet.update(data);
+        }
+
+        running.set(false);
+        for (Thread reader : readers)
+            reader.join();
+
+        if (failure.get() != null)
+            throw new AssertionError("Reading the code failed while it was replaced", failure.get());
+        assertEquals("code " + UPDATE_COUNT, snippet.getCode());
+    }
+
+    private static CodeBottleAPI load(boolean offHeapCode, CachePolicy snippetCachePolicy) {
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(TestData.offlineClient(SNIPPET_COUNT));
+        builder.setOffHeapCode(offHeapCode);
+        builder.setSnippetCachePolicy(snippetCachePolicy);
+
+        final CodeBottleAPI codeBottleAPI = builder.build().waitForLazyLoading();
+        codeBottleAPI.requestAllRevisions().join();
+
+        return codeBottleAPI;
+    }
+
+    private static List<String> codes(CodeBottleAPI codeBottleAPI) {
+        return codeBottleAPI.getSnippets()
+                .stream()
+                .sorted((a, b) -> a.getID().compareTo(b.getID()))
+                .flatMap(snippet -> Stream.concat(Stream.of(snippet.getCode()), snippet.getRevisions()
+                        .stream()
+                        .map(Snippet.Revision::getCode)))
+                .collect(Collectors.toList());
+    }
+
+    private static String read(ReadableByteChannel channel) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+        try (ReadableByteChannel open = channel) {
+            while (open.read(buffer) > 0) ;
+        }
+
+        buffer.flip();
+
+        return StandardCharsets.UTF_8.decode(buffer).toString();
+    }
+}
@@ -0,0 +1,156 @@
+package io.codebottle.api.test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.codebottle.api.CodeBottleAPI;
+import io.codebottle.api.model.Snippet;
+import io.codebottle.api.rest.Endpoint;
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PublisherTest {
+    private static final int SNIPPET_COUNT = 200;
+
+    @Test
+    public void testSnippetsRespectDemand() throws Exception {
+        final CodeBottleAPI api = offlineAPI();
+        final Collector<Snippet> collector = new Collector<>();
+        api.publishSnippets().subscribe(collector);
+
+        collector.subscription.request(5);
+        Thread.sleep(200);
+        assertEquals(5, collector.received.size());
+
+        collector.subscription.request(Long.MAX_VALUE);
+        collector.completion.get(10, TimeUnit.SECONDS);
+        assertEquals(SNIPPET_COUNT, collector.received.size());
+        assertEquals(SNIPPET_COUNT, api.getSnippets().size());
+    }
+
+    @Test
+    public void testDemandThrottlesRevisionRequests() throws Exception {
+        final CodeBottleAPI api = offlineAPI();
+        final Collector<Snippet.Revision> collector = new Collector<>();
+        api.publishAllRevisions(8).subscribe(collector);
+
+        // the revisions of two snippets are enough to meet this demand
+        collector.subscription.request(2);
+        Thread.sleep(200);
+        assertEquals(2, collector.received.size());
+        assertEquals(2, api.getMetrics().snapshot().getEndpoint(Endpoint.SNIPPET_REVISIONS).getRequests());
+
+        collector.subscription.request(Long.MAX_VALUE);
+        collector.completion.get(10, TimeUnit.SECONDS);
+        assertEquals(SNIPPET_COUNT * TestData.REVISION_COUNT, collector.received.size());
+        assertEquals(SNIPPET_COUNT, api.getMetrics().snapshot().getEndpoint(Endpoint.SNIPPET_REVISIONS).getRequests());
+    }
+
+    @Test
+    public void testCancellingBeforeOpeningClosesTheResponse() throws Exception {
+        final AtomicReference<Call> dispatched = new AtomicReference<>();
+        final CountDownLatch arrived = new CountDownLatch(1);
+        final CountDownLatch gate = new CountDownLatch(1);
+        final CountDownLatch closed = new CountDownLatch(1);
+
+        final OkHttpClient.Builder client = TestData.offlineClient(SNIPPET_COUNT).newBuilder();
+        client.interceptors().add(0, chain -> {
+            if (!chain.request().url().encodedPath().equals("/snippets"))
+                return chain.proceed(chain.request());
+
+            dispatched.set(chain.call());
+            arrived.countDown();
+
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            final Response response = chain.proceed(chain.request());
+            final ResponseBody body = Objects.requireNonNull(response.body());
+            final BufferedSource source = Okio.buffer(new ForwardingSource(body.source()) {
+                @Override
+                public void close() throws IOException {
+                    closed.countDown();
+                    super.close();
+                }
+            });
+
+            return response.newBuilder()
+                    .body(ResponseBody.create(source, body.contentType(), body.contentLength()))
+                    .build();
+        });
+
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(client.build());
+
+        final CodeBottleAPI api = builder.build().waitForLazyLoading();
+        final Collector<Snippet> collector = new Collector<>();
+        api.publishSnippets().subscribe(collector);
+
+        // the subscription is cancelled while the response is still on its way
+        collector.subscription.request(1);
+        assertTrue(arrived.await(10, TimeUnit.SECONDS));
+        collector.subscription.cancel();
+
+        assertTrue(dispatched.get().isCanceled());
+
+        gate.countDown();
+
+        assertTrue(closed.await(10, TimeUnit.SECONDS));
+        assertTrue(collector.received.isEmpty());
+        assertFalse(collector.completion.isDone());
+    }
+
+    private static CodeBottleAPI offlineAPI() {
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(TestData.offlineClient(SNIPPET_COUNT));
+
+        return builder.build().waitForLazyLoading();
+    }
+
+    private static final class Collector<T> implements Subscriber<T> {
+        private final List<T> received = new CopyOnWriteArrayList<>();
+        private final CompletableFuture<Void> completion = new CompletableFuture<>();
+        private volatile Subscription subscription;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(T element) {
+            received.add(element);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            completion.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            completion.complete(null);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package io.codebottle.api.test;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.codebottle.api.CodeBottleAPI;
+import io.codebottle.api.rest.Backoff;
+import io.codebottle.api.rest.RateLimiter;
+import io.codebottle.api.rest.exception.UnexpectedStatusCodeException;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RetryTest {
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    @Test
+    public void testThrottledRequestIsRetried() {
+        final RateLimiter rateLimiter = new RateLimiter(1000, 100);
+        final CodeBottleAPI api = newApi(throttling(2, 429, "0"), 3, rateLimiter);
+
+        assertEquals(TestData.snippetID(1), api.requestSnippetByID(TestData.snippetID(1)).join().getID());
+        assertEquals(3, attempts.get());
+        // halved twice, then raised once by the successful response
+        assertEquals(1000 / 4d + 1000 / 32d, rateLimiter.getRate(), 0.001);
+    }
+
+    @Test
+    public void testUnavailableServiceIsRetried() {
+        final CodeBottleAPI api = newApi(throttling(1, 503, null), 3, null);
+
+        assertEquals(TestData.snippetID(1), api.requestSnippetByID(TestData.snippetID(1)).join().getID());
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    public void testRetriesGiveUpAfterMaxRetries() {
+        final CodeBottleAPI api = newApi(throttling(Integer.MAX_VALUE, 503, "0"), 2, null);
+
+        try {
+            api.requestSnippetByID(TestData.snippetID(1)).join();
+            fail("The request succeeded");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof UnexpectedStatusCodeException);
+        }
+
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    public void testRetryAfterIsWaitedFor() {
+        final CodeBottleAPI api = newApi(throttling(1, 429, "1"), 3, null);
+        final long start = System.nanoTime();
+
+        api.requestSnippetByID(TestData.snippetID(1)).join();
+
+        assertTrue(System.nanoTime() - start >= TimeUnit.SECONDS.toNanos(1));
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    public void testRetryAfterIsParsed() {
+        assertEquals(TimeUnit.SECONDS.toNanos(120), Backoff.retryAfter(throttled(429, "120")));
+        assertEquals(0, Backoff.retryAfter(throttled(429, null)));
+        assertEquals(0, Backoff.retryAfter(throttled(429, "soon")));
+
+        final DateTimeFormatter httpDate = DateTimeFormatter.RFC_1123_DATE_TIME;
+        final long future = Backoff.retryAfter(throttled(429, httpDate.format(ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(30))));
+
+        // HTTP-dates only have a resolution of seconds
+        assertTrue(future > TimeUnit.SECONDS.toNanos(28) && future <= TimeUnit.SECONDS.toNanos(30));
+        assertEquals(0, Backoff.retryAfter(throttled(429, httpDate.format(ZonedDateTime.now(ZoneOffset.UTC).minusMinutes(1)))));
+    }
+
+    @Test
+    public void testBackoffIsCapped() {
+        for (int i = 0; i < 100; i++) {
+            final long first = Backoff.delay(0);
+            final long late = Backoff.delay(100);
+
+            assertTrue(first >= Backoff.INITIAL_NANOS / 2 && first <= Backoff.INITIAL_NANOS);
+            assertTrue(late >= Backoff.MAX_NANOS / 2 && late <= Backoff.MAX_NANOS);
+        }
+    }
+
+    @Test
+    public void testRateLimiterDelaysBeyondBurst() {
+        final RateLimiter rateLimiter = new RateLimiter(10, 5);
+
+        for (int i = 0; i < 5; i++)
+            assertEquals(0, rateLimiter.reserve());
+
+        // the sixth permit is only available after a tenth of a second
+        final long delay = rateLimiter.reserve();
+
+        assertTrue(delay > 0 && delay <= TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    public void testRateLimiterAdaptsToThrottling() {
+        final RateLimiter rateLimiter = new RateLimiter(64, 1);
+
+        rateLimiter.onThrottled(TimeUnit.SECONDS.toNanos(2));
+
+        assertEquals(32, rateLimiter.getRate(), 0.001);
+        // no permits are handed out before the requested delay passed
+        assertTrue(rateLimiter.reserve() > TimeUnit.SECONDS.toNanos(1));
+
+        for (int i = 0; i < 100; i++)
+            rateLimiter.onThrottled(0);
+
+        // the rate never drops below 1/64 of the maximum
+        assertEquals(1, rateLimiter.getRate(), 0.001);
+
+        for (int i = 0; i < 100; i++)
+            rateLimiter.onSuccess();
+
+        assertEquals(64, rateLimiter.getRate(), 0.001);
+    }
+
+    @Test
+    public void testRateLimiterSaturatesTheRequestedDelay() {
+        final RateLimiter rateLimiter = new RateLimiter(64, 1);
+
+        // the longest delay the backoff hands out must not wrap around into the past
+        rateLimiter.onThrottled(Long.MAX_VALUE);
+
+        assertTrue(rateLimiter.reserve() > TimeUnit.DAYS.toNanos(365));
+
+        rateLimiter.onThrottled(0);
+
+        assertTrue(rateLimiter.reserve() > TimeUnit.DAYS.toNanos(365));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRateMustBePositive() {
+        new RateLimiter(0, 1);
+    }
+
+    // answers the first 'count' attempts with the given code, and all others from the offline client
+    private OkHttpClient throttling(int count, int code, String retryAfter) {
+        final OkHttpClient.Builder client = TestData.offlineClient(4).newBuilder();
+        client.interceptors().add(0, chain -> {
+            if (!chain.request().url().encodedPath().startsWith("/snippets/"))
+                return chain.proceed(chain.request());
+
+            if (attempts.incrementAndGet() <= count)
+                return throttled(chain.request(), code, retryAfter);
+
+            return chain.proceed(chain.request());
+        });
+
+        return client.build();
+    }
+
+    private CodeBottleAPI newApi(OkHttpClient client, int maxRetries, RateLimiter rateLimiter) {
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(client);
+        builder.setMaxRetries(maxRetries);
+        builder.setRateLimiter(rateLimiter);
+
+        return builder.build().waitForLazyLoading();
+    }
+
+    private static Response throttled(int code, String retryAfter) {
+        return throttled(new Request.Builder().url("https://codebottle.io/api/snippets").build(), code, retryAfter);
+    }
+
+    private static Response throttled(Request request, int code, String retryAfter) {
+        final Response.Builder response = new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message(code == 429 ? "Too Many Requests" : "Service Unavailable")
+                .body(ResponseBody.create("{\"error\":\"Throttled\"}", null));
+
+        if (retryAfter != null)
+            response.header("Retry-After", retryAfter);
+
+        return response.build();
+    }
+}
@@ -0,0 +1,182 @@
+package io.codebottle.api.test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import io.codebottle.api.CodeBottleAPI;
+import io.codebottle.api.RevalidationPolicy;
+import io.codebottle.api.SnippetBatch;
+import io.codebottle.api.model.Snippet;
+import io.codebottle.api.rest.Endpoint;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RevalidationTest {
+    private static final int CALLER_COUNT = 100;
+
+    // responses wait until the gate is opened
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+
+    @Test
+    public void testFreshSnippetIsNotRequested() {
+        final CodeBottleAPI api = newApi(RevalidationPolicy.of(Duration.ofHours(1), Duration.ofDays(1)));
+        final Snippet snippet = api.requestSnippetByID(TestData.snippetID(1)).join();
+
+        for (int i = 0; i < CALLER_COUNT; i++)
+            assertSame(snippet, api.getOrRevalidateSnippetByID(TestData.snippetID(1)).join());
+
+        assertEquals(1, requests(api));
+    }
+
+    @Test
+    public void testStaleSnippetIsRefreshedOnceInBackground() throws Exception {
+        final CodeBottleAPI api = newApi(RevalidationPolicy.of(Duration.ZERO, Duration.ofHours(1)));
+        final Snippet snippet = api.requestSnippetByID(TestData.snippetID(1)).join();
+        final ExecutorService callers = Executors.newFixedThreadPool(8);
+
+        gate = new CountDownLatch(1);
+        try {
+            final List<Future<CompletableFuture<Snippet>>> results = new ArrayList<>();
+            for (int i = 0; i < CALLER_COUNT; i++)
+                results.add(callers.submit(() -> api.getOrRevalidateSnippetByID(TestData.snippetID(1))));
+
+            // every caller is served from the cache while the refresh is held back
+            for (Future<CompletableFuture<Snippet>> result : results) {
+                final CompletableFuture<Snippet> future = result.get();
+
+                assertTrue(future.isDone());
+                assertSame(snippet, future.join());
+            }
+        } finally {
+            gate.countDown();
+            callers.shutdown();
+        }
+
+        awaitRequests(api);
+        assertEquals(2, requests(api));
+    }
+
+    @Test
+    public void testExpiredSnippetIsRequested() {
+        final CodeBottleAPI api = newApi(RevalidationPolicy.freshOnly(Duration.ZERO));
+        final Snippet snippet = api.requestSnippetByID(TestData.snippetID(1)).join();
+
+        assertSame(snippet, api.getOrRevalidateSnippetByID(TestData.snippetID(1)).join());
+        assertEquals(2, requests(api));
+        assertTrue(snippet.isFresh(Duration.ofMinutes(1)));
+    }
+
+    @Test
+    public void testMissingSnippetIsRequested() {
+        final CodeBottleAPI api = newApi(RevalidationPolicy.of(Duration.ofHours(1), Duration.ofDays(1)));
+
+        assertEquals(TestData.snippetID(2), api.getOrRevalidateSnippetByID(TestData.snippetID(2)).join().getID());
+        assertEquals(1, requests(api));
+    }
+
+    @Test
+    public void testNotModifiedSnippetIsFreshAgain() throws InterruptedException {
+        final Duration freshness = Duration.ofMillis(200);
+        final CodeBottleAPI.Builder builder = newBuilder(RevalidationPolicy.freshOnly(freshness));
+        builder.setHttpClient(TestData.withValidators(builder.getHttpClient().orElseThrow(AssertionError::new), TestData.Validator.ETAG, new ConcurrentLinkedQueue<>()));
+
+        final CodeBottleAPI api = builder.build().waitForLazyLoading();
+        final Snippet snippet = api.requestSnippetByID(TestData.snippetID(1)).join();
+
+        Thread.sleep(freshness.toMillis() + 50);
+        assertFalse(snippet.isFresh(freshness));
+
+        // the 304 confirms the cached snippet, which restarts its age
+        assertSame(snippet, api.getOrRevalidateSnippetByID(TestData.snippetID(1)).join());
+        assertEquals(Long.valueOf(1), api.getMetrics().snapshot().getEndpoint(Endpoint.SNIPPET_SPECIFIC).getStatusCodes().get(304));
+        assertTrue(snippet.isFresh(freshness));
+
+        assertSame(snippet, api.getOrRevalidateSnippetByID(TestData.snippetID(1)).join());
+        assertEquals(2, requests(api));
+    }
+
+    @Test
+    public void testNotModifiedBatchIsFreshAgain() throws InterruptedException {
+        final Duration freshness = Duration.ofMillis(200);
+        final Collection<Request> received = new ConcurrentLinkedQueue<>();
+        final CodeBottleAPI.Builder builder = newBuilder(RevalidationPolicy.freshOnly(freshness));
+        builder.setHttpClient(TestData.withValidators(builder.getHttpClient().orElseThrow(AssertionError::new), TestData.Validator.ETAG, received));
+        builder.setSnippetFreshness(freshness);
+
+        final CodeBottleAPI api = builder.build().waitForLazyLoading();
+        final List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 4; i++)
+            ids.add(TestData.snippetID(i));
+
+        api.requestSnippetsByIDs(ids).join();
+        Thread.sleep(freshness.toMillis() + 50);
+
+        final SnippetBatch revalidated = api.requestSnippetsByIDs(ids).join();
+
+        assertTrue(revalidated.isComplete());
+        assertEquals(Long.valueOf(4), api.getMetrics().snapshot().getEndpoint(Endpoint.SNIPPET_SPECIFIC).getStatusCodes().get(304));
+        for (Snippet snippet : revalidated.getSnippets().values())
+            assertTrue(snippet.isFresh(freshness));
+
+        // the revalidated snippets are served from the cache again
+        assertEquals(ids, new ArrayList<>(api.requestSnippetsByIDs(ids).join().getSnippets().keySet()));
+        assertEquals(8, requests(api));
+        assertNotNull(received.stream()
+                .filter(request -> request.url().encodedPath().startsWith("/snippets/"))
+                .reduce((first, last) -> last)
+                .map(request -> request.header("If-None-Match"))
+                .orElse(null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStalenessShorterThanFreshnessIsRejected() {
+        RevalidationPolicy.of(Duration.ofMinutes(2), Duration.ofMinutes(1));
+    }
+
+    private CodeBottleAPI newApi(RevalidationPolicy snippetRevalidation) {
+        return newBuilder(snippetRevalidation).build().waitForLazyLoading();
+    }
+
+    private CodeBottleAPI.Builder newBuilder(RevalidationPolicy snippetRevalidation) {
+        final OkHttpClient.Builder client = TestData.offlineClient(4).newBuilder();
+        client.interceptors().add(0, chain -> {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return chain.proceed(chain.request());
+        });
+
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(client.build());
+        builder.setSnippetRevalidation(snippetRevalidation);
+
+        return builder;
+    }
+
+    private static void awaitRequests(CodeBottleAPI api) throws InterruptedException {
+        while (api.getInFlightRequests().size() > 0)
+            Thread.sleep(10);
+    }
+
+    private static long requests(CodeBottleAPI api) {
+        return api.getMetrics().snapshot().getEndpoint(Endpoint.SNIPPET_SPECIFIC).getRequests();
+    }
+}
@@ -0,0 +1,44 @@
+package io.codebottle.api.test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import io.codebottle.api.CodeBottleAPI;
+import io.codebottle.api.model.Snippet;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RevisionLookupTest {
+    @Test
+    public void testRevisionsHaveNoGaps() {
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(TestData.offlineClient(4));
+
+        final CodeBottleAPI api = builder.build().waitForLazyLoading();
+        // only the last revision is received, which leaves the ones before it unknown
+        final Snippet.Revision last = api.requestSnippetRevisionByID(TestData.snippetID(1), TestData.REVISION_COUNT - 1).join();
+        final Snippet snippet = api.getSnippetByID(TestData.snippetID(1)).orElseThrow(AssertionError::new);
+
+        assertFalse(snippet.getRevisionByID(0).isPresent());
+        assertEquals(1, snippet.getRevisions().size());
+        assertSame(last, snippet.getRevisions().iterator().next());
+
+        final List<Snippet.Revision> all = new ArrayList<>(api.getSnippetRevisions());
+
+        assertEquals(1, all.size());
+        all.sort(Snippet.Revision.REVISION_COMPARATOR);
+
+        // the collection is a snapshot, which later revisions are not added to
+        final Collection<Snippet.Revision> before = snippet.getRevisions();
+        api.requestSnippetRevisions(TestData.snippetID(1)).join();
+
+        assertEquals(1, before.size());
+        assertEquals(TestData.REVISION_COUNT, snippet.getRevisions().size());
+        assertTrue(snippet.getRevisions().stream().allMatch(revision -> revision != null));
+    }
+}
@@ -0,0 +1,75 @@
+package io.codebottle.api.test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import io.codebottle.api.CodeBottleAPI;
+import io.codebottle.api.model.Snippet;
+import org.junit.Test;
+
+import static java.lang.System.out;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RevisionStorageTest {
+    private static final int SNIPPET_COUNT = 500;
+    private static final int REVISION_COUNT = 24;
+
+    @Test
+    public void measureMemorySaved() {
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+        final long heapBefore = usedHeap(memory);
+        final CodeBottleAPI full = load(1);
+        final long fullHeap = usedHeap(memory) - heapBefore;
+        final CodeBottleAPI delta = load(8);
+        final long deltaHeap = usedHeap(memory) - heapBefore - fullHeap;
+
+        final long fullSize = estimateSize(full);
+        final long deltaSize = estimateSize(delta);
+
+        assertEquals(codes(full), codes(delta));
+        assertTrue("Deltas must be smaller than full revisions", deltaSize < fullSize);
+
+        out.printf("Storing %d snippets with %d revisions each:\n", SNIPPET_COUNT, REVISION_COUNT);
+        out.printf("\tfull revisions:\t\t%d KiB estimated\t%d KiB heap\n", fullSize / 1024, fullHeap / 1024);
+        out.printf("\tdelta-encoded:\t\t%d KiB estimated\t%d KiB heap\n", deltaSize / 1024, deltaHeap / 1024);
+        out.printf("\tsaved:\t\t\t%.1f%%\n", 100.0 * (fullSize - deltaSize) / fullSize);
+    }
+
+    private static CodeBottleAPI load(int keyframeInterval) {
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(TestData.offlineClient(SNIPPET_COUNT, REVISION_COUNT));
+        builder.setRevisionKeyframeInterval(keyframeInterval);
+
+        final CodeBottleAPI codeBottleAPI = builder.build().waitForLazyLoading();
+        codeBottleAPI.requestAllRevisions().join();
+
+        return codeBottleAPI;
+    }
+
+    private static long estimateSize(CodeBottleAPI codeBottleAPI) {
+        return codeBottleAPI.getSnippets()
+                .stream()
+                .mapToLong(Snippet::estimateSize)
+                .sum();
+    }
+
+    private static List<String> codes(CodeBottleAPI codeBottleAPI) {
+        return codeBottleAPI.getSnippets()
+                .stream()
+                .sorted((a, b) -> a.getID().compareTo(b.getID()))
+                .flatMap(snippet -> snippet.getRevisions().stream())
+                .map(Snippet.Revision::getCode)
+                .collect(Collectors.toList());
+    }
+
+    private static long usedHeap(MemoryMXBean memory) {
+        for (int i = 0; i < 3; i++)
+            System.gc();
+
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
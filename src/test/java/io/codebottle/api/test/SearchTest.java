@@ -0,0 +1,118 @@
+package io.codebottle.api.test;
+
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.codebottle.api.CodeBottleAPI;
+import io.codebottle.api.model.Snippet;
+import io.codebottle.api.model.SnippetSearchIndex;
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.lang.System.nanoTime;
+import static java.lang.System.out;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SearchTest {
+    private static final int SNIPPET_COUNT = 20_000;
+    private static final int ROUNDS = 1_000;
+
+    private CodeBottleAPI codeBottleAPI;
+
+    @Before
+    public void setUp() {
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(TestData.offlineClient(SNIPPET_COUNT));
+        builder.setSearchScope(SnippetSearchIndex.Scope.SNIPPETS);
+
+        codeBottleAPI = builder.build().waitForLazyLoading();
+        codeBottleAPI.requestSnippets().join();
+    }
+
+    @Test
+    public void testRankingAndIncrementalUpdates() {
+        final List<SnippetSearchIndex.Hit> hits = codeBottleAPI.searchSnippets("snippet 1234", 10);
+
+        assertEquals(TestData.snippetID(1234), hits.get(0).getSnippet().getID());
+
+        final Snippet snippet = codeBottleAPI.getSnippetByID(TestData.snippetID(42)).orElseThrow(AssertionError::new);
+        final ObjectNode data = new ObjectMapper().createObjectNode();
+        data.put("code", "Response response = parseHTTPResponse(raw_http_body);");
+        data.putObject("language").put("id", snippet.getLanguage().getID());
+        data.putObject("category").put("id", snippet.getCategory().getID());
+        snippet.update(data);
+
+        final List<SnippetSearchIndex.Hit> updated = codeBottleAPI.searchSnippets("http response", 10);
+
+        assertEquals(1, updated.size());
+        assertEquals(snippet, updated.get(0).getSnippet());
+        assertEquals(snippet, codeBottleAPI.searchSnippets("parseHttpResponse", 10).get(0).getSnippet());
+        assertTrue(codeBottleAPI.searchSnippets("println", SNIPPET_COUNT)
+                .stream()
+                .noneMatch(hit -> hit.getSnippet() == snippet));
+    }
+
+    @Test
+    public void measureSearch() {
+        // warmup
+        for (int i = 0; i < ROUNDS; i++)
+            codeBottleAPI.searchSnippets("snippet " + i, 10);
+
+        final long start = nanoTime();
+        for (int i = 0; i < ROUNDS; i++)
+            codeBottleAPI.searchSnippets("snippet " + i, 10);
+        final long search = (nanoTime() - start) / ROUNDS;
+        final long scan = measureScan();
+
+        out.printf("Searching %d snippets, average of %d rounds:\n", SNIPPET_COUNT, ROUNDS);
+        out.printf("\tSnippetSearchIndex:\t%d us\n", search / 1000);
+        out.printf("\tString.contains:\t%d us\n", scan / 1000);
+
+        assertTrue("The index is slower than scanning the code", search < scan);
+    }
+
+    @Test
+    public void testSnippetsAreConstructedWithRevisionScope() {
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(TestData.offlineClient(10));
+        builder.setSearchScope(SnippetSearchIndex.Scope.SNIPPETS_AND_REVISIONS);
+
+        final CodeBottleAPI api = builder.build().waitForLazyLoading();
+        api.requestSnippets().join();
+
+        final Snippet indexed = api.getSnippetByID(TestData.snippetID(1)).orElseThrow(AssertionError::new);
+        final ObjectNode data = new ObjectMapper().createObjectNode();
+        data.put("id", indexed.getID());
+        data.put("title", "Detached snippet");
+        data.put("code", "detached();");
+        data.putObject("language").put("id", indexed.getLanguage().getID());
+        data.putObject("category").put("id", indexed.getCategory().getID());
+
+        // constructing a snippet used to fingerprint its revisions before they were initialized
+        final Snippet detached = new Snippet(api, data);
+
+        assertEquals("Detached snippet", detached.getTitle());
+        // a snippet that is not indexed does not replace the indexed one with the same ID
+        assertTrue(api.searchSnippets("detached", 10).isEmpty());
+        assertTrue(api.searchSnippets("snippet", 10)
+                .stream()
+                .noneMatch(hit -> hit.getSnippet() == detached));
+    }
+
+    private long measureScan() {
+        final long start = nanoTime();
+
+        for (int i = 0; i < 10; i++) {
+            final String needle = "println(" + i + ")";
+
+            codeBottleAPI.getSnippets()
+                    .stream()
+                    .filter(snippet -> snippet.getCode().contains(needle))
+                    .count();
+        }
+
+        return (nanoTime() - start) / 10;
+    }
+}
@@ -0,0 +1,164 @@
+package io.codebottle.api.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import io.codebottle.api.CodeBottleAPI;
+import io.codebottle.api.model.Snippet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SnapshotTest {
+    private static final int SNIPPET_COUNT = 50;
+    // the magic number and version the snapshot files start with
+    private static final int MAGIC = 0x43425350;
+    private static final int VERSION = 1;
+
+    private Path snapshotFile;
+
+    @Before
+    public void setUp() throws IOException {
+        snapshotFile = Files.createTempFile("codebottle", ".snapshot");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(snapshotFile);
+    }
+
+    @Test
+    public void testSnapshotRoundTrip() throws IOException {
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(TestData.offlineClient(SNIPPET_COUNT));
+
+        final CodeBottleAPI original = builder.build().waitForLazyLoading();
+        original.requestAllRevisions().join();
+        original.saveSnapshot(snapshotFile);
+
+        builder.setSnapshotFile(snapshotFile);
+        final CodeBottleAPI restored = builder.build();
+
+        assertTrue("Lazy loading must not wait for the network", restored.lazyLoading.isDone());
+        assertEquals(TestData.LANGUAGE_COUNT, restored.getLanguages().size());
+        assertEquals(TestData.CATEGORY_COUNT, restored.getCategories().size());
+        assertEquals(SNIPPET_COUNT, restored.getSnippets().size());
+        assertEquals(SNIPPET_COUNT * TestData.REVISION_COUNT, restored.getSnippetRevisions().size());
+
+        final Snippet expected = original.getSnippetByID(TestData.snippetID(7)).orElseThrow(AssertionError::new);
+        final Snippet actual = restored.getSnippetByID(TestData.snippetID(7)).orElseThrow(AssertionError::new);
+
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getCode(), actual.getCode());
+        assertEquals(expected.getUpdatedAt(), actual.getUpdatedAt());
+        assertSame(restored.getLanguageByID(expected.getLanguage().getID()).orElseThrow(AssertionError::new), actual.getLanguage());
+        assertEquals(expected.getRevisionByID(2).map(Snippet.Revision::getCode), actual.getRevisionByID(2).map(Snippet.Revision::getCode));
+
+        restored.snapshotRevalidation.join();
+        assertEquals(SNIPPET_COUNT, restored.getSnippets().size());
+    }
+
+    @Test
+    public void testCorruptStringLengthIsRejected() throws IOException {
+        final byte[] snapshot = validSnapshot();
+
+        // the length of the ID of the first language follows the header and the language count
+        ByteBuffer.wrap(snapshot).putInt(12, -5);
+        assertColdStart(snapshot);
+
+        ByteBuffer.wrap(snapshot).putInt(12, Integer.MAX_VALUE);
+        assertColdStart(snapshot);
+    }
+
+    @Test
+    public void testMissingIDIsRejected() throws IOException {
+        final byte[] snapshot = validSnapshot();
+
+        ByteBuffer.wrap(snapshot).putInt(12, -1);
+        assertColdStart(snapshot);
+    }
+
+    @Test
+    public void testInvalidInstantIsRejected() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(0); // languages
+            out.writeInt(0); // categories
+            out.writeInt(1); // snippets
+            writeString(out, TestData.snippetID(0));
+            for (int i = 0; i < 3; i++)
+                out.writeInt(-1); // title, description and code
+            out.writeInt(0); // views
+            out.writeInt(-1); // language
+            out.writeInt(-1); // category
+            out.writeInt(0); // votes
+            out.writeInt(-1); // username
+            out.writeBoolean(true); // createdAt, out of the range of Instant
+            out.writeLong(Long.MAX_VALUE);
+            out.writeInt(0);
+        }
+
+        assertColdStart(bytes.toByteArray());
+    }
+
+    @Test
+    public void testTruncatedSnapshotIsRejected() throws IOException {
+        final byte[] snapshot = validSnapshot();
+        final byte[] truncated = new byte[snapshot.length / 2];
+        System.arraycopy(snapshot, 0, truncated, 0, truncated.length);
+
+        assertColdStart(truncated);
+    }
+
+    private byte[] validSnapshot() throws IOException {
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(TestData.offlineClient(SNIPPET_COUNT));
+
+        final CodeBottleAPI api = builder.build().waitForLazyLoading();
+        api.requestSnippets().join();
+        api.saveSnapshot(snapshotFile);
+
+        return Files.readAllBytes(snapshotFile);
+    }
+
+    // a corrupt snapshot is rejected with an IOException, and treated like a missing one when building the API
+    private void assertColdStart(byte[] snapshot) throws IOException {
+        Files.write(snapshotFile, snapshot);
+
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(TestData.offlineClient(SNIPPET_COUNT));
+        builder.setSnapshotFile(snapshotFile);
+
+        final CodeBottleAPI api = builder.build().waitForLazyLoading();
+
+        assertEquals(TestData.LANGUAGE_COUNT, api.getLanguages().size());
+        assertTrue(api.getSnippets().isEmpty());
+
+        try {
+            api.loadSnapshot(snapshotFile);
+            fail("The corrupt snapshot was loaded");
+        } catch (IOException expected) {
+            assertTrue(api.getSnippets().isEmpty());
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,41 @@
+package io.codebottle.api.test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.codebottle.api.CodeBottleAPI;
+import io.codebottle.api.model.Snippet;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SnippetIndexTest {
+    private static final int SNIPPET_COUNT = 40;
+
+    @Test
+    public void testIndexesFollowUpdates() {
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(TestData.offlineClient(SNIPPET_COUNT));
+
+        final CodeBottleAPI api = builder.build().waitForLazyLoading();
+        api.requestSnippets().join();
+
+        assertEquals(SNIPPET_COUNT / TestData.LANGUAGE_COUNT, api.getSnippetsByLanguage("3").size());
+        assertEquals(SNIPPET_COUNT / TestData.CATEGORY_COUNT, api.getSnippetsByCategory("1").size());
+        assertEquals(1, api.getSnippetsByUsername("user7").size());
+
+        final Snippet snippet = api.getSnippetByID(TestData.snippetID(3)).orElseThrow(AssertionError::new);
+        final ObjectNode data = new ObjectMapper().createObjectNode();
+        data.putObject("language").put("id", "5");
+        data.putObject("category").put("id", "3");
+        data.put("username", "user8");
+        snippet.update(data);
+
+        assertFalse(api.getSnippetsByLanguage("3").contains(snippet));
+        assertTrue(api.getSnippetsByLanguage("5").contains(snippet));
+        assertTrue(api.getSnippetsByCategory("3").contains(snippet));
+        assertEquals(2, api.getSnippetsByUsername("user8").size());
+        assertTrue(api.getSnippetsByUsername("user3").isEmpty());
+    }
+}
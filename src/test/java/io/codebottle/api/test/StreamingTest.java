@@ -0,0 +1,69 @@
+package io.codebottle.api.test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.codebottle.api.CodeBottleAPI;
+import io.codebottle.api.model.Snippet;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StreamingTest {
+    private static final int LARGE_COUNT = 50_000;
+    private static final int VALID_COUNT = 5;
+
+    @Test
+    public void testLargeListIsReadInOrder() {
+        final CodeBottleAPI api = newApi(TestData.snippets(LARGE_COUNT));
+        final List<Snippet> snippets = new ArrayList<>(api.requestSnippets().join());
+
+        assertEquals(LARGE_COUNT, snippets.size());
+        for (int i = 0; i < LARGE_COUNT; i++)
+            assertEquals(TestData.snippetID(i), snippets.get(i).getID());
+        assertEquals(LARGE_COUNT, api.getSnippets().size());
+    }
+
+    @Test
+    public void testMalformedElementFailsTheRequest() {
+        final String valid = new String(TestData.snippets(VALID_COUNT), StandardCharsets.UTF_8);
+        // the array continues with a number where the next snippet is expected
+        final CodeBottleAPI api = newApi((valid.substring(0, valid.length() - 1) + ",42]").getBytes(StandardCharsets.UTF_8));
+
+        assertInvalid(api);
+        // the elements before the malformed one were read
+        assertEquals(VALID_COUNT, api.getSnippets().size());
+    }
+
+    @Test
+    public void testTruncatedBodyFailsTheRequest() {
+        final byte[] valid = TestData.snippets(VALID_COUNT);
+        final CodeBottleAPI api = newApi(Arrays.copyOf(valid, valid.length * 3 / 4));
+
+        assertInvalid(api);
+        assertTrue(api.getSnippets().size() < VALID_COUNT);
+    }
+
+    private static void assertInvalid(CodeBottleAPI api) {
+        try {
+            api.requestSnippets().join();
+            fail("The malformed response was read");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof AssertionError);
+            assertTrue(e.getCause().getCause() instanceof JsonProcessingException);
+        }
+    }
+
+    private static CodeBottleAPI newApi(byte[] snippets) {
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(TestData.offlineClient(() -> snippets, TestData.REVISION_COUNT));
+
+        return builder.build().waitForLazyLoading();
+    }
+}
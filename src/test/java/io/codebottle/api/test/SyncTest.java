@@ -0,0 +1,162 @@
+package io.codebottle.api.test;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import io.codebottle.api.CachePolicy;
+import io.codebottle.api.CodeBottleAPI;
+import io.codebottle.api.SnippetSync;
+import io.codebottle.api.model.Snippet;
+import io.codebottle.api.rest.Endpoint;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SyncTest {
+    private static final int SNIPPET_COUNT = 100;
+
+    private final Collection<Request> received = new ConcurrentLinkedQueue<>();
+    // responses wait until the gate is opened
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+
+    @Test
+    public void testOnlyChangesArePublished() {
+        // the served snippets, by index, with their updatedAt
+        final Map<Integer, String> served = new ConcurrentHashMap<>();
+        IntStream.range(0, SNIPPET_COUNT).forEach(index -> served.put(index, TestData.DEFAULT_UPDATED_AT));
+
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(TestData.offlineClient(() -> TestData.snippets(
+                served.keySet().stream().sorted().mapToInt(Integer::intValue), served::get), TestData.REVISION_COUNT));
+
+        final CodeBottleAPI api = builder.build().waitForLazyLoading();
+        api.requestSnippets().join();
+
+        final SnippetSync sync = api.getSnippetSync();
+        final AtomicInteger published = new AtomicInteger();
+        sync.addListener(event -> published.incrementAndGet());
+
+        // everything was cached before the first cycle
+        assertTrue(sync.sync().join().isEmpty());
+        assertEquals(0, revisionRequests(api));
+
+        served.put(3, "2019-09-01T12:00:00.000Z");
+        served.put(7, "2019-09-01T12:00:00.000Z");
+        served.remove(11);
+        served.put(SNIPPET_COUNT, TestData.DEFAULT_UPDATED_AT);
+
+        final Map<String, SnippetSync.Event> events = sync.sync().join().stream()
+                .collect(Collectors.toMap(SnippetSync.Event::getSnippetID, Function.identity()));
+
+        assertEquals(4, events.size());
+        assertEquals(4, published.get());
+        assertEquals(SnippetSync.Type.UPDATED, events.get(TestData.snippetID(3)).getType());
+        assertEquals(SnippetSync.Type.UPDATED, events.get(TestData.snippetID(7)).getType());
+        assertEquals(SnippetSync.Type.DELETED, events.get(TestData.snippetID(11)).getType());
+        assertEquals(SnippetSync.Type.CREATED, events.get(TestData.snippetID(SNIPPET_COUNT)).getType());
+        assertTrue(events.get(TestData.snippetID(3)).getPreviousUpdatedAt().isPresent());
+        assertFalse(api.getSnippetByID(TestData.snippetID(11)).isPresent());
+
+        // revisions were only requested for the created and updated snippets
+        assertEquals(3, revisionRequests(api));
+        final List<SnippetSync.Event> unchanged = sync.sync().join();
+        assertTrue(unchanged.isEmpty());
+        assertEquals(3, revisionRequests(api));
+    }
+
+    @Test
+    public void testUnmodifiedCycleDoesNotLeakToOtherCallers() {
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(gated(TestData.offlineClient(SNIPPET_COUNT)));
+
+        final CodeBottleAPI api = builder.build().waitForLazyLoading();
+        final SnippetSync sync = api.getSnippetSync();
+
+        api.requestSnippets().join();
+        assertTrue(sync.sync().join().isEmpty());
+
+        final long before = snippetRequests();
+
+        // the cycle is answered with 304, while the list is requested at the same time
+        gate = new CountDownLatch(1);
+        final CompletableFuture<List<SnippetSync.Event>> cycle = sync.sync();
+        final CompletableFuture<Collection<Snippet>> snippets = api.requestSnippets();
+        gate.countDown();
+
+        assertTrue(cycle.join().isEmpty());
+        assertEquals(SNIPPET_COUNT, snippets.join().size());
+        // the cycle sent its own request, whose 304 was not shared
+        assertEquals(before + 2, snippetRequests());
+    }
+
+    @Test
+    public void testEvictedSnippetsAreNotDeleted() {
+        final CachePolicy policy = CachePolicy.unbounded();
+        policy.setMaximumSize(10);
+
+        final CodeBottleAPI.Builder builder = new CodeBottleAPI.Builder();
+        builder.setHttpClient(gated(TestData.offlineClient(SNIPPET_COUNT)));
+        builder.setSnippetCachePolicy(policy);
+        // evictions are processed right away
+        builder.setExecutor(Runnable::run);
+
+        final CodeBottleAPI api = builder.build().waitForLazyLoading();
+        final SnippetSync sync = api.getSnippetSync();
+        sync.setFetchRevisions(false);
+
+        // nothing was cached before the first cycle
+        final List<SnippetSync.Event> first = sync.sync().join();
+
+        assertEquals(SNIPPET_COUNT, first.size());
+        assertTrue(first.stream().allMatch(event -> event.getType() == SnippetSync.Type.CREATED));
+
+        // snippets that were evicted while requesting the list are still on the server
+        gate = new CountDownLatch(1);
+        final CompletableFuture<List<SnippetSync.Event>> cycle = sync.sync();
+        final CompletableFuture<Collection<Snippet>> snippets = api.requestSnippets();
+        gate.countDown();
+
+        assertTrue(cycle.join().isEmpty());
+        assertEquals(SNIPPET_COUNT, snippets.join().size());
+        assertTrue(sync.sync().join().isEmpty());
+    }
+
+    // serves ETags, and holds responses back until the gate is opened
+    private OkHttpClient gated(OkHttpClient client) {
+        final OkHttpClient.Builder gated = TestData.withValidators(client, TestData.Validator.ETAG, received).newBuilder();
+        gated.interceptors().add(0, chain -> {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return chain.proceed(chain.request());
+        });
+
+        return gated.build();
+    }
+
+    private long snippetRequests() {
+        return received.stream()
+                .filter(request -> request.url().encodedPath().equals("/snippets"))
+                .count();
+    }
+
+    private static long revisionRequests(CodeBottleAPI api) {
+        return api.getMetrics().snapshot().getEndpoint(Endpoint.SNIPPET_REVISIONS).getRequests();
+    }
+}
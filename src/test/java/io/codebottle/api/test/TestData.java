@@ -0,0 +1,311 @@
+package io.codebottle.api.test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Generates CodeBottle API payloads, so that performance tests can run offline.
+ */
+final class TestData {
+    static final int LANGUAGE_COUNT = 8;
+    static final int CATEGORY_COUNT = 4;
+    static final int REVISION_COUNT = 3;
+    static final String DEFAULT_UPDATED_AT = "2019-08-02T12:00:00.000Z";
+
+    private static final MediaType JSON = MediaType.get("application/json");
+
+    private TestData() {
+    }
+
+    static String snippetID(int index) {
+        return Integer.toHexString(0x10000000 + index);
+    }
+
+    static byte[] languages() {
+        final StringBuilder json = new StringBuilder("[");
+
+        for (int i = 0; i < LANGUAGE_COUNT; i++) {
+            if (i > 0) json.append(',');
+            appendNamed(json, i, "Language");
+        }
+
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] categories() {
+        final StringBuilder json = new StringBuilder("[");
+
+        for (int i = 0; i < CATEGORY_COUNT; i++) {
+            if (i > 0) json.append(',');
+            appendNamed(json, i, "Category");
+        }
+
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] revisions(int snippetIndex) {
+        return revisions(snippetIndex, REVISION_COUNT);
+    }
+
+    static byte[] revisions(int snippetIndex, int revisionCount) {
+        final StringBuilder json = new StringBuilder("[");
+
+        for (int i = 0; i < revisionCount; i++) {
+            if (i > 0) json.append(',');
+            appendRevision(json, snippetIndex, i);
+        }
+
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] revision(int snippetIndex, int index) {
+        final StringBuilder json = new StringBuilder();
+
+        appendRevision(json, snippetIndex, index);
+
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] snippets(int count) {
+        return snippets(IntStream.range(0, count), index -> DEFAULT_UPDATED_AT);
+    }
+
+    static byte[] snippets(IntStream indices, IntFunction<String> updatedAt) {
+        final StringBuilder json = new StringBuilder("[");
+
+        indices.forEachOrdered(index -> {
+            if (json.length() > 1) json.append(',');
+            appendSnippet(json, index, updatedAt.apply(index));
+        });
+
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] snippet(int index) {
+        final StringBuilder json = new StringBuilder();
+
+        appendSnippet(json, index, DEFAULT_UPDATED_AT);
+
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Creates a http client that answers every request from generated data without touching the network.
+     *
+     * @param snippetCount is the number of snippets to serve.
+     *
+     * @return the http client.
+     */
+    static OkHttpClient offlineClient(int snippetCount) {
+        return offlineClient(snippetCount, REVISION_COUNT);
+    }
+
+    /**
+     * Creates a http client that answers every request from generated data without touching the network.
+     *
+     * @param snippetCount  is the number of snippets to serve.
+     * @param revisionCount is the number of revisions to serve per snippet.
+     *
+     * @return the http client.
+     */
+    static OkHttpClient offlineClient(int snippetCount, int revisionCount) {
+        final byte[] snippets = snippets(snippetCount);
+
+        return offlineClient(() -> snippets, revisionCount);
+    }
+
+    /**
+     * Creates a http client that answers every request from generated data without touching the network.
+     *
+     * @param snippets      supplies the snippet list for every request to it, so that the served snippets can change.
+     * @param revisionCount is the number of revisions to serve per snippet.
+     *
+     * @return the http client.
+     */
+    static OkHttpClient offlineClient(Supplier<byte[]> snippets, int revisionCount) {
+        final byte[] languages = languages();
+        final byte[] categories = categories();
+
+        return new OkHttpClient.Builder()
+                .addInterceptor(chain -> {
+                    final Request request = chain.request();
+                    final String path = request.url().encodedPath();
+                    final byte[] body;
+
+                    switch (path) {
+                        case "/languages":
+                            body = languages;
+                            break;
+                        case "/categories":
+                            body = categories;
+                            break;
+                        case "/snippets":
+                            body = snippets.get();
+                            break;
+                        default:
+                            if (path.matches("/snippets/1[0-9a-f]{7}")) {
+                                final String id = path.substring("/snippets/".length());
+
+                                body = snippet(Integer.parseInt(id, 16) - 0x10000000);
+                                break;
+                            }
+                            if (path.startsWith("/snippets/") && path.endsWith("/revisions")) {
+                                final String id = path.substring("/snippets/".length(), path.length() - "/revisions".length());
+
+                                body = revisions(Integer.parseInt(id, 16) - 0x10000000, revisionCount);
+                                break;
+                            }
+                            if (path.matches("/snippets/1[0-9a-f]{7}/revisions/[0-9]+")) {
+                                final String[] segments = path.split("/");
+                                final int index = Integer.parseInt(segments[4]);
+
+                                if (index < revisionCount) {
+                                    body = revision(Integer.parseInt(segments[2], 16) - 0x10000000, index);
+                                    break;
+                                }
+                            }
+
+                            return respond(request, 404, "{\"error\":\"Not found\"}".getBytes(StandardCharsets.UTF_8));
+                    }
+
+                    return respond(request, 200, body);
+                })
+                .build();
+    }
+
+    /**
+     * Wraps the given client so that every successful response carries a validator derived from its body,
+     * and conditional requests whose validator still matches the body are answered with {@code 304 Not Modified}.
+     *
+     * @param client    is the client to wrap, e.g. an {@linkplain #offlineClient(int) offline client}.
+     * @param validator is the kind of validator to send.
+     * @param received  receives every request before it is answered, to check the conditional headers that were sent.
+     *
+     * @return the wrapped client.
+     */
+    static OkHttpClient withValidators(OkHttpClient client, Validator validator, Collection<Request> received) {
+        final OkHttpClient.Builder builder = client.newBuilder();
+
+        // the offline clients answer in their first interceptor, so this one must run before it
+        builder.interceptors().add(0, chain -> {
+            final Request request = chain.request();
+            received.add(request);
+
+            final Response response = chain.proceed(request);
+
+            if (response.code() != 200 || response.body() == null)
+                return response;
+
+            final byte[] body = response.body().bytes();
+            final String value = validator.of(body);
+            final String condition = request.header(validator.condition);
+
+            if (value.equals(condition))
+                return response.newBuilder()
+                        .code(304)
+                        .message("Not Modified")
+                        .header(validator.header, value)
+                        .body(ResponseBody.create(new byte[0], null))
+                        .build();
+
+            return response.newBuilder()
+                    .header(validator.header, value)
+                    .body(ResponseBody.create(body, JSON))
+                    .build();
+        });
+
+        return builder.build();
+    }
+
+    private static Response respond(Request request, int code, byte[] body) {
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message(code == 200 ? "OK" : "Not Found")
+                .body(ResponseBody.create(body, JSON))
+                .build();
+    }
+
+    private static void appendNamed(StringBuilder json, int id, String name) {
+        json.append("{\"id\":\"").append(id).append("\",\"name\":\"").append(name).append(' ').append(id).append("\"}");
+    }
+
+    private static void appendRevision(StringBuilder json, int snippetIndex, int index) {
+        json.append("{\"title\":\"Snippet #").append(snippetIndex).append(" revision ").append(index).append('"')
+                .append(",\"description\":\"Generated revision for performance tests\"")
+                .append(",\"code\":\"public static void main(String[] args) {\\n    System.out.println(").append(snippetIndex).append(");\\n");
+        for (int line = 0; line < 20; line++)
+            json.append("    int value").append(line).append(" = ").append(line).append(" * ").append(snippetIndex).append(";\\n");
+        for (int line = 0; line < index; line++)
+            json.append("    System.out.println(\\\"line ").append(line).append("\\\");\\n");
+        json.append("}\"")
+                .append(",\"language\":");
+        appendNamed(json, snippetIndex % LANGUAGE_COUNT, "Language");
+        json.append(",\"category\":");
+        appendNamed(json, snippetIndex % CATEGORY_COUNT, "Category");
+        json.append(",\"author\":\"user").append(snippetIndex % 100).append('"')
+                .append(",\"explanation\":\"Revision ").append(index).append('"')
+                .append(",\"createdAt\":\"2019-08-01T12:00:00.000Z\"}");
+    }
+
+    private static void appendSnippet(StringBuilder json, int index, String updatedAt) {
+        json.append("{\"id\":\"").append(snippetID(index)).append('"')
+                .append(",\"title\":\"Snippet #").append(index).append('"')
+                .append(",\"description\":\"Generated snippet for performance tests\"")
+                .append(",\"code\":\"public static void main(String[] args) {\\n    System.out.println(").append(index).append(");\\n}\"")
+                .append(",\"views\":").append(index)
+                .append(",\"language\":");
+        appendNamed(json, index % LANGUAGE_COUNT, "Language");
+        json.append(",\"category\":");
+        appendNamed(json, index % CATEGORY_COUNT, "Category");
+        json.append(",\"votes\":").append(index % 10)
+                .append(",\"username\":\"user").append(index % 100).append('"')
+                .append(",\"createdAt\":\"2019-08-01T12:00:00.000Z\"")
+                .append(",\"updatedAt\":\"").append(updatedAt).append("\"}");
+    }
+
+    /**
+     * The cache validators a client {@linkplain #withValidators(OkHttpClient, Validator, Collection) with validators} can send.
+     */
+    enum Validator {
+        ETAG("ETag", "If-None-Match") {
+            @Override
+            String of(byte[] body) {
+                return '"' + Integer.toHexString(Arrays.hashCode(body)) + '"';
+            }
+        },
+        LAST_MODIFIED("Last-Modified", "If-Modified-Since") {
+            @Override
+            String of(byte[] body) {
+                // any date works, as long as it changes with the body
+                return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochSecond(1_500_000_000L + (Arrays.hashCode(body) & 0xFFFFFFFL))
+                        .atOffset(ZoneOffset.UTC));
+            }
+        };
+
+        final String header;
+        final String condition;
+
+        Validator(String header, String condition) {
+            this.header = header;
+            this.condition = condition;
+        }
+
+        abstract String of(byte[] body);
+    }
+}